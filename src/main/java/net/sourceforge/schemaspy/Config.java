@@ -63,6 +63,7 @@ import net.sourceforge.schemaspy.view.SqlFormatter;
 public class Config
 {
     private static Config instance;
+    private static final InheritableThreadLocal<Config> threadInstance = new InheritableThreadLocal<Config>();
     private final List<String> options;
     private Map<String, String> dbSpecificOptions;
     private Map<String, String> originalDbSpecificOptions;
@@ -91,6 +92,16 @@ public class Config
     private String userConnectionPropertiesFile;
     private Properties userConnectionProperties;
     private Integer maxDbThreads;
+    private Integer maxRowCountQueries;
+    private Integer maxDotThreads;
+    private Integer maxSchemaThreads;
+    private Integer maxPageThreads;
+    private Boolean oneOfMultipleSchemas;
+    private Integer dotBatchSize;
+    private Integer rowCountTimeout;
+    private Integer fetchSize;
+    private boolean fetchSizeSpecified;
+    private Long exactRowCountThreshold;
     private Integer maxDetailedTables;
     private String driverPath;
     private String css;
@@ -110,8 +121,16 @@ public class Config
     private Boolean encodeCommentsEnabled;
     private Boolean numRowsEnabled;
     private Boolean viewsEnabled;
+    private Boolean bulkMetadataEnabled;
+    private Boolean bulkMetadataVerificationEnabled;
+    private Boolean modelStoreEnabled;
     private Boolean meterEnabled;
     private Boolean railsEnabled;
+    private Boolean incrementalEnabled;
+    private Boolean dynamicColumnsEnabled;
+    private Boolean dynamicIndexEnabled;
+    private File diagramCacheDir;
+    private Integer diagramCacheDays;
     private Boolean evaluteAll;
     private Boolean highQuality;
     private Boolean lowQuality;
@@ -158,6 +177,10 @@ public class Config
     }
 
     public static Config getInstance() {
+        Config config = threadInstance.get();
+        if (config != null)
+            return config;
+
         if (instance == null)
             instance = new Config();
 
@@ -175,6 +198,20 @@ public class Config
         instance = config;
     }
 
+    /**
+     * Sets the instance that's used by the current thread (and the threads
+     * that it creates) instead of the global instance.
+     * Lets several schemas be analyzed concurrently within the same JVM.
+     *
+     * @param config <code>null</code> to revert to the global instance
+     */
+    static void setThreadInstance(Config config) {
+        if (config == null)
+            threadInstance.remove();
+        else
+            threadInstance.set(config);
+    }
+
     public void setHtmlGenerationEnabled(boolean generateHtml) {
         this.generateHtml = generateHtml;
     }
@@ -723,6 +760,261 @@ public class Config
         return maxDbThreads.intValue();
     }
 
+    /**
+     * Maximum number of <code>select count(*)</code> queries to run
+     * concurrently when determining the number of rows in tables.
+     *
+     * @param maxRowCountQueries
+     */
+    public void setMaxRowCountQueries(int maxRowCountQueries) {
+        this.maxRowCountQueries = new Integer(maxRowCountQueries);
+    }
+
+    /**
+     * @see #setMaxRowCountQueries(int)
+     * @throws InvalidConfigurationException if unable to load properties
+     */
+    public int getMaxRowCountQueries() throws InvalidConfigurationException {
+        if (maxRowCountQueries == null) {
+            long max = getDbTypeNumber("rowCountQueries", "-rowCountQueries", 4);
+            maxRowCountQueries = new Integer((int)Math.max(max, 1));
+        }
+
+        return maxRowCountQueries.intValue();
+    }
+
+    /**
+     * Number of seconds to let each <code>select count(*)</code> query run
+     * before giving up on it.  0 (the default) means no limit.
+     *
+     * @param seconds
+     */
+    public void setRowCountTimeout(int seconds) {
+        rowCountTimeout = new Integer(seconds);
+    }
+
+    /**
+     * @see #setRowCountTimeout(int)
+     * @throws InvalidConfigurationException if unable to load properties
+     */
+    public int getRowCountTimeout() throws InvalidConfigurationException {
+        if (rowCountTimeout == null) {
+            long timeout = getDbTypeNumber("rowCountTimeout", "-rowCountTimeout", 0);
+            rowCountTimeout = new Integer((int)Math.max(timeout, 0));
+        }
+
+        return rowCountTimeout.intValue();
+    }
+
+    /**
+     * Number of rows that the driver should fetch per round trip when
+     * reading metadata and the results of the database type's SQL.
+     * Some drivers (e.g. Oracle's) only fetch a handful of rows at a time,
+     * which makes reading large schemas over slow links painful.<p/>
+     *
+     * 0 (the default) leaves it up to the driver.
+     * Can also be specified with the database type's <code>fetchSize</code> property.
+     *
+     * @param rows
+     */
+    public void setFetchSize(int rows) {
+        fetchSize = new Integer(rows);
+        fetchSizeSpecified = true;
+    }
+
+    /**
+     * @see #setFetchSize(int)
+     * @throws InvalidConfigurationException if unable to load properties
+     */
+    public int getFetchSize() throws InvalidConfigurationException {
+        if (fetchSize == null) {
+            fetchSizeSpecified = options.contains("-fetchSize");
+            long rows = getDbTypeNumber("fetchSize", "-fetchSize", 0);
+            fetchSize = new Integer((int)Math.max(rows, 0));
+        }
+
+        return fetchSize.intValue();
+    }
+
+    /**
+     * Tables that the database's statistics say have at least this many
+     * rows won't be counted with <code>select count(*)</code>; the statistics
+     * will be used instead.<p/>
+     *
+     * Defaults to 1,000,000.
+     *
+     * @param threshold
+     */
+    public void setExactRowCountThreshold(long threshold) {
+        exactRowCountThreshold = new Long(threshold);
+    }
+
+    /**
+     * @see #setExactRowCountThreshold(long)
+     * @throws InvalidConfigurationException if unable to load properties
+     */
+    public long getExactRowCountThreshold() throws InvalidConfigurationException {
+        if (exactRowCountThreshold == null)
+            exactRowCountThreshold = new Long(getDbTypeNumber("exactRowCountMax", "-exactRowCountMax", 1000000));
+
+        return exactRowCountThreshold.longValue();
+    }
+
+    /**
+     * Maximum number of Graphviz <code>dot</code> processes to run concurrently
+     * when rendering diagrams.  Defaults to the number of processors.
+     *
+     * @param maxDotThreads
+     */
+    public void setMaxDotThreads(int maxDotThreads) {
+        this.maxDotThreads = new Integer(maxDotThreads);
+    }
+
+    /**
+     * @see #setMaxDotThreads(int)
+     */
+    public int getMaxDotThreads() {
+        if (maxDotThreads == null) {
+            int max = Runtime.getRuntime().availableProcessors();
+            String threads = pullParam("-dotThreads");
+            if (threads == null)
+                threads = pullParam("-dotthreads");
+            if (threads != null)
+                max = Integer.parseInt(threads);
+            if (max < 1)
+                max = 1;
+
+            maxDotThreads = new Integer(max);
+        }
+
+        return maxDotThreads.intValue();
+    }
+
+    /**
+     * Maximum number of schemas to analyze concurrently within this JVM
+     * when analyzing multiple schemas.
+     * Zero (the default) analyzes each schema in its own JVM, one at a time.
+     *
+     * @param maxSchemaThreads
+     */
+    public void setMaxSchemaThreads(int maxSchemaThreads) {
+        this.maxSchemaThreads = new Integer(maxSchemaThreads);
+    }
+
+    /**
+     * @see #setMaxSchemaThreads(int)
+     */
+    public int getMaxSchemaThreads() {
+        if (maxSchemaThreads == null) {
+            int max = 0;
+            String threads = pullParam("-schemaThreads");
+            if (threads == null)
+                threads = pullParam("-schemathreads");
+            if (threads != null)
+                max = Integer.parseInt(threads);
+            if (max < 0)
+                max = 0;
+
+            maxSchemaThreads = new Integer(max);
+        }
+
+        return maxSchemaThreads.intValue();
+    }
+
+    /**
+     * Maximum number of threads to write the HTML pages with.
+     * Defaults to the number of processors.
+     *
+     * @param maxPageThreads
+     */
+    public void setMaxPageThreads(int maxPageThreads) {
+        this.maxPageThreads = new Integer(maxPageThreads);
+    }
+
+    /**
+     * @see #setMaxPageThreads(int)
+     */
+    public int getMaxPageThreads() {
+        if (maxPageThreads == null) {
+            int max = Runtime.getRuntime().availableProcessors();
+            String threads = pullParam("-pageThreads");
+            if (threads == null)
+                threads = pullParam("-pagethreads");
+            if (threads != null)
+                max = Integer.parseInt(threads);
+            if (max < 1)
+                max = 1;
+
+            maxPageThreads = new Integer(max);
+        }
+
+        return maxPageThreads.intValue();
+    }
+
+    /**
+     * Maximum number of diagrams to render with a single <code>dot</code> process.
+     * Values larger than 1 feed the diagrams that are waiting to be rendered to
+     * <code>dot</code> in batches to avoid starting a process for every diagram.
+     * Defaults to 1.
+     *
+     * @param dotBatchSize
+     */
+    public void setDotBatchSize(int dotBatchSize) {
+        this.dotBatchSize = new Integer(dotBatchSize);
+    }
+
+    /**
+     * @see #setDotBatchSize(int)
+     */
+    public int getDotBatchSize() {
+        if (dotBatchSize == null) {
+            int size = 1;
+            String batch = pullParam("-dotBatch");
+            if (batch == null)
+                batch = pullParam("-dotbatch");
+            if (batch != null)
+                size = Integer.parseInt(batch);
+            if (size < 1)
+                size = 1;
+
+            dotBatchSize = new Integer(size);
+        }
+
+        return dotBatchSize.intValue();
+    }
+
+    /**
+     * Returns a numeric setting that can be specified in the database type's
+     * .properties and overridden on the command line.
+     *
+     * @param propertyName
+     * @param paramName
+     * @param defaultValue
+     * @return
+     * @throws InvalidConfigurationException
+     */
+    private long getDbTypeNumber(String propertyName, String paramName, long defaultValue) throws InvalidConfigurationException {
+        Properties properties;
+        try {
+            properties = determineDbProperties(getDbType());
+        } catch (IOException exc) {
+            throw new InvalidConfigurationException("Failed to load properties for " + getDbType() + ": " + exc)
+                            .setParamName("-type");
+        }
+
+        String value = pullParam(paramName);
+        if (value == null)
+            value = properties.getProperty(propertyName);
+        if (value == null)
+            return defaultValue;
+
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException badNumber) {
+            throw new InvalidConfigurationException("Invalid number '" + value + "'").setParamName(paramName);
+        }
+    }
+
     public boolean isLogoEnabled() {
         if (logoEnabled == null)
             logoEnabled = !options.remove("-nologo");
@@ -776,6 +1068,157 @@ public class Config
         return railsEnabled;
     }
 
+    /**
+     * Only regenerate the pages and diagrams whose contents have changed since
+     * the last time that the schema was documented to the same output directory.<p>
+     *
+     * A snapshot of the schema is kept in the output directory to determine
+     * what's changed.
+     *
+     * @param enabled
+     */
+    public void setIncrementalEnabled(boolean enabled) {
+        incrementalEnabled = enabled;
+    }
+
+    /**
+     * @see #setIncrementalEnabled(boolean)
+     *
+     * @return
+     */
+    public boolean isIncrementalEnabled() {
+        if (incrementalEnabled == null)
+            incrementalEnabled = options.remove("-incremental");
+
+        return incrementalEnabled;
+    }
+
+    /**
+     * If enabled a single columns page is written whose rows are sorted,
+     * filtered and scrolled by the browser from a compact data file
+     * rather than a page for each of the {@link #getColumnDetails() column details}
+     * that the columns can be sorted by.
+     * Intended for schemas with so many columns that writing (and viewing)
+     * every ordering of them is impractical.<p/>
+     *
+     * Defaults to <code>false</code> (disabled).
+     *
+     * @param enabled
+     */
+    public void setDynamicColumnsEnabled(boolean enabled) {
+        dynamicColumnsEnabled = enabled;
+    }
+
+    /**
+     * @see #setDynamicColumnsEnabled(boolean)
+     *
+     * @return
+     */
+    public boolean isDynamicColumnsEnabled() {
+        if (dynamicColumnsEnabled == null)
+            dynamicColumnsEnabled = options.remove("-dynamiccolumns");
+
+        return dynamicColumnsEnabled;
+    }
+
+    /**
+     * If enabled the main index is a page whose list of tables is filtered
+     * and scrolled by the browser from a compact data file rather than
+     * a page that contains a row for every table.
+     * Intended for schemas with so many tables that browsers struggle
+     * to lay out the full list.<p/>
+     *
+     * Defaults to <code>false</code> (disabled).
+     *
+     * @param enabled
+     */
+    public void setDynamicIndexEnabled(boolean enabled) {
+        dynamicIndexEnabled = enabled;
+    }
+
+    /**
+     * @see #setDynamicIndexEnabled(boolean)
+     *
+     * @return
+     */
+    public boolean isDynamicIndexEnabled() {
+        if (dynamicIndexEnabled == null)
+            dynamicIndexEnabled = options.remove("-dynamicindex");
+
+        return dynamicIndexEnabled;
+    }
+
+    /**
+     * Returns <code>true</code> if previously rendered diagrams whose .dot files
+     * haven't changed are reused instead of running Graphviz on them again.
+     * Only done when a {@link #setDiagramCacheDir(File) cache directory} is specified.
+     *
+     * @return
+     */
+    public boolean isDiagramCacheEnabled() {
+        return getDiagramCacheDir() != null;
+    }
+
+    /**
+     * Directory where previously rendered diagrams are cached.
+     * Several runs (e.g. of different schemas) can share the same directory.
+     * Diagrams aren't cached unless this is specified.
+     *
+     * @param diagramCacheDir
+     */
+    public void setDiagramCacheDir(File diagramCacheDir) {
+        this.diagramCacheDir = diagramCacheDir;
+    }
+
+    /**
+     * @see #setDiagramCacheDir(File)
+     *
+     * @return
+     */
+    public File getDiagramCacheDir() {
+        if (diagramCacheDir == null) {
+            String dir = pullParam("-diagramCache");
+            if (dir == null)
+                dir = pullParam("-diagramcache");
+            if (dir != null)
+                diagramCacheDir = new File(dir);
+        }
+
+        return diagramCacheDir;
+    }
+
+    /**
+     * Number of days that a diagram in the {@link #setDiagramCacheDir(File) cache}
+     * can go unused before it's deleted.
+     * Zero (the default) never deletes them, which is the safest choice
+     * if other jobs share the cache.
+     *
+     * @param diagramCacheDays
+     */
+    public void setDiagramCacheDays(int diagramCacheDays) {
+        this.diagramCacheDays = new Integer(diagramCacheDays);
+    }
+
+    /**
+     * @see #setDiagramCacheDays(int)
+     */
+    public int getDiagramCacheDays() {
+        if (diagramCacheDays == null) {
+            int days = 0;
+            String param = pullParam("-diagramCacheDays");
+            if (param == null)
+                param = pullParam("-diagramcachedays");
+            if (param != null)
+                days = Integer.parseInt(param);
+            if (days < 0)
+                days = 0;
+
+            diagramCacheDays = new Integer(days);
+        }
+
+        return diagramCacheDays.intValue();
+    }
+
     /**
      * Allow Html In Comments - encode them unless otherwise specified
      */
@@ -838,6 +1281,95 @@ public class Config
         return viewsEnabled;
     }
 
+    /**
+     * If enabled the columns, indexes, primary keys and foreign keys of the
+     * entire schema are loaded with a few schema-wide queries rather than
+     * with several queries per table.<p/>
+     *
+     * Defaults to <code>false</code> (disabled) unless the database type's
+     * <code>bulkMetadata</code> property is <code>true</code>.
+     *
+     * @param enabled
+     */
+    public void setBulkMetadataEnabled(boolean enabled) {
+        bulkMetadataEnabled = enabled;
+    }
+
+    /**
+     * @see #setBulkMetadataEnabled(boolean)
+     * @throws InvalidConfigurationException if unable to load properties
+     */
+    public boolean isBulkMetadataEnabled() throws InvalidConfigurationException {
+        if (bulkMetadataEnabled == null) {
+            bulkMetadataEnabled = options.remove("-bulkmeta");
+            if (!bulkMetadataEnabled) {
+                Properties properties;
+                try {
+                    properties = determineDbProperties(getDbType());
+                } catch (IOException exc) {
+                    throw new InvalidConfigurationException("Failed to load properties for " + getDbType() + ": " + exc)
+                                    .setParamName("-type");
+                }
+
+                bulkMetadataEnabled = Boolean.valueOf(properties.getProperty("bulkMetadata"));
+            }
+        }
+
+        return bulkMetadataEnabled;
+    }
+
+    /**
+     * If enabled the details that were loaded in bulk are compared with
+     * the ones returned by the original table-by-table queries and any
+     * differences are logged.
+     * Intended for validating the <code>selectAll*Sql</code> queries of a
+     * database type, so it's only meaningful along with
+     * {@link #setBulkMetadataEnabled(boolean) bulk metadata}.<p/>
+     *
+     * Defaults to <code>false</code> (disabled).
+     *
+     * @param enabled
+     */
+    public void setBulkMetadataVerificationEnabled(boolean enabled) {
+        bulkMetadataVerificationEnabled = enabled;
+    }
+
+    /**
+     * @see #setBulkMetadataVerificationEnabled(boolean)
+     * @return
+     */
+    public boolean isBulkMetadataVerificationEnabled() {
+        if (bulkMetadataVerificationEnabled == null)
+            bulkMetadataVerificationEnabled = options.remove("-verifybulkmeta");
+
+        return bulkMetadataVerificationEnabled;
+    }
+
+    /**
+     * If enabled the comments, check constraints, indexes and view SQL of the tables
+     * are written to a file in the output directory as they're loaded rather
+     * than kept on the heap.
+     * Intended for schemas that are too large to fit in the heap otherwise.<p/>
+     *
+     * Defaults to <code>false</code> (disabled).
+     *
+     * @param enabled
+     */
+    public void setModelStoreEnabled(boolean enabled) {
+        modelStoreEnabled = enabled;
+    }
+
+    /**
+     * @see #setModelStoreEnabled(boolean)
+     * @return
+     */
+    public boolean isModelStoreEnabled() {
+        if (modelStoreEnabled == null)
+            modelStoreEnabled = options.remove("-modelstore");
+
+        return modelStoreEnabled;
+    }
+
     /**
      * Returns <code>true</code> if metering should be embedded in
      * the generated pages.<p/>
@@ -1117,9 +1649,20 @@ public class Config
      */
     public boolean isOneOfMultipleSchemas() {
         // set by MultipleSchemaAnalyzer
+        if (oneOfMultipleSchemas != null)
+            return oneOfMultipleSchemas;
         return Boolean.getBoolean("oneofmultipleschemas");
     }
 
+    /**
+     * @see #isOneOfMultipleSchemas()
+     *
+     * @param oneOfMultipleSchemas
+     */
+    public void setOneOfMultipleSchemas(boolean oneOfMultipleSchemas) {
+        this.oneOfMultipleSchemas = oneOfMultipleSchemas;
+    }
+
     /**
      * When -all (evaluateAll) is specified then this is the regular
      * expression that determines which schemas to evaluate.
@@ -1336,9 +1879,21 @@ public class Config
         return dbProperties;
     }
 
+    /**
+     * Use the specified database properties instead of loading them
+     * (e.g. to share them between the configurations of several schemas).
+     *
+     * @param dbProperties
+     * @param loadedFrom where they were loaded from
+     */
+    public void setDbProperties(Properties dbProperties, String loadedFrom) {
+        this.dbProperties = dbProperties;
+        this.dbPropertiesLoadedFrom = loadedFrom;
+    }
+
     /**
      * Determines the database properties associated with the specified type.
-     * A call to {@link #setDbProperties(Properties)} is expected after determining
+     * A call to {@link #setDbProperties(Properties, String)} is expected after determining
      * the complete set of properties.
      *
      * @param type
@@ -1732,10 +2287,22 @@ public class Config
             params.add("-norows");
         if (!isViewsEnabled())
             params.add("-noviews");
+        if (isBulkMetadataEnabled())
+            params.add("-bulkmeta");
+        if (isBulkMetadataVerificationEnabled())
+            params.add("-verifybulkmeta");
+        if (isModelStoreEnabled())
+            params.add("-modelstore");
         if (isRankDirBugEnabled())
             params.add("-rankdirbug");
         if (isRailsEnabled())
             params.add("-rails");
+        if (isIncrementalEnabled())
+            params.add("-incremental");
+        if (isDynamicColumnsEnabled())
+            params.add("-dynamiccolumns");
+        if (isDynamicIndexEnabled())
+            params.add("-dynamicindex");
         if (isSingleSignOn())
             params.add("-sso");
         if (isSchemaDisabled())
@@ -1829,6 +2396,14 @@ public class Config
             params.add("-meta");
             params.add(value);
         }
+        if (getDiagramCacheDir() != null) {
+            params.add("-diagramcache");
+            params.add(getDiagramCacheDir().toString());
+            if (getDiagramCacheDays() > 0) {
+                params.add("-diagramcachedays");
+                params.add(String.valueOf(getDiagramCacheDays()));
+            }
+        }
         if (getGraphvizDir() != null) {
             params.add("-gv");
             params.add(getGraphvizDir().toString());
@@ -1847,6 +2422,26 @@ public class Config
         params.add(getIndirectColumnExclusions().toString());
         params.add("-dbthreads");
         params.add(String.valueOf(getMaxDbThreads()));
+        params.add("-rowCountQueries");
+        params.add(String.valueOf(getMaxRowCountQueries()));
+        params.add("-rowCountTimeout");
+        params.add(String.valueOf(getRowCountTimeout()));
+        int rows = getFetchSize();
+        if (fetchSizeSpecified) {
+            // otherwise it comes from the database type
+            params.add("-fetchSize");
+            params.add(String.valueOf(rows));
+        }
+        params.add("-exactRowCountMax");
+        params.add(String.valueOf(getExactRowCountThreshold()));
+        params.add("-dotthreads");
+        params.add(String.valueOf(getMaxDotThreads()));
+        params.add("-dotbatch");
+        params.add(String.valueOf(getDotBatchSize()));
+        params.add("-schemathreads");
+        params.add(String.valueOf(getMaxSchemaThreads()));
+        params.add("-pagethreads");
+        params.add(String.valueOf(getMaxPageThreads()));
         params.add("-maxdet");
         params.add(String.valueOf(getMaxDetailedTables()));
         params.add("-o");
@@ -27,10 +27,11 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -38,36 +39,51 @@ import java.util.regex.Pattern;
 import net.sourceforge.schemaspy.model.ForeignKeyConstraint;
 import net.sourceforge.schemaspy.model.ImpliedForeignKeyConstraint;
 import net.sourceforge.schemaspy.model.RailsForeignKeyConstraint;
+import net.sourceforge.schemaspy.model.RelationshipGraph;
 import net.sourceforge.schemaspy.model.Table;
 import net.sourceforge.schemaspy.model.TableColumn;
 import net.sourceforge.schemaspy.model.TableIndex;
 import net.sourceforge.schemaspy.util.Inflection;
 
 public class DbAnalyzer {
+    /**
+     * Returns the constraints that are implied by columns that have the same name,
+     * type and length as another table's primary key, but don't reference it.
+     * Primary keys made up of multiple columns are implied by a table that has all
+     * of their columns.  A multi-column key that's shared by several tables is
+     * ambiguous, so it doesn't imply anything.<p/>
+     *
+     * The primary keys are hashed by their (case-insensitive) name, type and length
+     * so the number of comparisons stays proportional to the number of columns.
+     *
+     * @param tables
+     * @return
+     */
     public static List<ImpliedForeignKeyConstraint> getImpliedConstraints(Collection<Table> tables) {
         List<TableColumn> columnsWithoutParents = new ArrayList<TableColumn>();
-        Map<TableColumn, Table> allPrimaries = new TreeMap<TableColumn, Table>(new Comparator<TableColumn>() {
-            public int compare(TableColumn column1, TableColumn column2) {
-                int rc = column1.getName().compareToIgnoreCase(column2.getName());
-                if (rc == 0)
-                    rc = column1.getType().compareToIgnoreCase(column2.getType());
-                if (rc == 0)
-                    rc = column1.getLength() - column2.getLength();
-                return rc;
-            }
-        });
+        Map<ColumnKey, Table> allPrimaries = new HashMap<ColumnKey, Table>();
+        Map<Set<ColumnKey>, Table> compositePrimaries = new LinkedHashMap<Set<ColumnKey>, Table>();
+        Set<Set<ColumnKey>> ambiguousComposites = new HashSet<Set<ColumnKey>>();
 
         int duplicatePrimaries = 0;
 
         // gather all the primary key columns and columns without parents
         for (Table table : tables) {
             List<TableColumn> tablePrimaries = table.getPrimaryColumns();
-            if (tablePrimaries.size() == 1) { // can't match up multiples...yet...
+            if (tablePrimaries.size() == 1) {
+                TableColumn primary = tablePrimaries.get(0);
+                if (primary.allowsImpliedChildren() &&
+                    allPrimaries.put(new ColumnKey(primary), table) != null)
+                    ++duplicatePrimaries;
+            } else if (tablePrimaries.size() > 1) {
+                Set<ColumnKey> keys = new HashSet<ColumnKey>();
                 for (TableColumn primary : tablePrimaries) {
-                    if (primary.allowsImpliedChildren() &&
-                        allPrimaries.put(primary, table) != null)
-                        ++duplicatePrimaries;
+                    if (primary.allowsImpliedChildren())
+                        keys.add(new ColumnKey(primary));
                 }
+                if (keys.size() == tablePrimaries.size() &&
+                    compositePrimaries.put(keys, table) != null)
+                    ambiguousComposites.add(keys);
             }
 
             for (TableColumn column : table.getColumns()) {
@@ -82,11 +98,45 @@ public class DbAnalyzer {
         if (duplicatePrimaries > allPrimaries.size()) // bizarre logic, but it does approximately what we need
             return new ArrayList<ImpliedForeignKeyConstraint>();
 
+        // there's no telling which of the tables that share a multi-column key is the parent
+        compositePrimaries.keySet().removeAll(ambiguousComposites);
+
+        // multi-column keys are found through their first column
+        Map<ColumnKey, List<Table>> compositesByFirstColumn = new HashMap<ColumnKey, List<Table>>();
+        for (Table table : compositePrimaries.values()) {
+            ColumnKey first = new ColumnKey(table.getPrimaryColumns().get(0));
+            List<Table> composites = compositesByFirstColumn.get(first);
+            if (composites == null) {
+                composites = new ArrayList<Table>(1);
+                compositesByFirstColumn.put(first, composites);
+            }
+            composites.add(table);
+        }
+
         sortColumnsByTable(columnsWithoutParents);
 
+        // the multi-column keys are matched independently of the single-column ones,
+        // so a column can be part of both kinds of implied constraints
+        List<ImpliedForeignKeyConstraint> compositeConstraints = new ArrayList<ImpliedForeignKeyConstraint>();
+        if (!compositesByFirstColumn.isEmpty()) {
+            Set<TableColumn> candidates = new HashSet<TableColumn>(columnsWithoutParents);
+            for (TableColumn childColumn : columnsWithoutParents) {
+                List<Table> composites = compositesByFirstColumn.get(new ColumnKey(childColumn));
+                if (composites != null) {
+                    for (Table primaryTable : composites) {
+                        if (primaryTable != childColumn.getTable()) {
+                            ImpliedForeignKeyConstraint constraint = getImpliedConstraint(primaryTable, childColumn.getTable(), candidates);
+                            if (constraint != null)
+                                compositeConstraints.add(constraint);
+                        }
+                    }
+                }
+            }
+        }
+
         List<ImpliedForeignKeyConstraint> impliedConstraints = new ArrayList<ImpliedForeignKeyConstraint>();
         for (TableColumn childColumn : columnsWithoutParents) {
-            Table primaryTable = allPrimaries.get(childColumn);
+            Table primaryTable = allPrimaries.get(new ColumnKey(childColumn));
             if (primaryTable != null && primaryTable != childColumn.getTable()) {
                 TableColumn parentColumn = primaryTable.getColumn(childColumn.getName());
                 // make sure the potential child->parent relationships isn't already a
@@ -99,9 +149,35 @@ public class DbAnalyzer {
             }
         }
 
+        impliedConstraints.addAll(compositeConstraints);
         return impliedConstraints;
     }
 
+    /**
+     * Returns the constraint implied by <code>childTable</code> having all of the
+     * columns of <code>primaryTable</code>'s multi-column primary key, or
+     * <code>null</code> if it doesn't.
+     *
+     * @param primaryTable
+     * @param childTable
+     * @param candidates columns that can be the child of an implied constraint
+     */
+    private static ImpliedForeignKeyConstraint getImpliedConstraint(Table primaryTable, Table childTable, Set<TableColumn> candidates) {
+        List<TableColumn> parentColumns = primaryTable.getPrimaryColumns();
+        List<TableColumn> childColumns = new ArrayList<TableColumn>(parentColumns.size());
+
+        for (TableColumn parentColumn : parentColumns) {
+            TableColumn childColumn = childTable.getColumn(parentColumn.getName());
+            if (childColumn == null || !candidates.contains(childColumn) ||
+                    !new ColumnKey(childColumn).equals(new ColumnKey(parentColumn)) ||
+                    parentColumn.getParentConstraint(childColumn) != null)
+                return null;
+            childColumns.add(childColumn);
+        }
+
+        return new ImpliedForeignKeyConstraint(parentColumns, childColumns);
+    }
+
     /**
      * Ruby on Rails-based databases typically have no real referential integrity
      * constraints.  Instead they have a somewhat unusual way of associating
@@ -164,7 +240,8 @@ public class DbAnalyzer {
         List<Table> orphans = new ArrayList<Table>();
 
         for (Table table : tables) {
-            if (table.isOrphan(false)) {
+            RelationshipGraph graph = table.getDatabase().getRelationshipGraph();
+            if (graph.isOrphan(graph.getTableId(table), RelationshipGraph.NOT_IMPLIED)) {
                 orphans.add(table);
             }
         }
@@ -409,4 +486,47 @@ public class DbAnalyzer {
         }
         System.out.println();
     }
+
+    /**
+     * The details of a column that have to match for it to imply a relationship:
+     * its name and type (ignoring case) and its length.
+     */
+    private static final class ColumnKey {
+        private final String name;
+        private final String type;
+        private final int length;
+        private final int hashCode;
+
+        ColumnKey(TableColumn column) {
+            name = fold(column.getName());
+            type = fold(column.getType());
+            length = column.getLength();
+            hashCode = (name.hashCode() * 31 + type.hashCode()) * 31 + length;
+        }
+
+        /**
+         * Fold the case of <code>value</code> the same way that
+         * {@link String#compareToIgnoreCase(String)} compares it
+         */
+        private static String fold(String value) {
+            char[] chars = value.toCharArray();
+            for (int i = 0; i < chars.length; ++i)
+                chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+            return new String(chars);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof ColumnKey))
+                return false;
+            ColumnKey key = (ColumnKey)other;
+            return hashCode == key.hashCode && length == key.length &&
+                   name.equals(key.name) && type.equals(key.type);
+        }
+    }
 }
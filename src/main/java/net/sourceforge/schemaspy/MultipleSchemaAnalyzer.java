@@ -29,13 +29,21 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
 import net.sourceforge.schemaspy.model.ProcessExecutionException;
+import net.sourceforge.schemaspy.util.DiagramCache;
 import net.sourceforge.schemaspy.util.LineWriter;
 import net.sourceforge.schemaspy.view.HtmlMultipleSchemasIndexPage;
 
@@ -78,6 +86,9 @@ public final class MultipleSchemaAnalyzer {
         SchemaAnalyzer.yankParam(args, "-o");
         SchemaAnalyzer.yankParam(args, "-s");
 
+        // schemas analyzed in this JVM don't need anything passed through the environment
+        List<String> inProcessArgs = new ArrayList<String>(args);
+
         // these are passed through environment variables
         SchemaAnalyzer.yankParam(args, "-p");
         SchemaAnalyzer.yankParam(args, "-i");
@@ -112,54 +123,62 @@ public final class MultipleSchemaAnalyzer {
 
         writeIndexPage(dbName, populatedSchemas, meta, outputDir, config.getCharset());
 
-        Map<String, String> env = System.getenv();
-        List<String> childEnv = new ArrayList<String>();
-        for (Entry<String, String> entry : env.entrySet()) {
-            childEnv.add(entry.getKey() + '=' + entry.getValue());
-        }
+        if (config.getMaxSchemaThreads() > 0) {
+            analyzeInProcess(dbName, populatedSchemas, inProcessArgs, config);
+        } else {
+            Map<String, String> env = System.getenv();
+            List<String> childEnv = new ArrayList<String>();
+            for (Entry<String, String> entry : env.entrySet()) {
+                childEnv.add(entry.getKey() + '=' + entry.getValue());
+            }
 
-        // safer to pass password in environment so it can't be directly seen in cmd line
-        childEnv.add("schemaspy.pw=" + config.getPassword());
+            // safer to pass password in environment so it can't be directly seen in cmd line
+            childEnv.add("schemaspy.pw=" + config.getPassword());
 
-        // some shells expand these regular expressions, so attempt to preserve them
-        // by passing in the environment
-        childEnv.add("schemaspy.tableInclusions=" + config.getTableInclusions());
-        childEnv.add("schemaspy.tableExclusions=" + config.getTableExclusions());
-        childEnv.add("schemaspy.columnExclusions=" + config.getColumnExclusions());
-        childEnv.add("schemaspy.indirectColumnExclusions=" + config.getIndirectColumnExclusions());
+            // some shells expand these regular expressions, so attempt to preserve them
+            // by passing in the environment
+            childEnv.add("schemaspy.tableInclusions=" + config.getTableInclusions());
+            childEnv.add("schemaspy.tableExclusions=" + config.getTableExclusions());
+            childEnv.add("schemaspy.columnExclusions=" + config.getColumnExclusions());
+            childEnv.add("schemaspy.indirectColumnExclusions=" + config.getIndirectColumnExclusions());
 
-        for (String schema : populatedSchemas) {
-            List<String> command = new ArrayList<String>(genericCommand);
-            // if no database was specified then we're dealing with a database
-            // that treats a schema as the database
-            if (dbName == null)
-                command.add("-db");
-            else
-                command.add("-s");
-            command.add(schema);
-            command.add("-o");
-            command.add(new File(outputDir, schema).toString());
-            System.out.println("Analyzing " + schema);
-            System.out.flush();
-            logger.fine("Analyzing schema with: " + command);
-            Process java = Runtime.getRuntime().exec(command.toArray(new String[]{}), childEnv.toArray(new String[]{}));
-            new ProcessOutputReader(java.getInputStream(), System.out).start();
-            new ProcessOutputReader(java.getErrorStream(), System.err).start();
+            for (String schema : populatedSchemas) {
+                List<String> command = new ArrayList<String>(genericCommand);
+                // if no database was specified then we're dealing with a database
+                // that treats a schema as the database
+                if (dbName == null)
+                    command.add("-db");
+                else
+                    command.add("-s");
+                command.add(schema);
+                command.add("-o");
+                command.add(new File(outputDir, schema).toString());
+                System.out.println("Analyzing " + schema);
+                System.out.flush();
+                logger.fine("Analyzing schema with: " + command);
+                Process java = Runtime.getRuntime().exec(command.toArray(new String[]{}), childEnv.toArray(new String[]{}));
+                new ProcessOutputReader(java.getInputStream(), System.out).start();
+                new ProcessOutputReader(java.getErrorStream(), System.err).start();
 
-            try {
-                int rc = java.waitFor();
-                if (rc != 0) {
-                    StringBuilder err = new StringBuilder("Failed to execute this process (rc " + rc + "):");
-                    for (String chunk : command) {
-                        err.append(" ");
-                        err.append(chunk);
+                try {
+                    int rc = java.waitFor();
+                    if (rc != 0) {
+                        StringBuilder err = new StringBuilder("Failed to execute this process (rc " + rc + "):");
+                        for (String chunk : command) {
+                            err.append(" ");
+                            err.append(chunk);
+                        }
+                        throw new ProcessExecutionException(err.toString());
                     }
-                    throw new ProcessExecutionException(err.toString());
+                } catch (InterruptedException exc) {
                 }
-            } catch (InterruptedException exc) {
             }
         }
 
+        // only now that every schema has had a chance to use them
+        if (config.isDiagramCacheEnabled() && config.getDiagramCacheDays() > 0)
+            DiagramCache.prune(config.getDiagramCacheDir(), config.getDiagramCacheDays());
+
         long end = System.currentTimeMillis();
         System.out.println();
         System.out.println("Wrote relationship details of " + populatedSchemas.size() + " schema" + (populatedSchemas.size() == 1 ? "" : "s") + " in " + (end - start) / 1000 + " seconds.");
@@ -170,6 +189,81 @@ public final class MultipleSchemaAnalyzer {
         analyze(dbName, null, null, schemas, args, config);
     }
 
+    /**
+     * Analyze the schemas concurrently (up to <code>-schemaThreads</code> at a time)
+     * within this JVM.<p/>
+     *
+     * Each schema gets its own {@link Config} that's bound to the thread that
+     * analyzes it, but they share the database driver, dbType properties and
+     * the database's SQL keywords.
+     * A schema that fails doesn't keep the others from being analyzed.
+     *
+     * @throws ProcessExecutionException if any of the schemas failed
+     */
+    private void analyzeInProcess(String dbName, List<String> schemas, List<String> args, Config config) throws IOException {
+        File outputDir = config.getOutputDir();
+        Properties dbProperties = config.getDbProperties();
+        String dbPropertiesLoadedFrom = config.getDbPropertiesLoadedFrom();
+        Map<String, Future<?>> results = new LinkedHashMap<String, Future<?>>();
+        ExecutorService executor = Executors.newFixedThreadPool(config.getMaxSchemaThreads());
+
+        for (final String schema : schemas) {
+            List<String> schemaArgs = new ArrayList<String>(args);
+            // if no database was specified then we're dealing with a database
+            // that treats a schema as the database
+            if (dbName == null)
+                schemaArgs.add("-db");
+            else
+                schemaArgs.add("-s");
+            schemaArgs.add(schema);
+            schemaArgs.add("-o");
+            schemaArgs.add(new File(outputDir, schema).toString());
+
+            // constructing a Config makes it the global one, so put the original back
+            final Config schemaConfig = new Config(schemaArgs.toArray(new String[schemaArgs.size()]));
+            Config.setInstance(config);
+            schemaConfig.setOneOfMultipleSchemas(true);
+            Properties schemaProperties = new Properties();
+            schemaProperties.putAll(dbProperties);
+            schemaConfig.setDbProperties(schemaProperties, dbPropertiesLoadedFrom);
+            logger.fine("Analyzing schema with: " + schemaArgs);
+
+            results.put(schema, executor.submit(new Callable<Object>() {
+                public Object call() throws Exception {
+                    Config.setThreadInstance(schemaConfig);
+                    try {
+                        System.out.println("Analyzing " + schema);
+                        System.out.flush();
+                        if (new SchemaAnalyzer().analyze(schemaConfig) == null)
+                            throw new ProcessExecutionException("Failed to analyze " + schema);
+                        return null;
+                    } finally {
+                        Config.setThreadInstance(null);
+                    }
+                }
+            }));
+        }
+
+        executor.shutdown();
+
+        List<String> failures = new ArrayList<String>();
+        for (Map.Entry<String, Future<?>> result : results.entrySet()) {
+            try {
+                result.getValue().get();
+            } catch (ExecutionException exc) {
+                logger.log(Level.SEVERE, "Failed to analyze schema " + result.getKey(), exc.getCause());
+                failures.add(result.getKey());
+            } catch (InterruptedException exc) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+                throw new ProcessExecutionException("Interrupted while analyzing schemas");
+            }
+        }
+
+        if (!failures.isEmpty())
+            throw new ProcessExecutionException("Failed to analyze schema(s): " + failures);
+    }
+
    private void writeIndexPage(String dbName, List<String> populatedSchemas, DatabaseMetaData meta, File outputDir, String charset) throws IOException {
         if (populatedSchemas.size() > 0) {
             LineWriter index = new LineWriter(new File(outputDir, "index.html"), charset);
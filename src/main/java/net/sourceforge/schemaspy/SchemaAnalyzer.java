@@ -31,9 +31,15 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.Handler;
 import java.util.logging.Level;
@@ -46,13 +52,17 @@ import net.sourceforge.schemaspy.model.EmptySchemaException;
 import net.sourceforge.schemaspy.model.ForeignKeyConstraint;
 import net.sourceforge.schemaspy.model.ImpliedForeignKeyConstraint;
 import net.sourceforge.schemaspy.model.InvalidConfigurationException;
+import net.sourceforge.schemaspy.model.SchemaSnapshot;
 import net.sourceforge.schemaspy.model.Table;
 import net.sourceforge.schemaspy.model.TableColumn;
 import net.sourceforge.schemaspy.model.xml.SchemaMeta;
+import net.sourceforge.schemaspy.util.ConnectionPool;
 import net.sourceforge.schemaspy.util.ConnectionURLBuilder;
 import net.sourceforge.schemaspy.util.DOMUtil;
 import net.sourceforge.schemaspy.util.DbSpecificOption;
+import net.sourceforge.schemaspy.util.DiagramCache;
 import net.sourceforge.schemaspy.util.Dot;
+import net.sourceforge.schemaspy.util.DotRenderQueue;
 import net.sourceforge.schemaspy.util.LineWriter;
 import net.sourceforge.schemaspy.util.LogFormatter;
 import net.sourceforge.schemaspy.util.ResourceWriter;
@@ -66,6 +76,7 @@ import net.sourceforge.schemaspy.view.HtmlRelationshipsPage;
 import net.sourceforge.schemaspy.view.HtmlRoutinesPage;
 import net.sourceforge.schemaspy.view.HtmlTablePage;
 import net.sourceforge.schemaspy.view.ImageWriter;
+import net.sourceforge.schemaspy.view.PageWriterPool;
 import net.sourceforge.schemaspy.view.StyleSheet;
 import net.sourceforge.schemaspy.view.TextFormatter;
 import net.sourceforge.schemaspy.view.WriteStats;
@@ -80,7 +91,11 @@ public class SchemaAnalyzer {
     private final Logger logger = Logger.getLogger(getClass().getName());
     private boolean fineEnabled;
 
-    public Database analyze(Config config) throws Exception {
+    // drivers are shared by all of the schemas that are analyzed in this JVM
+    private static final Map<String, Driver> loadedDrivers = new HashMap<String, Driver>();
+    private static boolean loggingConfigured;
+
+    public Database analyze(final Config config) throws Exception {
         try {
             if (config.isHelpRequired()) {
                 config.dumpUsage(null, false);
@@ -92,16 +107,7 @@ public class SchemaAnalyzer {
                 return null;
             }
 
-            // set the log level for the root logger
-            Logger.getLogger("").setLevel(config.getLogLevel());
-
-            // clean-up console output a bit
-            for (Handler handler : Logger.getLogger("").getHandlers()) {
-                if (handler instanceof ConsoleHandler) {
-                    ((ConsoleHandler)handler).setFormatter(new LogFormatter());
-                    handler.setLevel(config.getLogLevel());
-                }
-            }
+            configureLogging(config);
 
             fineEnabled = logger.isLoggable(Level.FINE);
             logger.info("Starting schema analysis");
@@ -110,7 +116,7 @@ public class SchemaAnalyzer {
             long startDiagrammingDetails = start;
             long startSummarizing = start;
 
-            File outputDir = config.getOutputDir();
+            final File outputDir = config.getOutputDir();
             if (!outputDir.isDirectory()) {
                 if (!outputDir.mkdirs()) {
                     throw new IOException("Failed to create directory '" + outputDir + "'");
@@ -131,7 +137,7 @@ public class SchemaAnalyzer {
                 return null;
             }
 
-            Properties properties = config.determineDbProperties(config.getDbType());
+            Properties properties = config.getDbProperties();
 
             ConnectionURLBuilder urlBuilder = new ConnectionURLBuilder(config, properties);
             if (config.getDb() == null)
@@ -151,7 +157,8 @@ public class SchemaAnalyzer {
             if (config.getDriverPath() != null)
                 driverPath = config.getDriverPath() + File.pathSeparator + driverPath;
 
-            Connection connection = getConnection(config, urlBuilder.getConnectionURL(), driverClass, driverPath);
+            ConnectionPool connectionPool = getConnectionPool(config, urlBuilder.getConnectionURL(), driverClass, driverPath);
+            Connection connection = connectionPool.getPrimaryConnection();
 
             DatabaseMetaData meta = connection.getMetaData();
             String dbName = config.getDb();
@@ -214,12 +221,21 @@ public class SchemaAnalyzer {
             //
             // create our representation of the database
             //
-            Database db = new Database(config, connection, meta, dbName, catalog, schema, schemaMeta);
+            long memoryBeforeModel = fineEnabled ? getUsedMemory() : 0;
+            final Database db;
+            try {
+                db = new Database(config, connectionPool, meta, dbName, catalog, schema, schemaMeta);
+            } finally {
+                connectionPool.close();
+            }
 
             schemaMeta = null; // done with it so let GC reclaim it
 
+            if (fineEnabled)
+                logMemoryUsage(db, getUsedMemory() - memoryBeforeModel);
+
             LineWriter out;
-            Collection<Table> tables = new ArrayList<Table>(db.getTables());
+            final Collection<Table> tables = new ArrayList<Table>(db.getTables());
             tables.addAll(db.getViews());
 
             if (tables.isEmpty()) {
@@ -240,11 +256,14 @@ public class SchemaAnalyzer {
 
             if (config.isHtmlGenerationEnabled()) {
                 startSummarizing = System.currentTimeMillis();
+                String speedup = "";
+                if (db.getTableCreationSpeedup() > 1)
+                    speedup = String.format(", %.1fx faster with %d threads", db.getTableCreationSpeedup(), config.getMaxDbThreads());
                 if (!fineEnabled) {
-                    System.out.println("(" + (startSummarizing - start) / 1000 + "sec)");
+                    System.out.println("(" + (startSummarizing - start) / 1000 + "sec" + speedup + ")");
                 }
 
-                logger.info("Gathered schema details in " + (startSummarizing - start) / 1000 + " seconds");
+                logger.info("Gathered schema details in " + (startSummarizing - start) / 1000 + " seconds" + speedup);
                 logger.info("Writing/graphing summary");
                 System.err.flush();
                 System.out.flush();
@@ -268,14 +287,14 @@ public class SchemaAnalyzer {
                 if (config.isRailsEnabled())
                     DbAnalyzer.getRailsConstraints(db.getTablesByName());
 
-                File summaryDir = new File(outputDir, "diagrams/summary");
+                final File summaryDir = new File(outputDir, "diagrams/summary");
 
                 // generate the compact form of the relationships .dot file
-                String dotBaseFilespec = "relationships";
+                final String dotBaseFilespec = "relationships";
                 out = new LineWriter(new File(summaryDir, dotBaseFilespec + ".real.compact.dot"), Config.DOT_CHARSET);
                 WriteStats stats = new WriteStats(tables);
                 DotFormatter.getInstance().writeRealRelationships(db, tables, true, showDetailedTables, stats, out);
-                boolean hasRealRelationships = stats.getNumTablesWritten() > 0 || stats.getNumViewsWritten() > 0;
+                final boolean hasRealRelationships = stats.getNumTablesWritten() > 0 || stats.getNumViewsWritten() > 0;
                 out.close();
 
                 if (hasRealRelationships) {
@@ -289,24 +308,44 @@ public class SchemaAnalyzer {
 
                 // getting implied constraints has a side-effect of associating the parent/child tables, so don't do it
                 // here unless they want that behavior
-                List<ImpliedForeignKeyConstraint> impliedConstraints = null;
+                final List<ImpliedForeignKeyConstraint> impliedConstraints;
                 if (includeImpliedConstraints)
                     impliedConstraints = DbAnalyzer.getImpliedConstraints(tables);
                 else
                     impliedConstraints = new ArrayList<ImpliedForeignKeyConstraint>();
 
-                List<Table> orphans = DbAnalyzer.getOrphans(tables);
+                // the relationships won't change again until the tables get ordered
+                db.freeze();
+
+                final List<Table> orphans = DbAnalyzer.getOrphans(tables);
                 config.setHasOrphans(!orphans.isEmpty() && Dot.getInstance().isValid());
                 config.setHasRoutines(!db.getRoutines().isEmpty());
 
+                // compare the schema with the last time that we documented it
+                // so we only regenerate the pages that have changed
+                File snapshotFile = new File(outputDir, "schemaSpy.snapshot");
+                SchemaSnapshot snapshot = null;
+                SchemaSnapshot previousSnapshot = null;
+                if (config.isIncrementalEnabled()) {
+                    snapshot = new SchemaSnapshot(tables, db.getRemoteTables(), db.getRoutines(),
+                                                    getSnapshotSettings(config), config.isNumRowsEnabled());
+                    previousSnapshot = SchemaSnapshot.read(snapshotFile);
+                    snapshotFile.delete(); // in case we don't make it to the end
+
+                    for (String removed : snapshot.getRemovedTables(previousSnapshot))
+                        HtmlTablePage.getInstance().delete(removed, outputDir);
+                }
+                boolean writeSummary = snapshot == null || !snapshot.isSummaryCurrent(previousSnapshot) ||
+                                        !new File(outputDir, "index.html").exists();
+
                 if (!fineEnabled)
                     System.out.print(".");
 
                 File impliedDotFile = new File(summaryDir, dotBaseFilespec + ".implied.compact.dot");
                 out = new LineWriter(impliedDotFile, Config.DOT_CHARSET);
-                boolean hasImplied = DotFormatter.getInstance().writeAllRelationships(db, tables, true, showDetailedTables, stats, out);
+                final boolean hasImplied = DotFormatter.getInstance().writeAllRelationships(db, tables, true, showDetailedTables, stats, out);
 
-                Set<TableColumn> excludedColumns = stats.getExcludedColumns();
+                final Set<TableColumn> excludedColumns = stats.getExcludedColumns();
                 out.close();
                 if (hasImplied) {
                     impliedDotFile = new File(summaryDir, dotBaseFilespec + ".implied.large.dot");
@@ -317,91 +356,194 @@ public class SchemaAnalyzer {
                     impliedDotFile.delete();
                 }
 
-                out = new LineWriter(new File(outputDir, dotBaseFilespec + ".html"), config.getCharset());
-                HtmlRelationshipsPage.getInstance().write(db, summaryDir, dotBaseFilespec, hasRealRelationships, hasImplied, excludedColumns, out);
-                out.close();
-
-                if (!fineEnabled)
-                    System.out.print(".");
-
-                dotBaseFilespec = "utilities";
-                File orphansDir = new File(outputDir, "diagrams/orphans");
-                orphansDir.mkdirs();
-                out = new LineWriter(new File(outputDir, dotBaseFilespec + ".html"), config.getCharset());
-                HtmlOrphansPage.getInstance().write(db, orphans, orphansDir, out);
-                orphans = null;
-                out.close();
-
-                if (!fineEnabled)
-                    System.out.print(".");
-
-                out = new LineWriter(new File(outputDir, "index.html"), 64 * 1024, config.getCharset());
-                HtmlMainIndexPage.getInstance().write(db, tables, db.getRemoteTables(), out);
-                out.close();
-
-                if (!fineEnabled)
-                    System.out.print(".");
-
-                List<ForeignKeyConstraint> constraints = DbAnalyzer.getForeignKeyConstraints(tables);
-                out = new LineWriter(new File(outputDir, "constraints.html"), 256 * 1024, config.getCharset());
-                HtmlConstraintsPage constraintIndexFormatter = HtmlConstraintsPage.getInstance();
-                constraintIndexFormatter.write(db, constraints, tables, out);
-                out.close();
-
-                if (!fineEnabled)
-                    System.out.print(".");
-
-                out = new LineWriter(new File(outputDir, "anomalies.html"), 16 * 1024, config.getCharset());
-                HtmlAnomaliesPage.getInstance().write(db, tables, impliedConstraints, out);
-                out.close();
-
-                if (!fineEnabled)
-                    System.out.print(".");
-
-                for (HtmlColumnsPage.ColumnInfo columnInfo : HtmlColumnsPage.getInstance().getColumnInfos().values()) {
-                    out = new LineWriter(new File(outputDir, columnInfo.getLocation()), 16 * 1024, config.getCharset());
-                    HtmlColumnsPage.getInstance().write(db, tables, columnInfo, out);
-                    out.close();
-                }
-
-                if (!fineEnabled)
-                    System.out.print(".");
-
-                out = new LineWriter(new File(outputDir, "routines.html"), 16 * 1024, config.getCharset());
-                HtmlRoutinesPage.getInstance().write(db, out);
-                out.close();
-
-                // create detailed diagrams
+                // the pages don't depend on each other so they're written concurrently
+                PageWriterPool pageWriters = new PageWriterPool(config.getMaxPageThreads());
+                try {
+                    if (writeSummary) {
+                        pageWriters.write(new SummaryPage(new File(outputDir, dotBaseFilespec + ".html"), 8 * 1024) {
+                            @Override
+                            void write(LineWriter html) throws IOException {
+                                HtmlRelationshipsPage.getInstance().write(db, summaryDir, dotBaseFilespec, hasRealRelationships, hasImplied, excludedColumns, html);
+                            }
+                        });
+
+                        final File orphansDir = new File(outputDir, "diagrams/orphans");
+                        orphansDir.mkdirs();
+                        pageWriters.write(new SummaryPage(new File(outputDir, "utilities.html"), 8 * 1024) {
+                            @Override
+                            void write(LineWriter html) throws IOException {
+                                HtmlOrphansPage.getInstance().write(db, orphans, orphansDir, html);
+                            }
+                        });
+
+                        if (config.isDynamicIndexEnabled()) {
+                            // the browser renders the rows of the index from its data
+                            ResourceWriter.getInstance().writeResource("/index.js", new File(outputDir, "/index.js"));
+                            pageWriters.write(new SummaryPage(new File(outputDir, "index.html"), 16 * 1024) {
+                                @Override
+                                void write(LineWriter html) throws IOException {
+                                    HtmlMainIndexPage.getInstance().writeDynamic(db, tables, db.getRemoteTables(), html);
+                                }
+                            });
+                            pageWriters.write(new SummaryPage(new File(outputDir, "index.data.js"), 64 * 1024) {
+                                @Override
+                                void write(LineWriter data) throws IOException {
+                                    HtmlMainIndexPage.getInstance().writeData(tables, db.getRemoteTables(), data);
+                                }
+                            });
+                        } else {
+                            pageWriters.write(new SummaryPage(new File(outputDir, "index.html"), 64 * 1024) {
+                                @Override
+                                void write(LineWriter html) throws IOException {
+                                    HtmlMainIndexPage.getInstance().write(db, tables, db.getRemoteTables(), html);
+                                }
+                            });
+                        }
+
+                        pageWriters.write(new SummaryPage(new File(outputDir, "constraints.html"), 256 * 1024) {
+                            @Override
+                            void write(LineWriter html) throws IOException {
+                                List<ForeignKeyConstraint> constraints = DbAnalyzer.getForeignKeyConstraints(tables);
+                                HtmlConstraintsPage.getInstance().write(db, constraints, tables, html);
+                            }
+                        });
+
+                        pageWriters.write(new SummaryPage(new File(outputDir, "anomalies.html"), 16 * 1024) {
+                            @Override
+                            void write(LineWriter html) throws IOException {
+                                HtmlAnomaliesPage.getInstance().write(db, tables, impliedConstraints, html);
+                            }
+                        });
+
+                        if (config.isDynamicColumnsEnabled()) {
+                            // one page that the browser sorts rather than a page per ordering,
+                            // so get rid of the other orderings that a previous run might have left
+                            for (HtmlColumnsPage.ColumnInfo columnInfo : HtmlColumnsPage.getInstance().getColumnInfos().values()) {
+                                if (!columnInfo.getLocation().equals(HtmlColumnsPage.getInstance().getDynamicLocation()))
+                                    new File(outputDir, columnInfo.getLocation()).delete();
+                            }
+                            ResourceWriter.getInstance().writeResource("/columns.js", new File(outputDir, "/columns.js"));
+                            pageWriters.write(new SummaryPage(new File(outputDir, HtmlColumnsPage.getInstance().getDynamicLocation()), 16 * 1024) {
+                                @Override
+                                void write(LineWriter html) throws IOException {
+                                    HtmlColumnsPage.getInstance().writeDynamic(db, tables, html);
+                                }
+                            });
+                            pageWriters.write(new SummaryPage(new File(outputDir, "columns.data.js"), 64 * 1024) {
+                                @Override
+                                void write(LineWriter data) throws IOException {
+                                    HtmlColumnsPage.getInstance().writeData(tables, data);
+                                }
+                            });
+                        } else {
+                            // every ordering of the columns page is assembled from the same rows
+                            final Future<HtmlColumnsPage.ColumnRows> columnRows = pageWriters.submit(new Callable<HtmlColumnsPage.ColumnRows>() {
+                                public HtmlColumnsPage.ColumnRows call() throws IOException {
+                                    return HtmlColumnsPage.getInstance().getColumnRows(tables);
+                                }
+                            });
+                            for (final HtmlColumnsPage.ColumnInfo columnInfo : HtmlColumnsPage.getInstance().getColumnInfos().values()) {
+                                pageWriters.write(new SummaryPage(new File(outputDir, columnInfo.getLocation()), 16 * 1024) {
+                                    @Override
+                                    void write(LineWriter html) throws IOException {
+                                        HtmlColumnsPage.getInstance().write(db, PageWriterPool.get(columnRows), columnInfo, html);
+                                    }
+                                });
+                            }
+                        }
+
+                        pageWriters.write(new SummaryPage(new File(outputDir, "routines.html"), 16 * 1024) {
+                            @Override
+                            void write(LineWriter html) throws IOException {
+                                HtmlRoutinesPage.getInstance().write(db, html);
+                            }
+                        });
+
+                        pageWriters.join(stats);
+                    } else {
+                        logger.info("Summary pages are current");
+                    }
 
-                startDiagrammingDetails = System.currentTimeMillis();
-                if (!fineEnabled)
-                    System.out.println("(" + (startDiagrammingDetails - startSummarizing) / 1000 + "sec)");
-                logger.info("Completed summary in " + (startDiagrammingDetails - startSummarizing) / 1000 + " seconds");
-                logger.info("Writing/diagramming details");
-                if (!fineEnabled) {
-                    System.out.print("Writing/diagramming details");
-                }
+                    // create detailed diagrams
 
-                HtmlTablePage tableFormatter = HtmlTablePage.getInstance();
-                for (Table table : tables) {
+                    startDiagrammingDetails = System.currentTimeMillis();
                     if (!fineEnabled)
-                        System.out.print('.');
-                    else
-                        logger.fine("Writing details of " + table.getName());
+                        System.out.println("(" + (startDiagrammingDetails - startSummarizing) / 1000 + "sec)");
+                    logger.info("Completed summary in " + (startDiagrammingDetails - startSummarizing) / 1000 + " seconds");
+                    logger.info("Writing/diagramming details");
+                    if (!fineEnabled) {
+                        System.out.print("Writing/diagramming details");
+                    }
 
-                    out = new LineWriter(new File(outputDir, "tables/" + table.getName() + ".html"), 24 * 1024, config.getCharset());
-                    tableFormatter.write(db, table, outputDir, stats, out);
-                    out.close();
+                    // generate the .dot files a little ahead of writing the pages so the
+                    // dot processes always have something to render while we wait for
+                    // the image maps that the current page needs
+                    final HtmlTablePage tableFormatter = HtmlTablePage.getInstance();
+                    final DotRenderQueue renderQueue = new DotRenderQueue(config.getMaxDotThreads(), config.getDotBatchSize());
+                    try {
+                        LinkedList<Future<HtmlTablePage.PendingPage>> pendingPages = new LinkedList<Future<HtmlTablePage.PendingPage>>();
+                        int renderAhead = config.getMaxDotThreads() * Math.max(4, config.getDotBatchSize());
+                        List<Table> changedTables = new ArrayList<Table>();
+                        for (Table table : tables) {
+                            if (snapshot == null || !snapshot.isPageCurrent(table, previousSnapshot) ||
+                                    !new File(outputDir, "tables/" + table.getName() + ".html").exists())
+                                changedTables.add(table);
+                        }
+                        if (snapshot != null)
+                            logger.info((tables.size() - changedTables.size()) + " of " + tables.size() + " table pages are current");
+
+                        // each page gets its own stats that are merged when they've all been written
+                        Iterator<Table> iter = changedTables.iterator();
+                        while (iter.hasNext() || !pendingPages.isEmpty()) {
+                            if (iter.hasNext() && pendingPages.size() < renderAhead) {
+                                final Table table = iter.next();
+                                final WriteStats pageStats = new WriteStats(stats);
+                                pendingPages.add(pageWriters.submit(new Callable<HtmlTablePage.PendingPage>() {
+                                    public HtmlTablePage.PendingPage call() throws IOException {
+                                        return tableFormatter.prepare(table, outputDir, pageStats, renderQueue);
+                                    }
+                                }));
+                                continue;
+                            }
+
+                            final Future<HtmlTablePage.PendingPage> pendingPage = pendingPages.removeFirst();
+                            pageWriters.write(new Callable<WriteStats>() {
+                                public WriteStats call() throws IOException {
+                                    HtmlTablePage.PendingPage page = PageWriterPool.get(pendingPage);
+                                    Table table = page.getTable();
+                                    if (!fineEnabled)
+                                        System.out.print('.');
+                                    else
+                                        logger.fine("Writing details of " + table.getName());
+
+                                    LineWriter html = new LineWriter(new File(outputDir, "tables/" + table.getName() + ".html"), 24 * 1024, config.getCharset());
+                                    try {
+                                        return tableFormatter.write(db, page, page.getStats(), html);
+                                    } finally {
+                                        html.close();
+                                    }
+                                }
+                            });
+                        }
+                        pageWriters.join(stats);
+                        renderQueue.shutdown();
+                    } finally {
+                        // does nothing if everything was rendered
+                        renderQueue.abandon();
+                    }
+                } finally {
+                    pageWriters.shutdown();
                 }
 
+                if (snapshot != null)
+                    snapshot.write(snapshotFile);
+
                 out = new LineWriter(new File(outputDir, "schemaSpy.css"), config.getCharset());
                 StyleSheet.getInstance().write(out);
                 out.close();
             }
 
 
-            XmlTableFormatter.getInstance().appendTables(rootNode, tables);
-
             String xmlName = dbName;
 
             // some dbNames have path info in the name...strip it
@@ -416,7 +558,7 @@ public class SchemaAnalyzer {
 
             out = new LineWriter(new File(outputDir, xmlName + ".xml"), Config.DOT_CHARSET);
             document.getDocumentElement().normalize();
-            DOMUtil.printDOM(document, out);
+            XmlTableFormatter.getInstance().write(document, tables, out);
             out.close();
 
             // 'try' to make some memory available for the sorting process
@@ -435,8 +577,7 @@ public class SchemaAnalyzer {
             // create an orderer to be able to determine insertion and deletion ordering of tables
             TableOrderer orderer = new TableOrderer();
 
-            // side effect is that the RI relationships get trashed
-            // also populates the recursiveConstraints collection
+            // populates the recursiveConstraints collection
             List<Table> orderedTables = orderer.getTablesOrderedByRI(db.getTables(), recursiveConstraints);
 
             out = new LineWriter(new File(outputDir, "insertionOrder.txt"), 16 * 1024, Config.DOT_CHARSET);
@@ -474,10 +615,25 @@ public class SchemaAnalyzer {
                     System.out.println("(" + (end - startDiagrammingDetails) / 1000 + "sec)");
                 logger.info("Wrote table details in " + (end - startDiagrammingDetails) / 1000 + " seconds");
 
+                String cacheSummary = null;
+                DiagramCache diagramCache = Dot.getInstance().isValid() ? Dot.getInstance().getCache() : null;
+                if (diagramCache != null && diagramCache.getHits() + diagramCache.getMisses() > 0) {
+                    cacheSummary = "Reused " + diagramCache.getHits() + " of " + (diagramCache.getHits() + diagramCache.getMisses()) +
+                                    " diagrams from cache (" + diagramCache.getMisses() + " rendered)";
+                }
+
+                // a run of multiple schemas prunes the cache once they've all been analyzed
+                if (diagramCache != null && !config.isOneOfMultipleSchemas() && config.getDiagramCacheDays() > 0)
+                    DiagramCache.prune(config.getDiagramCacheDir(), config.getDiagramCacheDays());
+
                 if (logger.isLoggable(Level.INFO)) {
+                    if (cacheSummary != null)
+                        logger.info(cacheSummary);
                     logger.info("Wrote relationship details of " + tables.size() + " tables/views to directory '" + config.getOutputDir() + "' in " + (end - start) / 1000 + " seconds.");
                     logger.info("View the results by opening " + new File(config.getOutputDir(), "index.html"));
                 } else {
+                    if (cacheSummary != null)
+                        System.out.println(cacheSummary);
                     System.out.println("Wrote relationship details of " + tables.size() + " tables/views to directory '" + config.getOutputDir() + "' in " + (end - start) / 1000 + " seconds.");
                     System.out.println("View the results by opening " + new File(config.getOutputDir(), "index.html"));
                 }
@@ -490,6 +646,123 @@ public class SchemaAnalyzer {
         }
     }
 
+    /**
+     * A summary page that's written to its own file by a {@link PageWriterPool}
+     */
+    private abstract class SummaryPage implements Callable<WriteStats> {
+        private final File file;
+        private final int bufferSize;
+
+        SummaryPage(File file, int bufferSize) {
+            this.file = file;
+            this.bufferSize = bufferSize;
+        }
+
+        public WriteStats call() throws IOException {
+            LineWriter html = new LineWriter(file, bufferSize, Config.getInstance().getCharset());
+            try {
+                write(html);
+            } finally {
+                html.close();
+            }
+
+            if (!fineEnabled)
+                System.out.print(".");
+            return null;
+        }
+
+        abstract void write(LineWriter html) throws IOException;
+    }
+
+    /**
+     * Configure the root logger the first time that we're called.
+     * Schemas that are analyzed concurrently in this JVM share it,
+     * so they don't get to reconfigure it out from under each other.
+     *
+     * @param config
+     */
+    private static synchronized void configureLogging(Config config) {
+        if (loggingConfigured)
+            return;
+
+        // set the log level for the root logger
+        Logger.getLogger("").setLevel(config.getLogLevel());
+
+        // clean-up console output a bit
+        for (Handler handler : Logger.getLogger("").getHandlers()) {
+            if (handler instanceof ConsoleHandler) {
+                ((ConsoleHandler)handler).setFormatter(new LogFormatter());
+                handler.setLevel(config.getLogLevel());
+            }
+        }
+
+        loggingConfigured = true;
+    }
+
+    /**
+     * Returns the number of bytes of the heap that are in use after a garbage collection
+     */
+    private static long getUsedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Report how much memory the model takes so the heap size needed
+     * for larger schemas can be estimated.
+     * This is approximate since anything else that's running
+     * (e.g. the analysis of other schemas) also uses memory.
+     *
+     * @param db
+     * @param modelBytes
+     */
+    private void logMemoryUsage(Database db, long modelBytes) {
+        int numTables = 0;
+        int numColumns = 0;
+        List<Table> tables = new ArrayList<Table>(db.getTables());
+        tables.addAll(db.getViews());
+        for (Table table : tables) {
+            ++numTables;
+            numColumns += table.getColumns().size();
+        }
+
+        Runtime runtime = Runtime.getRuntime();
+        logger.fine(String.format("Model of %d tables and %d columns uses about %,d bytes (%,d per table, %,d per column); %,d of a maximum %,d bytes of heap used",
+                    numTables, numColumns, modelBytes,
+                    modelBytes / Math.max(numTables, 1), modelBytes / Math.max(numColumns, 1),
+                    runtime.totalMemory() - runtime.freeMemory(), runtime.maxMemory()));
+    }
+
+    /**
+     * Returns the settings that affect the contents of the generated pages.
+     * Changing any of them invalidates the pages that were previously generated.
+     *
+     * @param config
+     * @return
+     * @throws IOException
+     */
+    private static List<String> getSnapshotSettings(Config config) throws IOException {
+        List<String> settings = new ArrayList<String>();
+        settings.add(new Revision().toString());
+        settings.add(String.valueOf(Dot.getInstance().getVersion()));
+
+        // these determine which tabs every page has
+        settings.add("hasOrphans=" + config.hasOrphans());
+        settings.add("hasRoutines=" + config.hasRoutines());
+
+        // keep the password out of it
+        for (Iterator<String> iter = config.asList().iterator(); iter.hasNext(); ) {
+            String setting = iter.next();
+            if (setting.equals("-p") && iter.hasNext())
+                iter.next();
+            else
+                settings.add(setting);
+        }
+
+        return settings;
+    }
+
     /**
      * dumpNoDataMessage
      *
@@ -553,7 +826,12 @@ public class SchemaAnalyzer {
         }
     }
 
-    protected Connection getConnection(Config config, String connectionURL,
+    /**
+     * Connect to the database, returning a pool whose primary connection is the one
+     * that was just opened.  The pool opens additional connections (up to
+     * <code>-dbThreads</code> of them) as they're needed.
+     */
+    protected ConnectionPool getConnectionPool(Config config, String connectionURL,
                       String driverClass, String driverPath) throws FileNotFoundException, IOException {
         if (logger.isLoggable(Level.INFO)) {
             logger.info("Using database properties:");
@@ -604,7 +882,7 @@ public class SchemaAnalyzer {
             throw new ConnectionFailure(exc);
         }
 
-        return connection;
+        return new ConnectionPool(connection, driver, connectionURL, connectionProperties, config.getMaxDbThreads());
     }
 
     /**
@@ -617,6 +895,13 @@ public class SchemaAnalyzer {
      * @throws MalformedURLException
      */
     protected Driver getDriver(String driverClass, String driverPath) throws MalformedURLException {
+        String driverKey = driverClass + File.pathSeparator + driverPath;
+        synchronized (loadedDrivers) {
+            Driver driver = loadedDrivers.get(driverKey);
+            if (driver != null)
+                return driver;
+        }
+
         List<URL> classpath = getExistingUrls(driverPath);
         ClassLoader loader = getDriverClassLoader(classpath);
         Driver driver = null;
@@ -650,6 +935,10 @@ public class SchemaAnalyzer {
             throw new ConnectionFailure(exc);
         }
 
+        synchronized (loadedDrivers) {
+            loadedDrivers.put(driverKey, driver);
+        }
+
         return driver;
     }
 
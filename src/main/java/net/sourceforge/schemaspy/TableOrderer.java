@@ -19,19 +19,25 @@
 package net.sourceforge.schemaspy;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Comparator;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
 import net.sourceforge.schemaspy.model.ForeignKeyConstraint;
+import net.sourceforge.schemaspy.model.RelationshipGraph;
 import net.sourceforge.schemaspy.model.Table;
+import net.sourceforge.schemaspy.model.TableColumn;
 
 /**
  * Sorts {@link Table}s by their referential integrity constraints.
  * The intent is to have a list of tables in an order that can be used
- * to insert or delete them from a database.
+ * to insert or delete them from a database.<p/>
+ *
+ * The tables are peeled off of the {@link RelationshipGraph} of their database
+ * a level at a time.  Relationships are "removed" by marking them in the
+ * orderer's own state so the model itself isn't changed.
  *
  * @author John Currier
  */
@@ -46,149 +52,316 @@ public class TableOrderer {
      * @return
      */
     public List<Table> getTablesOrderedByRI(Collection<Table> tables, Collection<ForeignKeyConstraint> recursiveConstraints) {
-        List<Table> heads = new ArrayList<Table>();
-        List<Table> tails = new ArrayList<Table>();
-        List<Table> remainingTables = new ArrayList<Table>(tables);
-        List<Table> unattached = new ArrayList<Table>();
-
-        // first pass to gather the 'low hanging fruit'
-        for (Iterator<Table> iter = remainingTables.iterator(); iter.hasNext(); ) {
-            Table table = iter.next();
-            if (table.isRemote()) {
-                // ignore remote tables since there's no way to deal with them
-                table.unlinkParents();
-                table.unlinkChildren();
-                iter.remove();
-            } else if (table.isLeaf() && table.isRoot()) {
-                // floater, so add it to 'unattached'
-                unattached.add(table);
-                iter.remove();
+        if (tables.isEmpty())
+            return new ArrayList<Table>();
+
+        RelationshipGraph graph = tables.iterator().next().getDatabase().getRelationshipGraph();
+        return new Ordering(graph).order(tables, recursiveConstraints);
+    }
+
+    /**
+     * State of a single ordering: the relationships that remain
+     * and the tables that have yet to be trimmed.
+     */
+    private static class Ordering {
+        private final RelationshipGraph graph;
+        private final BitSet removedEdges;
+        private final int[] numParents;
+        private final int[] numChildren;
+        private final boolean[] remaining;
+        private final BitSet roots;
+        private final BitSet leaves;
+        private int[] remainingTables;
+        private int numRemaining;
+
+        Ordering(RelationshipGraph graph) {
+            this.graph = graph;
+            int numTables = graph.getNumTables();
+            removedEdges = new BitSet(graph.getNumEdges());
+            numParents = new int[numTables];
+            numChildren = new int[numTables];
+            for (int edge = 0; edge < graph.getNumEdges(); ++edge) {
+                ++numParents[graph.getChildTable(edge)];
+                ++numChildren[graph.getParentTable(edge)];
             }
+            remaining = new boolean[numTables];
+            roots = new BitSet(numTables);
+            leaves = new BitSet(numTables);
         }
 
-        unattached = sortTrimmedLevel(unattached);
-        boolean prunedNonReals = false;
+        List<Table> order(Collection<Table> tables, Collection<ForeignKeyConstraint> recursiveConstraints) {
+            List<List<Table>> tailLevels = new ArrayList<List<Table>>();
+            List<Table> heads = new ArrayList<Table>();
+            List<Table> unattached = new ArrayList<Table>();
+            remainingTables = new int[tables.size()];
 
-        while (!remainingTables.isEmpty()) {
-            int tablesLeft = remainingTables.size();
-            tails.addAll(0, trimLeaves(remainingTables));
-            heads.addAll(trimRoots(remainingTables));
+            // first pass to gather the 'low hanging fruit'
+            for (Table table : tables) {
+                int id = graph.getTableId(table);
+                if (table.isRemote()) {
+                    // ignore remote tables since there's no way to deal with them
+                    unlinkParents(id);
+                    unlinkChildren(id);
+                } else if (numParents[id] == 0 && numChildren[id] == 0) {
+                    // floater, so add it to 'unattached'
+                    unattached.add(table);
+                } else {
+                    remaining[id] = true;
+                    remainingTables[numRemaining++] = id;
+                }
+            }
 
-            // if we could't trim anything then there's recursion....
-            // resolve it by removing a constraint, one by one, 'till the tables are all trimmed
-            if (tablesLeft == remainingTables.size()) {
-                if (!prunedNonReals) {
-                    // get ride of everything that isn't explicitly specified by the database
-                    for (Table table : remainingTables) {
-                        table.removeNonRealForeignKeys();
-                    }
+            unattached = sortTrimmedLevel(unattached);
+            for (int i = 0; i < numRemaining; ++i) {
+                int id = remainingTables[i];
+                if (numParents[id] == 0)
+                    roots.set(id);
+                if (numChildren[id] == 0)
+                    leaves.set(id);
+            }
 
-                    prunedNonReals = true;
-                    continue;
-                }
+            boolean prunedNonReals = false;
+
+            while (numRemaining > 0) {
+                int tablesLeft = numRemaining;
+                tailLevels.add(trimLeaves());
+                heads.addAll(trimRoots());
+
+                // if we could't trim anything then there's recursion....
+                // resolve it by removing a constraint, one by one, 'till the tables are all trimmed
+                if (tablesLeft == numRemaining) {
+                    compactRemaining();
 
-                boolean foundSimpleRecursion = false;
-                for (Table potentialRecursiveTable : remainingTables) {
-                    ForeignKeyConstraint recursiveConstraint = potentialRecursiveTable.removeSelfReferencingConstraint();
-                    if (recursiveConstraint != null) {
-                        recursiveConstraints.add(recursiveConstraint);
-                        foundSimpleRecursion = true;
+                    if (!prunedNonReals) {
+                        // get ride of everything that isn't explicitly specified by the database
+                        for (int i = 0; i < numRemaining; ++i)
+                            removeNonRealForeignKeys(remainingTables[i]);
+
+                        prunedNonReals = true;
+                        continue;
                     }
-                }
 
-                if (!foundSimpleRecursion) {
-                    // expensive comparison, but we're down to the end of the tables so it shouldn't really matter
-                    Set<Table> byParentChildDelta = new TreeSet<Table>(new Comparator<Table>() {
-                        // sort on the delta between number of parents and kids so we can
-                        // target the tables with the biggest delta and therefore the most impact
-                        // on reducing the smaller of the two
-                        public int compare(Table table1, Table table2) {
-                            int rc = Math.abs(table2.getNumChildren() - table2.getNumParents()) - Math.abs(table1.getNumChildren() - table1.getNumParents());
+                    boolean foundSimpleRecursion = false;
+                    for (int i = 0; i < numRemaining; ++i) {
+                        ForeignKeyConstraint recursiveConstraint = removeSelfReferencingConstraint(remainingTables[i]);
+                        if (recursiveConstraint != null) {
+                            recursiveConstraints.add(recursiveConstraint);
+                            foundSimpleRecursion = true;
+                        }
+                    }
+
+                    if (!foundSimpleRecursion) {
+                        // target the table with the biggest delta between number of parents and kids
+                        // and therefore the most impact on reducing the smaller of the two
+                        int recursiveTable = remainingTables[0];
+                        for (int i = 1; i < numRemaining; ++i) {
+                            int id = remainingTables[i];
+                            int rc = getDelta(id) - getDelta(recursiveTable);
                             if (rc == 0)
-                                rc = table1.compareTo(table2);
-                            return rc;
+                                rc = graph.getTable(recursiveTable).compareTo(graph.getTable(id));
+                            if (rc > 0)
+                                recursiveTable = id;
                         }
-                    });
-                    byParentChildDelta.addAll(remainingTables);
-                    Table recursiveTable = byParentChildDelta.iterator().next(); // this one has the largest delta
-                    ForeignKeyConstraint removedConstraint = recursiveTable.removeAForeignKeyConstraint();
-                    recursiveConstraints.add(removedConstraint);
+                        recursiveConstraints.add(removeAForeignKeyConstraint(recursiveTable));
+                    }
                 }
             }
+
+            // we've gathered all the heads and tails, so combine them here moving 'unattached' tables to the end
+            List<Table> ordered = new ArrayList<Table>(tables.size());
+            ordered.addAll(heads);
+            for (int i = tailLevels.size() - 1; i >= 0; --i)
+                ordered.addAll(tailLevels.get(i));
+            ordered.addAll(unattached);
+
+            return ordered;
         }
 
-        // we've gathered all the heads and tails, so combine them here moving 'unattached' tables to the end
-        List<Table> ordered = new ArrayList<Table>(heads.size() + tails.size());
+        /**
+         * Remove the root nodes (tables w/o parents)
+         *
+         * @return tables removed
+         */
+        private List<Table> trimRoots() {
+            List<Table> trimmed = trim(roots);
 
-        ordered.addAll(heads);
-        heads = null; // allow gc ASAP
+            // do this after trimming to prevent getting roots before they're ready
+            // and so we can sort them correctly
+            for (Table root : trimmed)
+                unlinkChildren(graph.getTableId(root));
 
-        ordered.addAll(tails);
-        tails = null; // allow gc ASAP
+            return trimmed;
+        }
 
-        ordered.addAll(unattached);
+        /**
+         * Remove the leaf nodes (tables w/o children)
+         *
+         * @return tables removed
+         */
+        private List<Table> trimLeaves() {
+            List<Table> trimmed = trim(leaves);
 
-        return ordered;
-    }
+            // do this after trimming to prevent getting leaves before they're ready
+            // and so we can sort them correctly
+            for (Table leaf : trimmed)
+                unlinkParents(graph.getTableId(leaf));
 
-    /**
-     * Remove the root nodes (tables w/o parents)
-     *
-     * @param tables
-     * @return tables removed
-     */
-    private static List<Table> trimRoots(List<Table> tables) {
-        List<Table> roots = new ArrayList<Table>();
-
-        Iterator<Table> iter = tables.iterator();
-        while (iter.hasNext()) {
-            Table root = iter.next();
-            if (root.isRoot()) {
-                roots.add(root);
-                iter.remove();
+            return trimmed;
+        }
+
+        /**
+         * Remove the specified tables from the remaining tables
+         *
+         * @param level the ids of the tables to trim
+         * @return the trimmed tables sorted so the ones with large numbers of children show up first
+         */
+        private List<Table> trim(BitSet level) {
+            List<Table> trimmed = new ArrayList<Table>(level.cardinality());
+            for (int id = level.nextSetBit(0); id >= 0; id = level.nextSetBit(id + 1)) {
+                trimmed.add(graph.getTable(id));
+                remaining[id] = false;
+                --numRemaining;
+            }
+
+            for (Table table : trimmed) {
+                int id = graph.getTableId(table);
+                roots.clear(id);
+                leaves.clear(id);
             }
+
+            return sortTrimmedLevel(trimmed);
         }
 
-        // now sort them so the ones with large numbers of children show up first (not required, but cool)
-        roots = sortTrimmedLevel(roots);
-        iter = roots.iterator();
-        while (iter.hasNext()) {
-            // do this after the previous loop to prevent getting roots before they're ready
-            // and so we can sort them correctly
-            iter.next().unlinkChildren();
+        /**
+         * Drop the trimmed tables from <code>remainingTables</code>,
+         * preserving the order of the others
+         */
+        private void compactRemaining() {
+            int kept = 0;
+            for (int i = 0; kept < numRemaining; ++i) {
+                if (remaining[remainingTables[i]])
+                    remainingTables[kept++] = remainingTables[i];
+            }
         }
 
-        return roots;
-    }
+        private int getDelta(int table) {
+            return Math.abs(numChildren[table] - numParents[table]);
+        }
 
-    /**
-     * Remove the leaf nodes (tables w/o children)
-     *
-     * @param tables
-     * @return tables removed
-     */
-    private static List<Table> trimLeaves(List<Table> tables) {
-        List<Table> leaves = new ArrayList<Table>();
-
-        Iterator<Table> iter = tables.iterator();
-        while (iter.hasNext()) {
-            Table leaf = iter.next();
-            if (leaf.isLeaf()) {
-                leaves.add(leaf);
-                iter.remove();
+        private void removeEdge(int edge) {
+            if (removedEdges.get(edge))
+                return;
+            removedEdges.set(edge);
+
+            int child = graph.getChildTable(edge);
+            int parent = graph.getParentTable(edge);
+            if (--numParents[child] == 0 && remaining[child])
+                roots.set(child);
+            if (--numChildren[parent] == 0 && remaining[parent])
+                leaves.set(parent);
+        }
+
+        /**
+         * "Unlink" all of the parent tables from the table
+         */
+        private void unlinkParents(int table) {
+            int end = graph.getParentEdgesEnd(table);
+            for (int edge = graph.getParentEdgesStart(table); edge < end; ++edge)
+                removeEdge(edge);
+        }
+
+        /**
+         * "Unlink" all of the child tables from the table
+         */
+        private void unlinkChildren(int table) {
+            int end = graph.getChildEdgesEnd(table);
+            for (int i = graph.getChildEdgesStart(table); i < end; ++i)
+                removeEdge(graph.getChildEdge(i));
+        }
+
+        /**
+         * Remove all of the remaining relationships of the table's constraint
+         */
+        private ForeignKeyConstraint remove(int table, ForeignKeyConstraint constraint) {
+            int end = graph.getParentEdgesEnd(table);
+            for (int edge = graph.getParentEdgesStart(table); edge < end; ++edge) {
+                if (graph.getConstraint(edge) == constraint)
+                    removeEdge(edge);
             }
+            return constraint;
         }
 
-        // now sort them so the ones with large numbers of children show up first (not required, but cool)
-        leaves = sortTrimmedLevel(leaves);
-        iter = leaves.iterator();
-        while (iter.hasNext()) {
-            // do this after the previous loop to prevent getting leaves before they're ready
-            // and so we can sort them correctly
-            iter.next().unlinkParents();
+        /**
+         * Remove any non-real foreign keys from the table
+         */
+        private void removeNonRealForeignKeys(int table) {
+            int end = graph.getParentEdgesEnd(table);
+            for (int edge = graph.getParentEdgesStart(table); edge < end; ++edge) {
+                if (graph.getKind(edge) != RelationshipGraph.REAL)
+                    removeEdge(edge);
+            }
         }
 
-        return leaves;
+        /**
+         * Remove a single self referencing constraint if one exists.
+         *
+         * @return the removed constraint or <code>null</code>
+         */
+        private ForeignKeyConstraint removeSelfReferencingConstraint(int table) {
+            for (int edge : graph.getSelfReferencingEdges(table)) {
+                if (!removedEdges.get(edge))
+                    return remove(table, graph.getConstraint(edge));
+            }
+            return null;
+        }
+
+        /**
+         * Remove one relationship from the table, choosing a child or parent
+         * based on which has the least number of associations
+         * (when either gets to zero then the table can be pruned).<p/>
+         *
+         * The columns' relationships are visited in the same order that the
+         * model would have removed them in.
+         */
+        private ForeignKeyConstraint removeAForeignKeyConstraint(int table) {
+            boolean removeParent = numParents[table] <= numChildren[table];
+
+            for (TableColumn column : graph.getTable(table).getColumns()) {
+                if (removeParent) {
+                    for (TableColumn parent : column.getParents()) {
+                        int edge = findEdge(table, column, parent);
+                        if (edge >= 0 && !removedEdges.get(edge)) {
+                            removeEdge(edge);
+                            return graph.getConstraint(edge);
+                        }
+                    }
+                } else {
+                    for (TableColumn child : column.getChildren()) {
+                        int childTable = graph.getTableId(child.getTable());
+                        int edge = childTable < 0 ? -1 : findEdge(childTable, child, column);
+                        if (edge >= 0 && !removedEdges.get(edge)) {
+                            removeEdge(edge);
+                            return graph.getConstraint(edge);
+                        }
+                    }
+                }
+            }
+
+            return null;
+        }
+
+        /**
+         * Returns the edge from <code>childColumn</code> to <code>parentColumn</code>
+         * or <code>-1</code> if they're not related
+         */
+        private int findEdge(int childTable, TableColumn childColumn, TableColumn parentColumn) {
+            int end = graph.getParentEdgesEnd(childTable);
+            for (int edge = graph.getParentEdgesStart(childTable); edge < end; ++edge) {
+                if (graph.getChildColumn(edge) == childColumn && graph.getParentColumn(edge) == parentColumn)
+                    return edge;
+            }
+            return -1;
+        }
     }
 
     /**
@@ -0,0 +1,549 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010, 2011 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.model;
+
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import net.sourceforge.schemaspy.Config;
+
+/**
+ * Loads the columns, indexes, primary keys and foreign keys of all of the
+ * tables and views in a schema with a few schema-wide queries instead of
+ * several {@link DatabaseMetaData} round trips per table.<p/>
+ *
+ * Each type of detail is loaded with the corresponding
+ * <code>selectAll*Sql</code> property of the database type if it's defined.
+ * Columns that aren't defined that way come from a single call to
+ * {@link DatabaseMetaData#getColumns(String, String, String, String)}
+ * for the whole schema.<p/>
+ *
+ * Anything that can't be loaded in bulk falls back to the original
+ * table-by-table queries, which {@link #verify()} can also compare
+ * the bulk results with.  A bulk query that fails part way through
+ * first takes back whatever it had added so that no table is left with
+ * only some of its details.<p/>
+ *
+ * The <code>selectAll*Sql</code> of database types whose properties say
+ * <code>bulkMetadataVerified=false</code> haven't been validated against
+ * a live database, so they're only used when they're being {@link #verify() verified}.
+ */
+class BulkMetadataLoader {
+    private final Database db;
+    private final Map<String, Table> tables;
+    private final boolean queriesEnabled;
+    private final Logger logger = Logger.getLogger(getClass().getName());
+    private final boolean fineEnabled = logger.isLoggable(Level.FINE);
+
+    /**
+     * @param db
+     * @param tables the tables and views to populate, keyed by name
+     */
+    BulkMetadataLoader(Database db, Map<String, Table> tables) {
+        this.db = db;
+        this.tables = tables;
+
+        Config config = Config.getInstance();
+        boolean verified = !"false".equalsIgnoreCase(config.getDbProperties().getProperty("bulkMetadataVerified"));
+        queriesEnabled = verified || config.isBulkMetadataVerificationEnabled();
+        if (!queriesEnabled)
+            logger.warning("The schema-wide queries of this database type haven't been validated against a live database, " +
+                           "so its metadata is loaded through the driver instead.  Use -verifybulkmeta to try them.");
+    }
+
+    /**
+     * Populate the columns, indexes and primary keys of all of the
+     * tables and views that were created without them.
+     *
+     * @throws SQLException
+     */
+    void load() throws SQLException {
+        loadColumns();
+        loadIndexes();
+        loadPrimaryKeys();
+
+        for (Table table : tables.values())
+            table.storeIndexes();
+    }
+
+    /**
+     * "Connect" the foreign keys of all of the tables and views.
+     *
+     * @see Table#connectForeignKeys(Map)
+     * @throws SQLException
+     */
+    void connectForeignKeys() throws SQLException {
+        Set<Table> connected = new HashSet<Table>();
+        String sql = getProperty("selectAllForeignKeysSql");
+
+        if (sql == null || !query(sql, new ForeignKeyHandler(connected))) {
+            for (Table table : connected)
+                table.clearForeignKeys();
+            for (Table table : tables.values())
+                table.connectForeignKeys(tables);
+        }
+    }
+
+    /**
+     * Compare the columns, indexes, primary keys and foreign keys of every
+     * table with the ones returned by the original table-by-table queries
+     * and log any differences.<p/>
+     *
+     * Intended for validating the <code>selectAll*Sql</code> queries of a
+     * database type, so it's only done when explicitly requested.
+     * Must be called after {@link #connectForeignKeys()}.
+     */
+    void verify() {
+        int verified = 0;
+        int mismatched = 0;
+
+        for (Table table : tables.values()) {
+            if (table.isView() || table.isRemote())
+                continue;
+
+            Set<String> bulk = describe(table);
+            Set<String> individual;
+
+            try {
+                // populated table-by-table but never connected to the rest of the model
+                Table reference = new Table(db, table.getCatalog(), table.getSchema(), table.getName(), null, true);
+                individual = describe(reference);
+                individual.addAll(describeImportedKeys(table));
+            } catch (SQLException exc) {
+                logger.warning("Unable to verify the bulk metadata of " + table.getFullName() + ": " + exc);
+                continue;
+            }
+
+            ++verified;
+            if (!bulk.equals(individual)) {
+                ++mismatched;
+                Set<String> onlyBulk = new TreeSet<String>(bulk);
+                onlyBulk.removeAll(individual);
+                Set<String> onlyIndividual = new TreeSet<String>(individual);
+                onlyIndividual.removeAll(bulk);
+
+                logger.warning("Bulk metadata of " + table.getFullName() + " differs from its table-by-table metadata:" +
+                                (onlyBulk.isEmpty() ? "" : "\n  only in bulk: " + onlyBulk) +
+                                (onlyIndividual.isEmpty() ? "" : "\n  only table-by-table: " + onlyIndividual));
+            }
+        }
+
+        logger.info("Verified the bulk metadata of " + verified + " tables: " +
+                    (mismatched == 0 ? "no differences" : mismatched + " differed"));
+    }
+
+    /**
+     * Returns a comparable description of the columns, indexes, primary key
+     * and foreign keys of <code>table</code>.<p/>
+     *
+     * Columns are described by their short types because <code>selectColumnTypesSql</code>
+     * has already replaced the full types of the tables being verified but
+     * not those of the tables that they're compared with.
+     */
+    private static Set<String> describe(Table table) {
+        Set<String> details = new TreeSet<String>();
+
+        for (TableColumn column : table.getColumns()) {
+            details.add("column " + column.getName() + " #" + column.getId() + " " +
+                        column.getShortType().toUpperCase() + "(" + column.getDetailedSize() + ")" +
+                        (column.isNullable() ? " null" : " not null") +
+                        (column.isAutoUpdated() ? " auto" : "") +
+                        " default " + column.getDefaultValue());
+        }
+
+        for (TableIndex index : table.getIndexes()) {
+            details.add("index " + index.getName() + (index.isUnique() ? " unique " : " ") +
+                        index.getColumnsAsString() + (index.isPrimaryKey() ? " primary" : ""));
+        }
+
+        if (!table.getPrimaryColumns().isEmpty())
+            details.add("primary key " + ForeignKeyConstraint.toString(table.getPrimaryColumns()));
+
+        for (ForeignKeyConstraint foreignKey : table.getForeignKeys()) {
+            List<TableColumn> childColumns = foreignKey.getChildColumns();
+            List<TableColumn> parentColumns = foreignKey.getParentColumns();
+
+            for (int i = 0; i < childColumns.size(); ++i) {
+                TableColumn parentColumn = i < parentColumns.size() ? parentColumns.get(i) : null;
+                details.add(describeForeignKey(foreignKey.getName(), childColumns.get(i).getName(),
+                                               parentColumn == null ? null : parentColumn.getTable().getName(),
+                                               parentColumn == null ? null : parentColumn.getName(),
+                                               foreignKey.getUpdateRule(), foreignKey.getDeleteRule()));
+            }
+        }
+
+        return details;
+    }
+
+    /**
+     * Returns descriptions of the foreign keys that
+     * {@link Table#connectForeignKeys(Map)} would add to <code>table</code>
+     */
+    private Set<String> describeImportedKeys(Table table) throws SQLException {
+        Set<String> details = new TreeSet<String>();
+        Pattern include = Config.getInstance().getTableInclusions();
+        Pattern exclude = Config.getInstance().getTableExclusions();
+        ResultSet rs = null;
+
+        try {
+            rs = db.getMetaData().getImportedKeys(table.getCatalog(), table.getSchema(), table.getName());
+            db.applyFetchSize(rs);
+
+            while (rs.next()) {
+                String fkName = rs.getString("FK_NAME");
+                String pkTableName = rs.getString("PKTABLE_NAME");
+                if (fkName == null || !include.matcher(pkTableName).matches() || exclude.matcher(pkTableName).matches())
+                    continue;
+
+                details.add(describeForeignKey(fkName, rs.getString("FKCOLUMN_NAME"),
+                                               pkTableName, rs.getString("PKCOLUMN_NAME"),
+                                               rs.getInt("UPDATE_RULE"), rs.getInt("DELETE_RULE")));
+            }
+        } finally {
+            if (rs != null)
+                rs.close();
+        }
+
+        return details;
+    }
+
+    private static String describeForeignKey(String fkName, String childColumn, String parentTable, String parentColumn, int updateRule, int deleteRule) {
+        return "foreign key " + fkName + " " + childColumn + " -> " + parentTable + "." + parentColumn +
+                " on update " + updateRule + " on delete " + deleteRule;
+    }
+
+    /**
+     * Load the columns of every table and view.<p/>
+     *
+     * Every table has at least one column, so any that didn't get
+     * any from the bulk query are initialized individually.
+     *
+     * @throws SQLException
+     */
+    private void loadColumns() throws SQLException {
+        ColumnHandler handler = new ColumnHandler();
+        String sql = getProperty("selectAllColumnsSql");
+
+        if (sql == null || !query(sql, handler)) {
+            handler.rollBack();
+            ResultSet rs = null;
+
+            try {
+                if (fineEnabled)
+                    logger.fine("Querying columns of all tables in " + db.getSchema());
+
+                rs = db.getMetaData().getColumns(db.getCatalog(), db.getSchema(), "%", "%");
+                db.applyFetchSize(rs);
+                handler.handle(rs);
+            } catch (SQLException exc) {
+                logger.warning("Failed to collect column details for schema '" + db.getSchema() + "': " + exc);
+                handler.rollBack();
+            } finally {
+                if (rs != null)
+                    rs.close();
+            }
+        }
+
+        for (Table table : tables.values()) {
+            if (!handler.populated.contains(table))
+                table.initColumns();
+            else if (handler.autoUpdateUnknown.contains(table))
+                table.initColumnAutoUpdate(false);
+        }
+
+        if (fineEnabled)
+            logger.fine("Loaded columns of " + handler.populated.size() + " of " + tables.size() + " tables in bulk");
+
+        loadColumnDefaults();
+    }
+
+    /**
+     * Load the default values of the columns with <code>selectAllColumnDefaultsSql</code>
+     * if it's defined.<p/>
+     *
+     * Some databases (e.g. Oracle) keep defaults in types that force their
+     * drivers to fetch a row at a time, so they're better read separately from
+     * the rest of the columns and only for the columns that have them.
+     */
+    private void loadColumnDefaults() {
+        String sql = getProperty("selectAllColumnDefaultsSql");
+        if (sql == null)
+            return;
+
+        query(sql, new RowHandler() {
+            public void handle(ResultSet rs) throws SQLException {
+                while (rs.next()) {
+                    Table table = tables.get(rs.getString("TABLE_NAME"));
+                    TableColumn column = table == null ? null : table.getColumn(rs.getString("COLUMN_NAME"));
+                    if (column != null)
+                        column.setDefaultValue(rs.getString("COLUMN_DEF"));
+                }
+            }
+        });
+    }
+
+    /**
+     * Load the indexes of every table.
+     * Falls back to individual queries if the bulk query isn't available
+     * or fails.
+     *
+     * @throws SQLException
+     */
+    private void loadIndexes() throws SQLException {
+        final Set<Table> populated = new HashSet<Table>();
+        String sql = getProperty("selectAllIndexesSql");
+
+        boolean loaded = sql != null && query(sql, new RowHandler() {
+            public void handle(ResultSet rs) throws SQLException {
+                while (rs.next()) {
+                    if (rs.getShort("TYPE") == DatabaseMetaData.tableIndexStatistic)
+                        continue;
+
+                    Table table = tables.get(rs.getString("TABLE_NAME"));
+                    if (table != null && !table.isView() && !table.isRemote()) {
+                        table.addIndex(rs);
+                        populated.add(table);
+                    }
+                }
+            }
+        });
+
+        if (!loaded) {
+            for (Table table : populated)
+                table.clearIndexes();
+            for (Table table : tables.values())
+                table.initIndexes();
+        }
+    }
+
+    /**
+     * Load the primary keys of every table.
+     * Falls back to individual queries if the bulk query isn't available
+     * or fails.
+     *
+     * @throws SQLException
+     */
+    private void loadPrimaryKeys() throws SQLException {
+        final Set<Table> populated = new HashSet<Table>();
+        String sql = getProperty("selectAllPrimaryKeysSql");
+
+        boolean loaded = sql != null && query(sql, new RowHandler() {
+            public void handle(ResultSet rs) throws SQLException {
+                while (rs.next()) {
+                    Table table = tables.get(rs.getString("TABLE_NAME"));
+                    if (table != null) {
+                        table.setPrimaryColumn(rs);
+                        populated.add(table);
+                    }
+                }
+            }
+        });
+
+        if (!loaded) {
+            for (Table table : populated)
+                table.clearPrimaryKeys();
+            for (Table table : tables.values())
+                table.initPrimaryKeys();
+        }
+    }
+
+    /**
+     * Run the specified schema-level query and feed its results to <code>handler</code>.
+     *
+     * @param sql
+     * @param handler
+     * @return <code>false</code> if the query failed
+     */
+    private boolean query(String sql, RowHandler handler) {
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+
+        try {
+            stmt = db.prepareStatement(sql, null);
+            rs = stmt.executeQuery();
+            handler.handle(rs);
+            return true;
+        } catch (SQLException sqlException) {
+            logger.warning("Failed to load schema details with SQL: " + sql);
+            logger.warning(sqlException.toString());
+            return false;
+        } finally {
+            if (rs != null) {
+                try {
+                    rs.close();
+                } catch (Exception exc) {
+                    exc.printStackTrace();
+                }
+            }
+            if (stmt != null) {
+                try {
+                    stmt.close();
+                } catch (Exception exc) {
+                    exc.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the schema-wide query with the specified name,
+     * or <code>null</code> if it's not defined or not to be used
+     */
+    private String getProperty(String name) {
+        if (!queriesEnabled)
+            return null;
+        return Config.getInstance().getDbProperties().getProperty(name);
+    }
+
+    /**
+     * Returns <code>true</code> if the specified catalog and schema
+     * (either of which can be <code>null</code> if unknown) are where
+     * <code>table</code> lives.
+     */
+    private static boolean isIn(Table table, String catalog, String schema) {
+        return (schema == null || schema.equals(table.getSchema())) &&
+               (catalog == null || table.getCatalog() == null || catalog.equals(table.getCatalog()));
+    }
+
+    /**
+     * Returns the upper-cased names of the columns in the result set
+     * so optional columns can be read without provoking exceptions.
+     */
+    private static Set<String> getColumnLabels(ResultSet rs) throws SQLException {
+        Set<String> labels = new HashSet<String>();
+        ResultSetMetaData rsMeta = rs.getMetaData();
+        for (int i = rsMeta.getColumnCount(); i > 0; --i)
+            labels.add(rsMeta.getColumnLabel(i).toUpperCase());
+        return labels;
+    }
+
+    private static String getOptionalString(ResultSet rs, Set<String> labels, String columnName) throws SQLException {
+        return labels.contains(columnName) ? rs.getString(columnName) : null;
+    }
+
+    /**
+     * Consumes the rows returned by a schema-level query
+     */
+    private interface RowHandler {
+        void handle(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * Distributes the rows of {@link DatabaseMetaData#getColumns(String, String, String, String)}
+     * (or <code>selectAllColumnsSql</code>) to the tables that they belong to
+     */
+    private class ColumnHandler implements RowHandler {
+        final Set<Table> populated = new HashSet<Table>();
+        final Set<Table> autoUpdateUnknown = new HashSet<Table>();
+
+        /**
+         * Take back the columns that have been added so far
+         */
+        void rollBack() {
+            for (Table table : populated)
+                table.clearColumns();
+            populated.clear();
+            autoUpdateUnknown.clear();
+        }
+
+        public void handle(ResultSet rs) throws SQLException {
+            Set<String> labels = getColumnLabels(rs);
+            boolean hasAutoIncrement = labels.contains("IS_AUTOINCREMENT");
+
+            while (rs.next()) {
+                Table table = tables.get(rs.getString("TABLE_NAME"));
+                if (table == null || !isIn(table, getOptionalString(rs, labels, "TABLE_CAT"), getOptionalString(rs, labels, "TABLE_SCHEM")))
+                    continue;
+
+                String columnName = rs.getString("COLUMN_NAME");
+                if (columnName == null)
+                    continue;
+
+                table.addColumn(rs);
+                populated.add(table);
+
+                // JDBC 4 drivers tell us if the column is auto-incremented, which
+                // saves us from having to select from each table to find out
+                String autoIncrement = hasAutoIncrement ? rs.getString("IS_AUTOINCREMENT") : null;
+                TableColumn column = table.getColumn(columnName);
+                if ("YES".equalsIgnoreCase(autoIncrement))
+                    column.setIsAutoUpdated(true);
+                else if (!"NO".equalsIgnoreCase(autoIncrement))
+                    autoUpdateUnknown.add(table);
+            }
+        }
+    }
+
+    /**
+     * Distributes the rows of <code>selectAllForeignKeysSql</code> to the tables
+     * that they belong to.<p/>
+     *
+     * The rows have the same columns as
+     * {@link DatabaseMetaData#getImportedKeys(String, String, String)}
+     * and include the keys from other schemas that reference our tables
+     * so those tables can be included as remote tables.
+     */
+    private class ForeignKeyHandler implements RowHandler {
+        private final Set<Table> connected;
+
+        ForeignKeyHandler(Set<Table> connected) {
+            this.connected = connected;
+        }
+
+        public void handle(ResultSet rs) throws SQLException {
+            Set<String> labels = getColumnLabels(rs);
+
+            while (rs.next()) {
+                String fkCatalog = getOptionalString(rs, labels, "FKTABLE_CAT");
+                String fkSchema = getOptionalString(rs, labels, "FKTABLE_SCHEM");
+                String fkTableName = rs.getString("FKTABLE_NAME");
+                String pkCatalog = getOptionalString(rs, labels, "PKTABLE_CAT");
+                String pkSchema = getOptionalString(rs, labels, "PKTABLE_SCHEM");
+                String pkTableName = rs.getString("PKTABLE_NAME");
+
+                Table child = tables.get(fkTableName);
+                if (child != null && isIn(child, fkCatalog, fkSchema)) {
+                    child.addForeignKey(rs.getString("FK_NAME"), rs.getString("FKCOLUMN_NAME"),
+                            pkCatalog, pkSchema, pkTableName, rs.getString("PKCOLUMN_NAME"),
+                            rs.getInt("UPDATE_RULE"), rs.getInt("DELETE_RULE"),
+                            tables);
+                    connected.add(child);
+                } else {
+                    // a table in another schema that references one of ours
+                    Table parent = tables.get(pkTableName);
+                    if (parent != null && isIn(parent, pkCatalog, pkSchema) &&
+                            (parent.getSchema() != null || parent.getCatalog() != null) &&
+                            !isIn(parent, fkCatalog, fkSchema)) {
+                        db.addRemoteTable(fkCatalog, fkSchema, fkTableName, parent.getSchema(), false);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -18,11 +18,16 @@
  */
 package net.sourceforge.schemaspy.model;
 
+import java.io.File;
+import java.io.IOException;
+import java.sql.Clob;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -30,12 +35,16 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.MissingResourceException;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -44,6 +53,7 @@ import net.sourceforge.schemaspy.Config;
 import net.sourceforge.schemaspy.model.xml.SchemaMeta;
 import net.sourceforge.schemaspy.model.xml.TableMeta;
 import net.sourceforge.schemaspy.util.CaseInsensitiveMap;
+import net.sourceforge.schemaspy.util.ConnectionPool;
 
 public class Database {
     private final Config config;
@@ -55,38 +65,148 @@ public class Database {
     private final Map<String, Table> remoteTables = new CaseInsensitiveMap<Table>(); // key: schema.tableName
     private final Map<String, Table> locals = new CombinedMap(tables, views);
     private final Map<String, Routine> routines = new CaseInsensitiveMap<Routine>();
+    private final BulkMetadataLoader bulkLoader;
+    private final TableDetailStore detailStore;
     private final DatabaseMetaData meta;
     private final Connection connection;
+    private final ConnectionPool connectionPool;
+    private final ThreadLocal<Connection> workerConnection = new ThreadLocal<Connection>();
+    private final ThreadLocal<DatabaseMetaData> workerMeta = new ThreadLocal<DatabaseMetaData>();
+    private volatile ThreadLocal<Map<Connection, StatementCache>> statementCaches = createStatementCaches();
+    private final List<StatementCache> allStatementCaches = new ArrayList<StatementCache>();
+    private final int fetchSize;
+    private float tableCreationSpeedup = 1;
     private final String connectTime = new SimpleDateFormat("EEE MMM dd HH:mm z yyyy").format(new Date());
     private Set<String> sqlKeywords;
+    private volatile RelationshipGraph relationshipGraph;
+
+    // keywords are shared by the databases (schemas) of the same product and driver
+    private static final Map<String, Set<String>> sharedSqlKeywords = new HashMap<String, Set<String>>();
     private Pattern invalidIdentifierPattern;
     private final Logger logger = Logger.getLogger(getClass().getName());
     private final boolean fineEnabled = logger.isLoggable(Level.FINE);
 
     public Database(Config config, Connection connection, DatabaseMetaData meta, String name, String catalog, String schema, SchemaMeta schemaMeta) throws SQLException, MissingResourceException {
+        this(config, new ConnectionPool(connection, null, null, null, 0), meta, name, catalog, schema, schemaMeta);
+    }
+
+    /**
+     * @param config
+     * @param connectionPool pool whose primary connection is used for everything
+     *          except the metadata queries that are run in parallel
+     * @param meta
+     * @param name
+     * @param catalog
+     * @param schema
+     * @param schemaMeta
+     * @throws SQLException
+     * @throws MissingResourceException
+     */
+    public Database(Config config, ConnectionPool connectionPool, DatabaseMetaData meta, String name, String catalog, String schema, SchemaMeta schemaMeta) throws SQLException, MissingResourceException {
         this.config = config;
-        this.connection = connection;
+        this.connectionPool = connectionPool;
+        this.connection = connectionPool.getPrimaryConnection();
         this.meta = meta;
         this.databaseName = name;
         this.catalog = catalog;
         this.schema = schema;
+        fetchSize = config.getFetchSize();
+        bulkLoader = config.isBulkMetadataEnabled() ? new BulkMetadataLoader(this, locals) : null;
+        detailStore = config.isModelStoreEnabled() ? createDetailStore(config.getOutputDir()) : null;
+        boolean built = false;
 
-        initTables(meta);
-        if (config.isViewsEnabled())
-            initViews(meta);
+        try {
+            initDetails(meta);
+            connectTables();
+            if (bulkLoader != null && config.isBulkMetadataVerificationEnabled())
+                bulkLoader.verify();
+            updateFromXmlMetadata(schemaMeta);
+
+            if (config.isNumRowsEnabled())
+                new RowCounter(this).count(tables.values());
+
+            freeze();
+            built = true;
+        } finally {
+            closeCachedStatements();
+            if (detailStore != null) {
+                if (built)
+                    detailStore.seal();
+                else
+                    detailStore.close();
+            }
+        }
+    }
+
+    /**
+     * Create the {@link TableDetailStore} that the details of the tables and views
+     * that aren't needed to relate them to each other (their comments, etc.)
+     * are written to as they're loaded rather than kept on the heap.
+     *
+     * @param dir where to put the store
+     * @return <code>null</code> if the store couldn't be created
+     */
+    private TableDetailStore createDetailStore(File dir) {
+        try {
+            return new TableDetailStore(dir);
+        } catch (IOException exc) {
+            logger.warning("Keeping table details in memory: failed to create a file for them in " + dir + ": " + exc);
+            return null;
+        }
+    }
 
-        initCheckConstraints();
-        initTableIds();
-        initIndexIds();
-        initTableComments();
-        initTableColumnComments();
-        initViewComments();
-        initViewColumnComments();
-        initColumnTypes();
-        initRoutines();
+    /**
+     * Returns where the details of the tables and views are being stored,
+     * or <code>null</code> if they're kept on the heap
+     */
+    TableDetailStore getDetailStore() {
+        return detailStore;
+    }
 
-        connectTables();
-        updateFromXmlMetadata(schemaMeta);
+    /**
+     * {@link Table#freeze() Freeze} all of the tables, views and remote tables
+     * now that they've been loaded and connected to each other.<p/>
+     *
+     * Should be called again after adding relationships to them
+     * (e.g. implied constraints).
+     */
+    public void freeze() {
+        for (Table table : tables.values())
+            table.freeze();
+        for (Table view : views.values())
+            view.freeze();
+        for (Table remoteTable : remoteTables.values())
+            remoteTable.freeze();
+
+        relationshipGraph = createRelationshipGraph();
+    }
+
+    /**
+     * Returns a graph of the relationships between all of the tables, views
+     * and remote tables that reflects any changes made since the last time
+     * that the database was {@link #freeze() frozen}.
+     *
+     * @return
+     */
+    public synchronized RelationshipGraph getRelationshipGraph() {
+        if (relationshipGraph == null)
+            relationshipGraph = createRelationshipGraph();
+        return relationshipGraph;
+    }
+
+    /**
+     * Notification that the relationships between the tables
+     * (or their columns) have changed
+     */
+    void relationshipsChanged() {
+        relationshipGraph = null;
+    }
+
+    private RelationshipGraph createRelationshipGraph() {
+        List<Table> all = new ArrayList<Table>(tables.values());
+        all.addAll(views.values());
+        all.addAll(remoteTables.values());
+        return new RelationshipGraph(all);
     }
 
     public String getName() {
@@ -135,12 +255,39 @@ public class Database {
         return routines.values();
     }
 
+    /**
+     * Returns the connection that the current thread should use.
+     * That's usually the primary connection, but threads that are gathering
+     * metadata in parallel each have a dedicated connection.
+     *
+     * @return
+     */
     public Connection getConnection() {
-        return connection;
+        Connection worker = workerConnection.get();
+        return worker != null ? worker : connection;
     }
 
+    /**
+     * Returns the metadata associated with the current thread's connection
+     *
+     * @see #getConnection()
+     * @return
+     */
     public DatabaseMetaData getMetaData() {
-        return meta;
+        DatabaseMetaData worker = workerMeta.get();
+        return worker != null ? worker : meta;
+    }
+
+    /**
+     * Returns how many times faster the tables were created in parallel
+     * than if they had been created serially (an estimate based on how long
+     * each table took).
+     * <code>1</code> if they were created serially.
+     *
+     * @return
+     */
+    public float getTableCreationSpeedup() {
+        return tableCreationSpeedup;
     }
 
     public String getConnectTime() {
@@ -227,8 +374,125 @@ public class Database {
     }
 
     /**
-     * Create/initialize any tables in the schema.
+     * Something that's loaded by one of the phases of {@link #initDetails(DatabaseMetaData)}
+     */
+    private abstract class Loader implements Callable<Void> {
+        abstract void load() throws SQLException;
+
+        public Void call() throws SQLException {
+            load();
+            return null;
+        }
+    }
+
+    /**
+     * Load the tables, views and routines along with the rest of their details.<p/>
+     *
+     * Everything other than the routines needs the tables and views to exist,
+     * but most of the remaining phases are independent of each other.
+     * If the database can be queried by several threads then they're run
+     * concurrently, each with its own connection.
+     *
+     * @param metadata
+     * @throws SQLException
+     */
+    private void initDetails(final DatabaseMetaData metadata) throws SQLException {
+        final boolean concurrent = config.getMaxDbThreads() > 1;
+        PhaseScheduler scheduler = new PhaseScheduler();
+
+        PhaseScheduler.Phase created = scheduler.add("tables and views", new Loader() {
+            @Override
+            void load() throws SQLException {
+                initTables(metadata);
+            }
+        });
+
+        PhaseScheduler.Phase loaded = created;
+        if (bulkLoader != null) {
+            loaded = scheduler.add("bulk metadata", new Loader() {
+                @Override
+                void load() throws SQLException {
+                    bulkLoader.load();
+                }
+            }, created);
+        }
+
+        // the rest only query the database once each, so
+        // give them their own connections when running concurrently
+        scheduler.add("check constraints", onWorker(concurrent, new Loader() {
+            @Override
+            void load() throws SQLException {
+                initCheckConstraints();
+            }
+        }), loaded);
+        scheduler.add("table ids", onWorker(concurrent, new Loader() {
+            @Override
+            void load() throws SQLException {
+                initTableIds();
+            }
+        }), loaded);
+        scheduler.add("index ids", onWorker(concurrent, new Loader() {
+            @Override
+            void load() throws SQLException {
+                initIndexIds();
+            }
+        }), loaded);
+        PhaseScheduler.Phase tableComments = scheduler.add("table comments", onWorker(concurrent, new Loader() {
+            @Override
+            void load() throws SQLException {
+                initTableComments();
+            }
+        }), loaded);
+        PhaseScheduler.Phase columnComments = scheduler.add("column comments", onWorker(concurrent, new Loader() {
+            @Override
+            void load() throws SQLException {
+                initTableColumnComments();
+            }
+        }), loaded);
+
+        // view-specific comments override any that came with the tables' comments
+        scheduler.add("view comments", onWorker(concurrent, new Loader() {
+            @Override
+            void load() throws SQLException {
+                initViewComments();
+            }
+        }), tableComments);
+        scheduler.add("view column comments", onWorker(concurrent, new Loader() {
+            @Override
+            void load() throws SQLException {
+                initViewColumnComments();
+            }
+        }), columnComments);
+        scheduler.add("column types", onWorker(concurrent, new Loader() {
+            @Override
+            void load() throws SQLException {
+                initColumnTypes();
+            }
+        }), loaded);
+        scheduler.add("routines", onWorker(concurrent, new Loader() {
+            @Override
+            void load() throws SQLException {
+                initRoutines();
+            }
+        }));
+
+        scheduler.run(concurrent);
+    }
 
+    /**
+     * Returns <code>loader</code> wrapped so that it runs with its own connection
+     * if <code>concurrent</code>
+     */
+    private Callable<Void> onWorker(boolean concurrent, Loader loader) {
+        return concurrent ? withWorkerConnection(loader) : loader;
+    }
+
+    /**
+     * Create/initialize any tables and views in the schema.<p/>
+     *
+     * Both are created by the same {@link TableCreator}, so when they're
+     * created in parallel the views don't have to wait for the tables.
+     *
      * @param metadata
      * @throws SQLException
      */
@@ -242,7 +506,8 @@ public class Database {
         List<BasicTableMeta> entries = getBasicTableMeta(metadata, true, types);
 
         TableCreator creator;
-        if (maxThreads == 1) {
+        if (maxThreads == 1 || bulkLoader != null) {
+            // tables that will be populated in bulk are cheap to create
             creator = new TableCreator();
         } else {
             // creating tables takes a LONG time (based on JProbe analysis),
@@ -270,6 +535,9 @@ public class Database {
             }
         }
 
+        if (config.isViewsEnabled())
+            initViews(metadata, creator);
+
         // wait for everyone to finish
         creator.join();
     }
@@ -278,9 +546,10 @@ public class Database {
      * Create/initialize any views in the schema.
      *
      * @param metadata
+     * @param creator
      * @throws SQLException
      */
-    private void initViews(DatabaseMetaData metadata) throws SQLException {
+    private void initViews(DatabaseMetaData metadata, TableCreator creator) throws SQLException {
         Pattern includeTables = config.getTableInclusions();
         Pattern excludeTables = config.getTableExclusions();
 
@@ -289,14 +558,7 @@ public class Database {
 
         for (BasicTableMeta entry : getBasicTableMeta(metadata, false, types)) {
             if (validator.isValid(entry.name, entry.type)) {
-                View view = new View(this, entry.catalog, entry.schema, entry.name,
-                                    entry.remarks, entry.viewSql);
-                views.put(view.getName(), view);
-                if (fineEnabled) {
-                    logger.fine("Found details of view " + view.getName());
-                } else {
-                    System.out.print('.');
-                }
+                creator.create(entry);
             }
         }
     }
@@ -315,6 +577,7 @@ public class Database {
         final String remarks;
         final String viewSql;
         final long numRows;  // -1 if not determined
+        final boolean isView;
 
         /**
          * @param schema
@@ -323,8 +586,9 @@ public class Database {
          * @param remarks
          * @param text optional textual SQL used to create the view
          * @param numRows number of rows, or -1 if not determined
+         * @param isView
          */
-        BasicTableMeta(String catalog, String schema, String name, String type, String remarks, String text, long numRows)
+        BasicTableMeta(String catalog, String schema, String name, String type, String remarks, String text, long numRows, boolean isView)
         {
             this.catalog = catalog;
             this.schema = schema;
@@ -333,6 +597,7 @@ public class Database {
             this.remarks = remarks;
             viewSql = text;
             this.numRows = numRows;
+            this.isView = isView;
         }
     }
 
@@ -367,11 +632,11 @@ public class Database {
                     if (cat == null && sch == null)
                         sch = schema;
                     String remarks = getOptionalString(rs, clazz + "_comment");
-                    String text = forTables ? null : getOptionalString(rs, "view_definition");
+                    String text = forTables ? null : getOptionalLargeString(rs, "view_definition");
                     String rows = forTables ? getOptionalString(rs, "table_rows") : null;
                     long numRows = rows == null ? -1 : Long.parseLong(rows);
 
-                    basics.add(new BasicTableMeta(cat, sch, name, clazz, remarks, text, numRows));
+                    basics.add(new BasicTableMeta(cat, sch, name, clazz, remarks, text, numRows, !forTables));
                 }
             } catch (SQLException sqlException) {
                 // don't die just because this failed
@@ -386,6 +651,7 @@ public class Database {
 
         if (basics.isEmpty()) {
             rs = metadata.getTables(null, schema, "%", types);
+            applyFetchSize(rs);
 
             try {
                 while (rs.next()) {
@@ -395,7 +661,7 @@ public class Database {
                     String schem = rs.getString("TABLE_SCHEM");
                     String remarks = getOptionalString(rs, "REMARKS");
 
-                    basics.add(new BasicTableMeta(cat, schem, name, type, remarks, null, -1));
+                    basics.add(new BasicTableMeta(cat, schem, name, type, remarks, null, -1, !forTables));
                 }
             } catch (SQLException exc) {
                 if (forTables)
@@ -449,6 +715,19 @@ public class Database {
         }
     }
 
+    /**
+     * Same as {@link #getOptionalString(ResultSet, String)} for potentially large text
+     *
+     * @see #getLargeString(ResultSet, String)
+     */
+    private static String getOptionalLargeString(ResultSet rs, String columnName) {
+        try {
+            return getLargeString(rs, columnName);
+        } catch (SQLException ignore) {
+            return null;
+        }
+    }
+
     private void initCheckConstraints() throws SQLException {
         String sql = config.getDbProperties().getProperty("selectCheckConstraintsSql");
         if (sql != null) {
@@ -554,9 +833,7 @@ public class Database {
                     String tableName = rs.getString("table_name");
                     Table table = locals.get(tableName);
                     if (table != null) {
-                        TableIndex index = table.getIndex(rs.getString("index_name"));
-                        if (index != null)
-                            index.setId(rs.getObject("index_id"));
+                        table.setIndexId(rs.getString("index_name"), rs.getObject("index_id"));
                     }
                 }
             } catch (SQLException sqlException) {
@@ -741,7 +1018,7 @@ public class Database {
                     String routineType = rs.getString("routine_type");
                     String returnType = rs.getString("dtd_identifier");
                     String definitionLanguage = rs.getString("routine_body");
-                    String definition = rs.getString("routine_definition");
+                    String definition = getLargeString(rs, "routine_definition");
                     String dataAccess = rs.getString("sql_data_access");
                     String securityType = rs.getString("security_type");
                     boolean deterministic = rs.getBoolean("is_deterministic");
@@ -834,6 +1111,7 @@ public class Database {
         if (fineEnabled)
             logger.fine(sqlBuf + " " + sqlParams);
         PreparedStatement stmt = getConnection().prepareStatement(sqlBuf.toString());
+        applyFetchSize(stmt);
 
         try {
             for (int i = 0; i < sqlParams.size(); ++i) {
@@ -847,6 +1125,134 @@ public class Database {
         return stmt;
     }
 
+    /**
+     * Same as {@link #prepareStatement(String, String)} except that the statement
+     * is prepared once per thread and connection and then reused with
+     * different parameters, so it's intended for queries that are run for
+     * each table.<p/>
+     *
+     * The returned statement belongs to the cache, so it must <b>not</b> be closed.
+     *
+     * @param sql String - SQL without question marks
+     * @param tableName String - <code>null</code> if the statement doesn't deal with <code>Table</code>-level details.
+     * @throws SQLException
+     * @return PreparedStatement
+     */
+    PreparedStatement prepareCachedStatement(String sql, String tableName) throws SQLException {
+        Connection conn = getConnection();
+        Map<Connection, StatementCache> caches = statementCaches.get();
+        StatementCache cache = caches.get(conn);
+        if (cache == null) {
+            cache = new StatementCache(conn, fetchSize);
+            caches.put(conn, cache);
+            synchronized (allStatementCaches) {
+                allStatementCaches.add(cache);
+            }
+        }
+
+        if (fineEnabled)
+            logger.fine(sql + " [" + tableName + "]");
+        return cache.prepare(sql, getNamedParams(tableName));
+    }
+
+    /**
+     * Ask the driver to fetch the configured number of rows per round trip
+     * when reading the results of <code>stmt</code>.
+     *
+     * @see Config#getFetchSize()
+     * @param stmt
+     */
+    void applyFetchSize(Statement stmt) {
+        if (fetchSize > 0) {
+            try {
+                stmt.setFetchSize(fetchSize);
+            } catch (SQLException ignore) {
+                // it's just a hint that some drivers don't support
+            }
+        }
+    }
+
+    /**
+     * Ask the driver to fetch the configured number of rows per round trip
+     * while reading <code>rs</code>.
+     * Used for the results of {@link DatabaseMetaData} calls since we don't
+     * get to see their statements.
+     *
+     * @see Config#getFetchSize()
+     * @param rs
+     */
+    void applyFetchSize(ResultSet rs) {
+        if (fetchSize > 0) {
+            try {
+                rs.setFetchSize(fetchSize);
+            } catch (SQLException ignore) {
+                // it's just a hint that some drivers don't support
+            }
+        }
+    }
+
+    /**
+     * Read a potentially large text column such as a view's SQL or a routine's
+     * definition.  A <code>CLOB</code> is read in a single piece that's sized
+     * from its length so the text is only materialized once.
+     * Drivers have already materialized any other type of column, so it's
+     * just read with {@link ResultSet#getString(int)}.
+     *
+     * @param rs
+     * @param columnName
+     * @return
+     * @throws SQLException if the column doesn't exist
+     */
+    static String getLargeString(ResultSet rs, String columnName) throws SQLException {
+        int column = rs.findColumn(columnName);
+        int type = rs.getMetaData().getColumnType(column);
+
+        if (type == Types.CLOB) {
+            Clob clob = rs.getClob(column);
+            if (clob == null)
+                return null;
+            long length = clob.length();
+            if (length <= Integer.MAX_VALUE)
+                return clob.getSubString(1, (int)length);
+        }
+
+        return rs.getString(column);
+    }
+
+    /**
+     * Close the statements that were cached by {@link #prepareCachedStatement(String, String)}.
+     * Must only be called when no other threads are using them.
+     */
+    private void closeCachedStatements() {
+        int hits = 0;
+        int misses = 0;
+
+        synchronized (allStatementCaches) {
+            for (StatementCache cache : allStatementCaches) {
+                hits += cache.getHits();
+                misses += cache.getMisses();
+                cache.close();
+            }
+
+            if (fineEnabled && !allStatementCaches.isEmpty())
+                logger.fine("Prepared " + misses + " statements and reused them " + hits + " times across " +
+                            allStatementCaches.size() + " thread/connection pairs");
+            allStatementCaches.clear();
+
+            // forget the closed caches in every thread, not just this one
+            statementCaches = createStatementCaches();
+        }
+    }
+
+    private static ThreadLocal<Map<Connection, StatementCache>> createStatementCaches() {
+        return new ThreadLocal<Map<Connection, StatementCache>>() {
+            @Override
+            protected Map<Connection, StatementCache> initialValue() {
+                return new HashMap<Connection, StatementCache>();
+            }
+        };
+    }
+
     public Table addRemoteTable(String remoteCatalog, String remoteSchema, String remoteTableName, String baseContainer, boolean logical) throws SQLException {
         String fullName = getRemoteTableKey(remoteCatalog, remoteSchema, remoteTableName);
         Table remoteTable = remoteTables.get(fullName);
@@ -876,6 +1282,12 @@ public class Database {
      * @throws SQLException
      */
     public Set<String> getSqlKeywords() throws SQLException {
+        if (sqlKeywords == null) {
+            synchronized (sharedSqlKeywords) {
+                sqlKeywords = sharedSqlKeywords.get(getSqlKeywordsKey());
+            }
+        }
+
         if (sqlKeywords == null) {
             // from http://www.contrib.andrew.cmu.edu/~shadow/sql/sql1992.txt:
             String[] sql92Keywords =
@@ -949,16 +1361,27 @@ public class Database {
 
                 @Override
                 public boolean contains(Object key) {
-                    return super.contains(((String)key).toUpperCase());
+                    return super.contains(CaseInsensitiveMap.getLookupKey((String)key));
                 }
             };
             sqlKeywords.addAll(Arrays.asList(sql92Keywords));
             sqlKeywords.addAll(Arrays.asList(nonSql92Keywords));
+
+            synchronized (sharedSqlKeywords) {
+                sharedSqlKeywords.put(getSqlKeywordsKey(), sqlKeywords);
+            }
         }
 
         return sqlKeywords;
     }
 
+    /**
+     * Returns what identifies the databases that have the same SQL keywords
+     */
+    private String getSqlKeywordsKey() throws SQLException {
+        return getDatabaseProduct() + " " + getMetaData().getDriverName() + " " + getMetaData().getDriverVersion();
+    }
+
     /**
      * Return <code>id</code> quoted if required, otherwise return <code>id</code>
      *
@@ -1016,6 +1439,27 @@ public class Database {
      * @see #prepareStatement(String, String)
      */
     private List<String> getSqlParams(StringBuilder sql, String tableName) {
+        Map<String, String> namedParams = getNamedParams(tableName);
+        List<String> sqlParams = new ArrayList<String>();
+
+        for (String paramName : parseSqlParams(sql)) {
+            String paramValue = namedParams.get(paramName);
+            if (paramValue == null)
+                throw new InvalidConfigurationException("Unexpected named parameter '" + paramName + "' found in SQL '" + sql + "'");
+            sqlParams.add(paramValue);
+        }
+
+        return sqlParams;
+    }
+
+    /**
+     * Returns the values of the named parameters that can be used in the
+     * SQL of {@link #prepareStatement(String, String)}, keyed by their names.
+     *
+     * @param tableName <code>null</code> if the SQL doesn't deal with <code>Table</code>-level details
+     * @return
+     */
+    private Map<String, String> getNamedParams(String tableName) {
         Map<String, String> namedParams = new HashMap<String, String>();
         @SuppressWarnings("hiding")
         String schema = getSchema();
@@ -1028,19 +1472,27 @@ public class Database {
             namedParams.put(":view", tableName); // alias for :table
         }
 
-        List<String> sqlParams = new ArrayList<String>();
+        return namedParams;
+    }
+
+    /**
+     * Replaces named parameters in <code>sql</code> with question marks and
+     * returns the names of the parameters in the order that they appeared.
+     *
+     * @param sql input SQL with named parameters, output named params are replaced with ?'s.
+     * @return
+     */
+    static List<String> parseSqlParams(StringBuilder sql) {
+        List<String> paramNames = new ArrayList<String>();
         int nextColon = sql.indexOf(":");
         while (nextColon != -1) {
             String paramName = new StringTokenizer(sql.substring(nextColon), " ,\"')").nextToken();
-            String paramValue = namedParams.get(paramName);
-            if (paramValue == null)
-                throw new InvalidConfigurationException("Unexpected named parameter '" + paramName + "' found in SQL '" + sql + "'");
-            sqlParams.add(paramValue);
+            paramNames.add(paramName);
             sql.replace(nextColon, nextColon + paramName.length(), "?"); // replace with a ?
             nextColon = sql.indexOf(":", nextColon);
         }
 
-        return sqlParams;
+        return paramNames;
     }
 
     /**
@@ -1094,6 +1546,11 @@ public class Database {
     }
 
     private void connectTables() throws SQLException {
+        if (bulkLoader != null) {
+            bulkLoader.connectForeignKeys();
+            return;
+        }
+
         for (Table table : tables.values()) {
             table.connectForeignKeys(locals);
         }
@@ -1102,6 +1559,35 @@ public class Database {
         }
     }
 
+    /**
+     * Wrap <code>task</code> so that it runs with a dedicated connection borrowed
+     * from the connection pool.  {@link #getConnection()} and {@link #getMetaData()}
+     * return that connection while the task runs.
+     *
+     * @param task
+     * @return
+     */
+    <T> Callable<T> withWorkerConnection(final Callable<T> task) {
+        return new Callable<T>() {
+            public T call() throws Exception {
+                Connection worker = connectionPool.acquire();
+
+                try {
+                    if (worker != connection) {
+                        workerConnection.set(worker);
+                        workerMeta.set(worker.getMetaData());
+                    }
+
+                    return task.call();
+                } finally {
+                    workerConnection.remove();
+                    workerMeta.remove();
+                    connectionPool.release(worker);
+                }
+            }
+        };
+    }
+
     /**
      * Returns a 'key' that's used to identify a remote table
      * in the remoteTables map.
@@ -1116,18 +1602,23 @@ public class Database {
     }
 
     /**
-     * Single-threaded implementation of a class that creates tables
+     * Single-threaded implementation of a class that creates tables and views
      */
     private class TableCreator {
         /**
-         * Create a table and put it into <code>tables</code>
+         * Create a table or view and put it into <code>tables</code> or <code>views</code>
          */
         void create(BasicTableMeta tableMeta) throws SQLException {
             createImpl(tableMeta);
         }
 
         protected void createImpl(BasicTableMeta tableMeta) throws SQLException {
-            Table table = new Table(Database.this, tableMeta.catalog, tableMeta.schema, tableMeta.name, tableMeta.remarks);
+            if (tableMeta.isView) {
+                createView(tableMeta);
+                return;
+            }
+
+            Table table = new Table(Database.this, tableMeta.catalog, tableMeta.schema, tableMeta.name, tableMeta.remarks, bulkLoader == null);
             if (tableMeta.numRows != -1) {
                 table.setNumRows(tableMeta.numRows);
             }
@@ -1143,79 +1634,90 @@ public class Database {
             }
         }
 
+        private void createView(BasicTableMeta viewMeta) throws SQLException {
+            View view = new View(Database.this, viewMeta.catalog, viewMeta.schema, viewMeta.name,
+                                viewMeta.remarks, viewMeta.viewSql, bulkLoader == null);
+
+            synchronized (views) {
+                views.put(view.getName(), view);
+            }
+
+            if (logger.isLoggable(Level.FINE)) {
+                logger.fine("Found details of view " + view.getName());
+            } else {
+                System.out.print('.');
+            }
+        }
+
         /**
          * Wait for all of the tables to be created.
          * By default this does nothing since this implementation isn't threaded.
+         *
+         * @throws SQLException if any of the tables couldn't be created
          */
-        void join() {
+        void join() throws SQLException {
         }
     }
 
     /**
-     * Multi-threaded implementation of a class that creates tables
+     * Multi-threaded implementation of a class that creates tables and views.
+     * Each one is created by one of a fixed number of worker threads
+     * using a connection borrowed from the connection pool, so the
+     * metadata queries really do run in parallel on the server.
      */
     private class ThreadedTableCreator extends TableCreator {
-        private final Set<Thread> threads = new HashSet<Thread>();
-        private final int maxThreads;
+        private final ExecutorService executor;
+        private final List<Future<Long>> results = new ArrayList<Future<Long>>();
+        private final long started = System.currentTimeMillis();
 
         ThreadedTableCreator(int maxThreads) {
-            this.maxThreads = maxThreads;
+            executor = Executors.newFixedThreadPool(maxThreads);
         }
 
         @Override
-        void create(final BasicTableMeta tableMeta) throws SQLException {
-            Thread runner = new Thread() {
-                @Override
-                public void run() {
-                    try {
-                        createImpl(tableMeta);
-                    } catch (SQLException exc) {
-                        exc.printStackTrace(); // nobody above us in call stack...dump it here
-                    } finally {
-                        synchronized (threads) {
-                            threads.remove(this);
-                            threads.notify();
-                        }
-                    }
+        void create(final BasicTableMeta tableMeta) {
+            results.add(executor.submit(withWorkerConnection(new Callable<Long>() {
+                public Long call() throws SQLException {
+                    long start = System.currentTimeMillis();
+                    createImpl(tableMeta);
+                    return System.currentTimeMillis() - start;
                 }
-            };
-
-            synchronized (threads) {
-                // wait for enough 'room'
-                while (threads.size() >= maxThreads) {
-                    try {
-                        threads.wait();
-                    } catch (InterruptedException interrupted) {
-                    }
-                }
-
-                threads.add(runner);
-            }
-
-            runner.start();
+            })));
         }
 
         /**
-         * Wait for all of the started threads to complete
+         * Wait for all of the tables to be created, rethrowing the first failure
+         * (after abandoning the remaining work).
          */
         @Override
-        public void join() {
-            while (true) {
-                Thread thread;
+        void join() throws SQLException {
+            executor.shutdown();
+            long busy = 0;
 
-                synchronized (threads) {
-                    Iterator<Thread> iter = threads.iterator();
-                    if (!iter.hasNext())
-                        break;
-
-                    thread = iter.next();
-                }
-
-                try {
-                    thread.join();
-                } catch (InterruptedException exc) {
-                }
+            try {
+                for (Future<Long> result : results)
+                    busy += result.get().longValue();
+            } catch (ExecutionException exc) {
+                executor.shutdownNow();
+                Throwable failure = exc.getCause();
+                if (failure instanceof SQLException)
+                    throw (SQLException)failure;
+                if (failure instanceof RuntimeException)
+                    throw (RuntimeException)failure;
+                if (failure instanceof Error)
+                    throw (Error)failure;
+                throw new RuntimeException(failure);
+            } catch (InterruptedException exc) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+                SQLException failure = new SQLException("Interrupted while creating tables");
+                failure.initCause(exc);
+                throw failure;
             }
+
+            long elapsed = System.currentTimeMillis() - started;
+            if (elapsed > 0)
+                tableCreationSpeedup = (float)busy / elapsed;
         }
     }
 
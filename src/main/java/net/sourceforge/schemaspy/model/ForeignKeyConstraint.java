@@ -36,11 +36,12 @@ import java.util.logging.Logger;
 public class ForeignKeyConstraint implements Comparable<ForeignKeyConstraint> {
     private final String name;
     private Table parentTable;
-    private final List<TableColumn> parentColumns = new ArrayList<TableColumn>();
+    // most foreign keys are made up of a single column
+    private final List<TableColumn> parentColumns = new ArrayList<TableColumn>(1);
     private final Table childTable;
-    private final List<TableColumn> childColumns = new ArrayList<TableColumn>();
-    private final int deleteRule;
-    private final int updateRule;
+    private final List<TableColumn> childColumns = new ArrayList<TableColumn>(1);
+    private final byte deleteRule;
+    private final byte updateRule;
     private final static Logger logger = Logger.getLogger(ForeignKeyConstraint.class.getName());
     private final static boolean finerEnabled = logger.isLoggable(Level.FINER);
 
@@ -57,8 +58,8 @@ public class ForeignKeyConstraint implements Comparable<ForeignKeyConstraint> {
         if (finerEnabled)
             logger.finer("Adding foreign key constraint '" + getName() + "' to " + child.getFullName());
         childTable = child;
-        this.deleteRule = deleteRule;
-        this.updateRule = updateRule;
+        this.deleteRule = (byte)deleteRule;
+        this.updateRule = (byte)updateRule;
     }
 
     /**
@@ -92,6 +93,28 @@ public class ForeignKeyConstraint implements Comparable<ForeignKeyConstraint> {
         this(parentColumn, childColumn, importedKeyNoAction, importedKeyNoAction);
     }
 
+    /**
+     * Same as {@link #ForeignKeyConstraint(TableColumn, TableColumn)},
+     * but for constraints that are made up of multiple columns.
+     *
+     * @param parentColumns
+     * @param childColumns the corresponding child of each parent column
+     */
+    public ForeignKeyConstraint(List<TableColumn> parentColumns, List<TableColumn> childColumns) {
+        this(childColumns.get(0).getTable(), null, importedKeyNoAction, importedKeyNoAction);
+
+        for (int i = 0; i < childColumns.size(); ++i) {
+            TableColumn childColumn = childColumns.get(i);
+            TableColumn parentColumn = parentColumns.get(i);
+
+            addChildColumn(childColumn);
+            addParentColumn(parentColumn);
+
+            childColumn.addParent(parentColumn, this);
+            parentColumn.addChild(childColumn, this);
+        }
+    }
+
     /**
      * Add a "parent" side to the constraint.
      *
@@ -18,6 +18,8 @@
  */
 package net.sourceforge.schemaspy.model;
 
+import java.util.List;
+
 public class ImpliedForeignKeyConstraint extends ForeignKeyConstraint {
     /**
      * @param parentColumn
@@ -27,6 +29,14 @@ public class ImpliedForeignKeyConstraint extends ForeignKeyConstraint {
         super(parentColumn, childColumn);
     }
 
+    /**
+     * @param parentColumns
+     * @param childColumns
+     */
+    public ImpliedForeignKeyConstraint(List<TableColumn> parentColumns, List<TableColumn> childColumns) {
+        super(parentColumns, childColumns);
+    }
+
     /**
      * @return
      */
@@ -57,7 +67,7 @@ public class ImpliedForeignKeyConstraint extends ForeignKeyConstraint {
         buf.append(getParentTable());
         buf.append(".");
         buf.append(toString(getParentColumns()));
-        buf.append(", but it doesn't reference that column.");
+        buf.append(getChildColumns().size() == 1 ? ", but it doesn't reference that column." : ", but it doesn't reference those columns.");
         return buf.toString();
     }
 }
@@ -0,0 +1,143 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010, 2011 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.model;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the phases of loading a {@link Database}, each of which can depend on
+ * phases that were added before it.<p/>
+ *
+ * When run concurrently each phase starts as soon as the phases that it
+ * depends on have finished.  Otherwise they're run one after another in
+ * the order that they were added.
+ */
+class PhaseScheduler {
+    private final List<Phase> phases = new ArrayList<Phase>();
+    private final Logger logger = Logger.getLogger(getClass().getName());
+    private final boolean fineEnabled = logger.isLoggable(Level.FINE);
+
+    /**
+     * Something to run once the phases that it depends on have finished
+     */
+    class Phase implements Callable<Void> {
+        private final String name;
+        private final Callable<Void> task;
+        private final Phase[] dependencies;
+        private Future<Void> result;
+
+        Phase(String name, Callable<Void> task, Phase[] dependencies) {
+            this.name = name;
+            this.task = task;
+            this.dependencies = dependencies;
+        }
+
+        public Void call() throws Exception {
+            for (Phase dependency : dependencies) {
+                try {
+                    dependency.result.get();
+                } catch (ExecutionException failed) {
+                    // its failure is reported on its own
+                    throw new SQLException("Skipped " + name + " because " + dependency.name + " failed");
+                }
+            }
+
+            long start = System.currentTimeMillis();
+            task.call();
+            if (fineEnabled)
+                logger.fine("Loaded " + name + " in " + (System.currentTimeMillis() - start) + "ms");
+            return null;
+        }
+    }
+
+    /**
+     * Add a phase that's run after all of its <code>dependencies</code>
+     *
+     * @param name what's being loaded (for logging)
+     * @param task
+     * @param dependencies phases that have already been added
+     * @return the new phase
+     */
+    Phase add(String name, Callable<Void> task, Phase... dependencies) {
+        Phase phase = new Phase(name, task, dependencies);
+        phases.add(phase);
+        return phase;
+    }
+
+    /**
+     * Run all of the phases and wait for them to finish, rethrowing the
+     * first failure (after abandoning the remaining work).
+     *
+     * @param concurrently <code>false</code> to run them one at a time in
+     *          the current thread
+     * @throws SQLException
+     */
+    void run(boolean concurrently) throws SQLException {
+        if (!concurrently) {
+            for (Phase phase : phases) {
+                try {
+                    phase.task.call();
+                } catch (Exception exc) {
+                    rethrow(exc);
+                }
+            }
+            return;
+        }
+
+        // every phase gets its own thread since most of them spend
+        // their time waiting on their dependencies or the database
+        ExecutorService executor = Executors.newFixedThreadPool(phases.size());
+        for (Phase phase : phases)
+            phase.result = executor.submit(phase);
+        executor.shutdown();
+
+        try {
+            for (Phase phase : phases)
+                phase.result.get();
+        } catch (ExecutionException exc) {
+            executor.shutdownNow();
+            rethrow(exc.getCause());
+        } catch (InterruptedException exc) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            SQLException failure = new SQLException("Interrupted while loading the database");
+            failure.initCause(exc);
+            throw failure;
+        }
+    }
+
+    private static void rethrow(Throwable failure) throws SQLException {
+        if (failure instanceof SQLException)
+            throw (SQLException)failure;
+        if (failure instanceof RuntimeException)
+            throw (RuntimeException)failure;
+        if (failure instanceof Error)
+            throw (Error)failure;
+        throw new RuntimeException(failure);
+    }
+}
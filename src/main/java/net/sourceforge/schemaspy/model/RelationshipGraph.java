@@ -0,0 +1,430 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010, 2011 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.model;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable, compact representation of the foreign key relationships
+ * between the tables of a {@link Database} that the graph algorithms work with
+ * instead of walking the parents and children of every column.<p/>
+ *
+ * Tables are identified by dense <code>int</code> ids and each relationship
+ * between a child column and a parent column is an <i>edge</i> that's also
+ * identified by an <code>int</code>.  The edges of each table are stored in
+ * compressed sparse row form: one array of edges ordered by child table and
+ * another of the same edges ordered by parent table, each with an array of
+ * offsets to where each table's edges start.<p/>
+ *
+ * Every edge has a <i>kind</i> so queries can select the relationships that
+ * they're interested in with a combination of {@link #REAL}, {@link #IMPLIED},
+ * {@link #RAILS} and {@link #DEFINED}.
+ */
+public class RelationshipGraph {
+    /** Constraints that came from the database's metadata */
+    public static final int REAL = 1;
+    /** Constraints implied by matching column names, types and sizes */
+    public static final int IMPLIED = 2;
+    /** Constraints implied by Rails naming conventions */
+    public static final int RAILS = 4;
+    /** Constraints that were defined some other way (e.g. in XML metadata) */
+    public static final int DEFINED = 8;
+    /** Every kind of constraint */
+    public static final int ALL = REAL | IMPLIED | RAILS | DEFINED;
+    /** Every kind of constraint except those that are {@link #IMPLIED} */
+    public static final int NOT_IMPLIED = ALL & ~IMPLIED;
+
+    private final Table[] tables;
+    private final Map<Table, Integer> tableIds;
+    private final TableColumn[] columns;
+    private final int[] columnTables;
+
+    // edge attributes, indexed by edge id.  edges are numbered in child table order
+    private final int[] edgeChildColumns;
+    private final int[] edgeParentColumns;
+    private final byte[] edgeKinds;
+    private final ForeignKeyConstraint[] edgeConstraints;
+
+    // the edges of each table where it's the child (it's the edge id)
+    private final int[] parentOffsets;
+
+    // the edges of each table where it's the parent
+    private final int[] childOffsets;
+    private final int[] childEdges;
+
+    /**
+     * Build a graph of the relationships between the specified tables.
+     * Relationships with tables that aren't included are ignored.
+     *
+     * @param tables
+     */
+    public RelationshipGraph(Collection<? extends Table> tables) {
+        int numTables = tables.size();
+        this.tables = tables.toArray(new Table[numTables]);
+        tableIds = new IdentityHashMap<Table, Integer>(numTables);
+        for (int i = 0; i < numTables; ++i)
+            tableIds.put(this.tables[i], Integer.valueOf(i));
+
+        // only the columns that are related to other columns get ids
+        Map<TableColumn, Integer> columnIds = new IdentityHashMap<TableColumn, Integer>();
+        List<TableColumn> relatedColumns = new ArrayList<TableColumn>();
+        IntList relatedColumnTables = new IntList();
+        IntList childColumns = new IntList();
+        IntList parentColumns = new IntList();
+        List<ForeignKeyConstraint> constraints = new ArrayList<ForeignKeyConstraint>();
+
+        parentOffsets = new int[numTables + 1];
+        for (int table = 0; table < numTables; ++table) {
+            parentOffsets[table] = childColumns.size();
+
+            for (TableColumn column : this.tables[table].getColumns()) {
+                for (TableColumn parent : column.getParents()) {
+                    Integer parentTable = tableIds.get(parent.getTable());
+                    if (parentTable == null)
+                        continue;
+
+                    childColumns.add(getColumnId(column, table, columnIds, relatedColumns, relatedColumnTables));
+                    parentColumns.add(getColumnId(parent, parentTable.intValue(), columnIds, relatedColumns, relatedColumnTables));
+                    constraints.add(column.getParentConstraint(parent));
+                }
+            }
+        }
+
+        int numEdges = childColumns.size();
+        parentOffsets[numTables] = numEdges;
+        columns = relatedColumns.toArray(new TableColumn[relatedColumns.size()]);
+        columnTables = relatedColumnTables.toArray();
+        edgeChildColumns = childColumns.toArray();
+        edgeParentColumns = parentColumns.toArray();
+        edgeConstraints = constraints.toArray(new ForeignKeyConstraint[numEdges]);
+        edgeKinds = new byte[numEdges];
+        for (int edge = 0; edge < numEdges; ++edge)
+            edgeKinds[edge] = (byte)getKind(edgeConstraints[edge]);
+
+        // counting sort of the edges by parent table
+        childOffsets = new int[numTables + 1];
+        for (int edge = 0; edge < numEdges; ++edge)
+            ++childOffsets[getParentTable(edge) + 1];
+        for (int table = 0; table < numTables; ++table)
+            childOffsets[table + 1] += childOffsets[table];
+        childEdges = new int[numEdges];
+        int[] next = new int[numTables];
+        System.arraycopy(childOffsets, 0, next, 0, numTables);
+        for (int edge = 0; edge < numEdges; ++edge)
+            childEdges[next[getParentTable(edge)]++] = edge;
+    }
+
+    private static int getColumnId(TableColumn column, int table, Map<TableColumn, Integer> columnIds,
+                                   List<TableColumn> relatedColumns, IntList relatedColumnTables) {
+        Integer id = columnIds.get(column);
+        if (id == null) {
+            id = Integer.valueOf(relatedColumns.size());
+            columnIds.put(column, id);
+            relatedColumns.add(column);
+            relatedColumnTables.add(table);
+        }
+        return id.intValue();
+    }
+
+    /**
+     * Returns the kind of relationship that the constraint represents
+     *
+     * @param constraint
+     * @return
+     */
+    public static int getKind(ForeignKeyConstraint constraint) {
+        if (constraint.isImplied())
+            return IMPLIED;
+        if (constraint instanceof RailsForeignKeyConstraint)
+            return RAILS;
+        if (constraint.isReal())
+            return REAL;
+        return DEFINED;
+    }
+
+    public int getNumTables() {
+        return tables.length;
+    }
+
+    public Table getTable(int table) {
+        return tables[table];
+    }
+
+    /**
+     * Returns the id of the specified table or <code>-1</code> if it's not in the graph
+     *
+     * @param table
+     * @return
+     */
+    public int getTableId(Table table) {
+        Integer id = tableIds.get(table);
+        return id == null ? -1 : id.intValue();
+    }
+
+    public int getNumEdges() {
+        return edgeKinds.length;
+    }
+
+    public TableColumn getChildColumn(int edge) {
+        return columns[edgeChildColumns[edge]];
+    }
+
+    public TableColumn getParentColumn(int edge) {
+        return columns[edgeParentColumns[edge]];
+    }
+
+    /**
+     * Returns the id of the table that contains the foreign key
+     */
+    public int getChildTable(int edge) {
+        return columnTables[edgeChildColumns[edge]];
+    }
+
+    /**
+     * Returns the id of the table that's referenced by the foreign key
+     */
+    public int getParentTable(int edge) {
+        return columnTables[edgeParentColumns[edge]];
+    }
+
+    public int getKind(int edge) {
+        return edgeKinds[edge];
+    }
+
+    public ForeignKeyConstraint getConstraint(int edge) {
+        return edgeConstraints[edge];
+    }
+
+    /**
+     * The edges of a table's foreign keys are numbered from
+     * <code>getParentEdgesStart(table)</code> up to (but not including)
+     * {@link #getParentEdgesEnd(int) getParentEdgesEnd(table)}.
+     *
+     * @param table
+     * @return
+     */
+    public int getParentEdgesStart(int table) {
+        return parentOffsets[table];
+    }
+
+    public int getParentEdgesEnd(int table) {
+        return parentOffsets[table + 1];
+    }
+
+    /**
+     * The edges that reference a table are <code>getChildEdge(i)</code> for
+     * <code>i</code> from <code>getChildEdgesStart(table)</code> up to
+     * (but not including) {@link #getChildEdgesEnd(int) getChildEdgesEnd(table)}.
+     *
+     * @param table
+     * @return
+     */
+    public int getChildEdgesStart(int table) {
+        return childOffsets[table];
+    }
+
+    public int getChildEdgesEnd(int table) {
+        return childOffsets[table + 1];
+    }
+
+    public int getChildEdge(int i) {
+        return childEdges[i];
+    }
+
+    /**
+     * Returns the edges of a table that reference the table itself.
+     * They're in the order that the table stores its columns, which is the order
+     * that {@link Table#removeSelfReferencingConstraint()} looks for them in.
+     *
+     * @param table
+     * @return
+     */
+    public int[] getSelfReferencingEdges(int table) {
+        IntList selfEdges = new IntList();
+        int start = getParentEdgesStart(table);
+        int end = getParentEdgesEnd(table);
+        boolean found = false;
+        for (int edge = start; edge < end && !found; ++edge)
+            found = getParentTable(edge) == table;
+        if (!found)
+            return selfEdges.toArray();
+
+        for (TableColumn column : tables[table].columns.values()) {
+            for (TableColumn parent : column.getParents()) {
+                if (parent.getTable() == tables[table]) {
+                    for (int edge = start; edge < end; ++edge) {
+                        if (getChildColumn(edge) == column && getParentColumn(edge) == parent) {
+                            selfEdges.add(edge);
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+
+        return selfEdges.toArray();
+    }
+
+    /**
+     * Returns the number of the table's relationships of the specified kinds
+     * where it's the child
+     */
+    public int getNumParents(int table, int kinds) {
+        int count = 0;
+        for (int edge = parentOffsets[table]; edge < parentOffsets[table + 1]; ++edge) {
+            if ((edgeKinds[edge] & kinds) != 0)
+                ++count;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of the table's relationships of the specified kinds
+     * where it's the parent
+     */
+    public int getNumChildren(int table, int kinds) {
+        int count = 0;
+        for (int i = childOffsets[table]; i < childOffsets[table + 1]; ++i) {
+            if ((edgeKinds[childEdges[i]] & kinds) != 0)
+                ++count;
+        }
+        return count;
+    }
+
+    /**
+     * Returns <code>true</code> if the table doesn't have any relationships
+     * of the specified kinds
+     */
+    public boolean isOrphan(int table, int kinds) {
+        return getNumParents(table, kinds) == 0 && getNumChildren(table, kinds) == 0;
+    }
+
+    /**
+     * Returns the ids of the tables that are referenced by the specified table
+     */
+    public BitSet getParents(int table, int kinds) {
+        BitSet parents = new BitSet(tables.length);
+        addParents(table, kinds, parents);
+        return parents;
+    }
+
+    /**
+     * Returns the ids of the tables that reference the specified table
+     */
+    public BitSet getChildren(int table, int kinds) {
+        BitSet children = new BitSet(tables.length);
+        addChildren(table, kinds, children);
+        return children;
+    }
+
+    /**
+     * Returns the ids of the tables that are directly related to the
+     * specified table (not including the table itself)
+     */
+    public BitSet getRelatives(int table, int kinds) {
+        return getNeighborhood(table, 1, kinds);
+    }
+
+    /**
+     * Returns the ids of the tables that are within <code>degrees</code>
+     * relationships of the specified table (not including the table itself)
+     */
+    public BitSet getNeighborhood(int table, int degrees, int kinds) {
+        BitSet neighborhood = new BitSet(tables.length);
+        neighborhood.set(table);
+        BitSet frontier = (BitSet)neighborhood.clone();
+
+        for (int degree = 0; degree < degrees && !frontier.isEmpty(); ++degree) {
+            BitSet reached = new BitSet(tables.length);
+            for (int t = frontier.nextSetBit(0); t >= 0; t = frontier.nextSetBit(t + 1)) {
+                addParents(t, kinds, reached);
+                addChildren(t, kinds, reached);
+            }
+            reached.andNot(neighborhood);
+            neighborhood.or(reached);
+            frontier = reached;
+        }
+
+        neighborhood.clear(table);
+        return neighborhood;
+    }
+
+    /**
+     * Returns <code>true</code> if there are any relationships of the specified
+     * kinds between the two tables (in either direction)
+     */
+    public boolean isRelated(int table1, int table2, int kinds) {
+        for (int edge = parentOffsets[table1]; edge < parentOffsets[table1 + 1]; ++edge) {
+            if ((edgeKinds[edge] & kinds) != 0 && getParentTable(edge) == table2)
+                return true;
+        }
+        for (int edge = parentOffsets[table2]; edge < parentOffsets[table2 + 1]; ++edge) {
+            if ((edgeKinds[edge] & kinds) != 0 && getParentTable(edge) == table1)
+                return true;
+        }
+        return false;
+    }
+
+    private void addParents(int table, int kinds, BitSet parents) {
+        for (int edge = parentOffsets[table]; edge < parentOffsets[table + 1]; ++edge) {
+            if ((edgeKinds[edge] & kinds) != 0)
+                parents.set(getParentTable(edge));
+        }
+    }
+
+    private void addChildren(int table, int kinds, BitSet children) {
+        for (int i = childOffsets[table]; i < childOffsets[table + 1]; ++i) {
+            int edge = childEdges[i];
+            if ((edgeKinds[edge] & kinds) != 0)
+                children.set(getChildTable(edge));
+        }
+    }
+
+    /**
+     * A growable array of <code>int</code>s
+     */
+    private static class IntList {
+        private int[] values = new int[64];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                int[] grown = new int[size * 2];
+                System.arraycopy(values, 0, grown, 0, size);
+                values = grown;
+            }
+            values[size++] = value;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int[] toArray() {
+            int[] array = new int[size];
+            System.arraycopy(values, 0, array, 0, size);
+            return array;
+        }
+    }
+}
@@ -65,6 +65,7 @@ public class RemoteTable extends Table {
         try {
             // get remote table's FKs that reference PKs in our schema
             rs = db.getMetaData().getImportedKeys(getCatalog(), getSchema(), getName());
+            db.applyFetchSize(rs);
 
             while (rs.next()) {
                 String otherSchema = rs.getString("PKTABLE_SCHEM");
@@ -0,0 +1,129 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010, 2011 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.sourceforge.schemaspy.Config;
+
+/**
+ * Determines the number of rows in each table once the model has been loaded.<p/>
+ *
+ * Tables are processed in parallel (<code>-dbThreads</code> at a time).
+ * The database's statistics are consulted first since they're cheap.
+ * Only tables whose statistics aren't available or say that they're smaller
+ * than <code>-exactRowCountMax</code> rows are counted with
+ * <code>select count(*)</code>, with no more than <code>-rowCountQueries</code>
+ * of those running at once and each limited to <code>-rowCountTimeout</code> seconds.
+ */
+class RowCounter {
+    private final Database db;
+    private final int maxThreads;
+    private final Semaphore exactQueries;
+    private final int queryTimeout;
+    private final long exactThreshold;
+    private final Logger logger = Logger.getLogger(getClass().getName());
+    private final boolean fineEnabled = logger.isLoggable(Level.FINE);
+
+    RowCounter(Database db) {
+        Config config = Config.getInstance();
+
+        this.db = db;
+        maxThreads = config.getMaxDbThreads();
+        exactQueries = new Semaphore(config.getMaxRowCountQueries());
+        queryTimeout = config.getRowCountTimeout();
+        exactThreshold = config.getExactRowCountThreshold();
+    }
+
+    /**
+     * Determine the number of rows in each of the specified tables
+     * that doesn't already know how many it has.
+     *
+     * @param tables
+     */
+    void count(Collection<Table> tables) {
+        long start = System.currentTimeMillis();
+        ExecutorService executor = Executors.newFixedThreadPool(maxThreads);
+        List<Future<Long>> results = new ArrayList<Future<Long>>();
+
+        for (final Table table : tables) {
+            if (table.isNumRowsKnown() || table.isView() || table.isRemote() || table.isLogical())
+                continue;
+
+            results.add(executor.submit(db.withWorkerConnection(new Callable<Long>() {
+                public Long call() throws InterruptedException {
+                    long numRows = count(table);
+                    table.setNumRows(numRows);
+                    return numRows;
+                }
+            })));
+        }
+
+        executor.shutdown();
+
+        try {
+            for (Future<Long> result : results) {
+                try {
+                    result.get();
+                } catch (ExecutionException exc) {
+                    // one table's failure shouldn't keep us from counting the others
+                    logger.warning("Failed to determine number of rows: " + exc.getCause());
+                }
+            }
+        } catch (InterruptedException interrupted) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+
+        if (fineEnabled)
+            logger.fine("Determined number of rows in " + results.size() + " tables in " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    /**
+     * Returns the number of rows in the specified table, or -1 if it
+     * couldn't be determined.
+     */
+    private long count(Table table) throws InterruptedException {
+        long estimate = table.fetchEstimatedNumRows();
+        if (estimate >= exactThreshold) {
+            if (fineEnabled)
+                logger.fine("Using statistics for number of rows in " + table.getName() + ": " + estimate);
+            return estimate;
+        }
+
+        long exact;
+        exactQueries.acquire();
+        try {
+            exact = table.fetchExactNumRows(queryTimeout);
+        } finally {
+            exactQueries.release();
+        }
+
+        return exact != -1 ? exact : estimate;
+    }
+}
@@ -0,0 +1,353 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010, 2011 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.model;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.logging.Logger;
+
+/**
+ * A compact fingerprint of the documented parts of a schema that's persisted
+ * between runs so unchanged pages don't have to be regenerated.<p/>
+ *
+ * Each table gets a <i>content</i> hash of its columns, indexes, relationships
+ * and comments.  A table's page (and its diagrams) also depend on the tables
+ * that are within two degrees of it, so its <i>page</i> hash covers their
+ * content hashes as well.  The summary pages depend on everything, so the
+ * <i>summary</i> hash covers all of the content hashes and the routines.
+ * Every page is navigated to and from the others in the same way, so both
+ * kinds of hashes also cover the settings that the documentation was
+ * generated with.
+ */
+public class SchemaSnapshot {
+    private static final String SUMMARY_KEY = "summary";
+    private static final String PAGE_KEY_PREFIX = "page.";
+
+    private final Map<Table, String> contentHashes = new HashMap<Table, String>();
+    private final Map<String, String> pageHashes = new TreeMap<String, String>();
+    private final Set<String> tableNames = new TreeSet<String>();
+    private final boolean includeNumRows;
+    private final String settingsHash;
+    private final String summaryHash;
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    /**
+     * @param tables the tables and views being documented
+     * @param remoteTables
+     * @param routines
+     * @param settings anything else that affects the generated pages
+     * @param includeNumRows <code>true</code> if the pages show the number of rows in each table
+     */
+    public SchemaSnapshot(Collection<Table> tables, Collection<? extends Table> remoteTables,
+                          Collection<Routine> routines, List<String> settings, boolean includeNumRows) {
+        this.includeNumRows = includeNumRows;
+
+        Digester digester = new Digester();
+        digester.add(settings.toString());
+        settingsHash = digester.getHash();
+
+        Digester summary = new Digester();
+        summary.add(settingsHash);
+
+        Map<String, String> sortedHashes = new TreeMap<String, String>();
+        for (Table table : tables) {
+            tableNames.add(table.getName());
+            sortedHashes.put(table.getName(), getContentHash(table));
+        }
+        for (Table table : remoteTables)
+            sortedHashes.put(table.getFullName(), getContentHash(table));
+        summary.add(sortedHashes.toString());
+
+        for (Routine routine : new TreeSet<Routine>(routines)) {
+            summary.add(routine.getName());
+            summary.add(routine.getType());
+            summary.add(routine.getReturnType());
+            summary.add(routine.getDefinitionLanguage());
+            summary.add(routine.getDefinition());
+            summary.add(routine.isDeterministic());
+            summary.add(routine.getDataAccess());
+            summary.add(routine.getSecurityType());
+            summary.add(routine.getComment());
+            for (RoutineParameter param : routine.getParameters()) {
+                summary.add(param.getName());
+                summary.add(param.getType());
+                summary.add(param.getMode());
+            }
+        }
+
+        summaryHash = summary.getHash();
+    }
+
+    private SchemaSnapshot(String summaryHash) {
+        this.summaryHash = summaryHash;
+        settingsHash = null;
+        includeNumRows = false;
+    }
+
+    /**
+     * Read a snapshot that was previously {@link #write(File) written}
+     *
+     * @param file
+     * @return <code>null</code> if there isn't a usable snapshot in <code>file</code>
+     */
+    public static SchemaSnapshot read(File file) {
+        if (!file.exists())
+            return null;
+
+        Properties props = new Properties();
+        try {
+            InputStream in = new FileInputStream(file);
+            try {
+                props.load(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException exc) {
+            Logger.getLogger(SchemaSnapshot.class.getName()).warning("Failed to read " + file + ": " + exc);
+            return null;
+        }
+
+        String summary = props.getProperty(SUMMARY_KEY);
+        if (summary == null)
+            return null;
+
+        SchemaSnapshot snapshot = new SchemaSnapshot(summary);
+        for (Object key : props.keySet()) {
+            String name = key.toString();
+            if (name.startsWith(PAGE_KEY_PREFIX))
+                snapshot.pageHashes.put(name.substring(PAGE_KEY_PREFIX.length()), props.getProperty(name));
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Persist the snapshot, including the page hashes of all of the tables
+     * that have been {@link #isPageCurrent(Table, SchemaSnapshot) evaluated}.
+     *
+     * @param file
+     * @throws IOException
+     */
+    public void write(File file) throws IOException {
+        Properties props = new Properties();
+        props.setProperty(SUMMARY_KEY, summaryHash);
+        for (Map.Entry<String, String> entry : pageHashes.entrySet())
+            props.setProperty(PAGE_KEY_PREFIX + entry.getKey(), entry.getValue());
+
+        OutputStream out = new FileOutputStream(file);
+        try {
+            props.store(out, "SchemaSpy snapshot - used to determine which pages need to be regenerated");
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the summary pages that were generated
+     * for the <code>previous</code> snapshot are still accurate.
+     *
+     * @param previous <code>null</code> if there isn't one
+     * @return
+     */
+    public boolean isSummaryCurrent(SchemaSnapshot previous) {
+        return previous != null && summaryHash.equals(previous.summaryHash);
+    }
+
+    /**
+     * Returns <code>true</code> if the page (and diagrams) that were generated
+     * for <code>table</code> with the <code>previous</code> snapshot are still accurate.
+     *
+     * @param table
+     * @param previous <code>null</code> if there isn't one
+     * @return
+     */
+    public boolean isPageCurrent(Table table, SchemaSnapshot previous) {
+        String hash = getPageHash(table);
+        return previous != null && hash.equals(previous.pageHashes.get(table.getName()));
+    }
+
+    /**
+     * Returns the names of the tables whose pages were generated for the
+     * <code>previous</code> snapshot but that no longer exist.
+     *
+     * @param previous <code>null</code> if there isn't one
+     * @return
+     */
+    public Set<String> getRemovedTables(SchemaSnapshot previous) {
+        Set<String> removed = new TreeSet<String>();
+        if (previous != null) {
+            removed.addAll(previous.pageHashes.keySet());
+            removed.removeAll(tableNames);
+        }
+        return removed;
+    }
+
+    /**
+     * Returns a hash of the table and everything within two degrees of it
+     */
+    private String getPageHash(Table table) {
+        String hash = pageHashes.get(table.getName());
+        if (hash == null) {
+            RelationshipGraph graph = table.getDatabase().getRelationshipGraph();
+            BitSet neighbors = graph.getNeighborhood(graph.getTableId(table), 2, RelationshipGraph.ALL);
+
+            Map<String, String> sortedHashes = new TreeMap<String, String>();
+            for (int neighbor = neighbors.nextSetBit(0); neighbor >= 0; neighbor = neighbors.nextSetBit(neighbor + 1))
+                sortedHashes.put(graph.getTable(neighbor).getFullName(), getContentHash(graph.getTable(neighbor)));
+
+            Digester digester = new Digester();
+            digester.add(settingsHash);
+            digester.add(getContentHash(table));
+            digester.add(sortedHashes.toString());
+            hash = digester.getHash();
+            pageHashes.put(table.getName(), hash);
+        }
+
+        return hash;
+    }
+
+    /**
+     * Returns a hash of everything about the table that's documented
+     */
+    private String getContentHash(Table table) {
+        String hash = contentHashes.get(table);
+        if (hash == null) {
+            Digester digester = new Digester();
+            digester.add(table.getFullName());
+            digester.add(table.isView());
+            digester.add(table.isRemote());
+            digester.add(table.getId());
+            digester.add(table.getComments());
+            digester.add(table.getViewSql());
+            if (includeNumRows)
+                digester.add(table.getNumRows());
+            digester.add(new TreeMap<String, String>(table.getCheckConstraints()).toString());
+
+            for (TableColumn column : table.getColumns()) {
+                digester.add(column.getName());
+                digester.add(column.getId());
+                digester.add(column.getType());
+                digester.add(column.getDetailedSize());
+                digester.add(column.isNullable());
+                digester.add(column.isAutoUpdated());
+                digester.add(column.isPrimary());
+                digester.add(column.isUnique());
+                digester.add(column.isExcluded());
+                digester.add(column.isAllExcluded());
+                digester.add(column.getDefaultValue());
+                digester.add(column.getComments());
+                digester.add(getRelationships(column.getParents(), column, true));
+                digester.add(getRelationships(column.getChildren(), column, false));
+            }
+
+            for (TableIndex index : new TreeSet<TableIndex>(table.getIndexes())) {
+                digester.add(index.getName());
+                digester.add(index.getId());
+                digester.add(index.getType());
+                digester.add(index.isPrimaryKey());
+                digester.add(index.isUnique());
+                for (TableColumn column : index.getColumns()) {
+                    digester.add(column.getName());
+                    digester.add(index.isAscending(column));
+                }
+            }
+
+            hash = digester.getHash();
+            contentHashes.put(table, hash);
+        }
+
+        return hash;
+    }
+
+    /**
+     * Returns a description of the relationships between <code>column</code>
+     * and the specified related columns that doesn't depend on their order.
+     */
+    private static String getRelationships(Set<TableColumn> related, TableColumn column, boolean parents) {
+        Set<String> relationships = new TreeSet<String>();
+        for (TableColumn other : related) {
+            ForeignKeyConstraint constraint = parents ? column.getParentConstraint(other) : column.getChildConstraint(other);
+            StringBuilder relationship = new StringBuilder();
+            relationship.append(other.getTable().getFullName());
+            relationship.append('.');
+            relationship.append(other.getName());
+            if (constraint != null) {
+                relationship.append(' ');
+                relationship.append(constraint.getName());
+                relationship.append(constraint.isImplied() ? " implied " : " ");
+                relationship.append(constraint.getDeleteRule());
+                relationship.append('/');
+                relationship.append(constraint.getUpdateRule());
+            }
+            relationships.add(relationship.toString());
+        }
+        return relationships.toString();
+    }
+
+    /**
+     * Accumulates values into an MD5 hash
+     */
+    private static class Digester {
+        private final MessageDigest digest;
+
+        Digester() {
+            try {
+                digest = MessageDigest.getInstance("MD5");
+            } catch (NoSuchAlgorithmException exc) {
+                throw new RuntimeException(exc); // every JRE is required to support MD5
+            }
+        }
+
+        void add(Object value) {
+            try {
+                digest.update(String.valueOf(value).getBytes("UTF-8"));
+            } catch (UnsupportedEncodingException exc) {
+                throw new RuntimeException(exc);
+            }
+
+            // keep adjacent values from running together
+            digest.update((byte)0);
+        }
+
+        String getHash() {
+            StringBuilder hash = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hash.append(Character.forDigit((b >> 4) & 0xf, 16));
+                hash.append(Character.forDigit(b & 0xf, 16));
+            }
+            return hash.toString();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010, 2011 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.model;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The statements that one thread has prepared on one connection for the
+ * <code>select*Sql</code> queries of the database type, keyed by their
+ * original SQL.<p/>
+ *
+ * The named parameters of each query are only parsed once and the server
+ * only has to prepare it once per connection, so running the same query
+ * against thousands of tables just rebinds its parameters.<p/>
+ *
+ * Not thread safe: {@link Database} gives each thread its own caches.
+ */
+class StatementCache {
+    private final Connection connection;
+    private final int fetchSize;
+    private final Map<String, CachedStatement> statements = new HashMap<String, CachedStatement>();
+    private int hits;
+    private int misses;
+
+    /**
+     * A prepared statement along with the names of the parameters that
+     * its question marks replaced
+     */
+    private static class CachedStatement {
+        final PreparedStatement stmt;
+        final List<String> paramNames;
+
+        CachedStatement(PreparedStatement stmt, List<String> paramNames) {
+            this.stmt = stmt;
+            this.paramNames = paramNames;
+        }
+    }
+
+    /**
+     * @param connection
+     * @param fetchSize number of rows to fetch per round trip (0 for the driver's default)
+     */
+    StatementCache(Connection connection, int fetchSize) {
+        this.connection = connection;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Returns the statement for <code>sql</code>, preparing it if it hasn't
+     * been already, with its named parameters bound to the specified values.<p/>
+     *
+     * The statement belongs to the cache, so it must not be closed.
+     *
+     * @param sql SQL with named parameters such as <code>:table</code>
+     * @param namedParams values of the named parameters
+     * @return
+     * @throws SQLException
+     */
+    PreparedStatement prepare(String sql, Map<String, String> namedParams) throws SQLException {
+        CachedStatement cached = statements.get(sql);
+
+        if (cached == null) {
+            StringBuilder sqlBuf = new StringBuilder(sql);
+            List<String> paramNames = Database.parseSqlParams(sqlBuf); // modifies sqlBuf
+            PreparedStatement stmt = connection.prepareStatement(sqlBuf.toString());
+            if (fetchSize > 0) {
+                try {
+                    stmt.setFetchSize(fetchSize);
+                } catch (SQLException ignore) {
+                    // it's just a hint that some drivers don't support
+                }
+            }
+            cached = new CachedStatement(stmt, paramNames);
+            statements.put(sql, cached);
+            ++misses;
+        } else {
+            ++hits;
+        }
+
+        for (int i = 0; i < cached.paramNames.size(); ++i) {
+            String paramName = cached.paramNames.get(i);
+            String paramValue = namedParams.get(paramName);
+            if (paramValue == null)
+                throw new InvalidConfigurationException("Unexpected named parameter '" + paramName + "' found in SQL '" + sql + "'");
+            cached.stmt.setString(i + 1, paramValue);
+        }
+
+        return cached.stmt;
+    }
+
+    /**
+     * Number of times that a previously prepared statement was reused
+     */
+    int getHits() {
+        return hits;
+    }
+
+    /**
+     * Number of statements that had to be prepared
+     */
+    int getMisses() {
+        return misses;
+    }
+
+    /**
+     * Close all of the cached statements.
+     * The cache can still be used afterwards; it'll just prepare them again.
+     */
+    void close() {
+        for (CachedStatement cached : statements.values()) {
+            try {
+                cached.stmt.close();
+            } catch (SQLException ignore) {
+            }
+        }
+
+        statements.clear();
+    }
+}
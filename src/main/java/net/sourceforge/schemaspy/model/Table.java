@@ -66,6 +66,10 @@ public class Table implements Comparable<Table> {
     private       String comments;
     private int maxChildren;
     private int maxParents;
+    private volatile Frozen frozen;
+    private final TableDetailStore detailStore;
+    private volatile long detailOffset = -1;
+    private volatile boolean indexesStored;
     private final static Logger logger = Logger.getLogger(Table.class.getName());
     private final static boolean fineEnabled = logger.isLoggable(Level.FINE);
     private final static boolean finerEnabled = logger.isLoggable(Level.FINER);
@@ -81,18 +85,42 @@ public class Table implements Comparable<Table> {
      * @throws SQLException
      */
     public Table(Database db, String catalog, String schema, String name, String comments) throws SQLException {
+        this(db, catalog, schema, name, comments, true);
+    }
+
+    /**
+     * Construct a table, optionally deferring the collection of its columns,
+     * indexes and primary keys.<p/>
+     *
+     * A table that isn't initialized here is expected to be populated by
+     * a {@link BulkMetadataLoader} along with every other table in the schema.
+     *
+     * @param db
+     * @param catalog
+     * @param schema
+     * @param name
+     * @param comments
+     * @param initialize <code>false</code> if the table's details will be loaded in bulk
+     * @throws SQLException
+     */
+    Table(Database db, String catalog, String schema, String name, String comments, boolean initialize) throws SQLException {
         this.db = db;
         this.catalog = catalog;
         this.schema = schema;
         this.container = schema != null ? schema : catalog != null ? catalog : db.getName();
         this.name = name;
         this.fullName = getFullName(db.getName(), catalog, schema, name);
+        this.detailStore = db.getDetailStore();
         if (fineEnabled)
             logger.fine("Creating " + getClass().getSimpleName() + " " + fullName);
-        setComments(comments);
-        initColumns();
-        initIndexes();
-        initPrimaryKeys();
+        if (comments != null)
+            setComments(comments);
+        if (initialize) {
+            initColumns();
+            initIndexes();
+            initPrimaryKeys();
+            storeIndexes();
+        }
     }
 
     /**
@@ -110,6 +138,7 @@ public class Table implements Comparable<Table> {
         try {
             // get our foreign keys that reference other tables' primary keys
             rs = db.getMetaData().getImportedKeys(getCatalog(), getSchema(), getName());
+            db.applyFetchSize(rs);
 
             while (rs.next()) {
                 addForeignKey(rs.getString("FK_NAME"), rs.getString("FKCOLUMN_NAME"),
@@ -130,6 +159,7 @@ public class Table implements Comparable<Table> {
             try {
                 // get the foreign keys that reference our primary keys
                 rs = db.getMetaData().getExportedKeys(getCatalog(), getSchema(), getName());
+                db.applyFetchSize(rs);
 
                 while (rs.next()) {
                     String otherCatalog = rs.getString("FKTABLE_CAT");
@@ -163,7 +193,10 @@ public class Table implements Comparable<Table> {
      * @param text
      */
     public void addCheckConstraint(String constraintName, String text) {
-        checkConstraints.put(constraintName, text);
+        if (detailStore == null)
+            checkConstraints.put(constraintName, text);
+        else
+            detailStore.addCheckConstraint(this, constraintName, text);
     }
 
     /**
@@ -240,11 +273,29 @@ public class Table implements Comparable<Table> {
         }
     }
 
+    /**
+     * Forget the foreign keys that have been added to this table
+     * (and the links that they made to their parents) so they can be
+     * {@link #connectForeignKeys(Map) connected} again from scratch.
+     */
+    void clearForeignKeys() {
+        for (ForeignKeyConstraint foreignKey : foreignKeys.values()) {
+            for (TableColumn parentColumn : foreignKey.getParentColumns()) {
+                --parentColumn.getTable().maxChildren;
+                --maxParents;
+            }
+        }
+
+        unlinkParents();
+        foreignKeys.clear();
+        thaw();
+    }
+
     /**
      * @param meta
      * @throws SQLException
      */
-    private void initPrimaryKeys() throws SQLException {
+    void initPrimaryKeys() throws SQLException {
         ResultSet rs = null;
 
         try {
@@ -252,6 +303,7 @@ public class Table implements Comparable<Table> {
                 logger.fine("Querying primary keys for " + getFullName());
 
             rs = db.getMetaData().getPrimaryKeys(getCatalog(), getSchema(), getName());
+            db.applyFetchSize(rs);
 
             while (rs.next())
                 setPrimaryColumn(rs);
@@ -269,7 +321,7 @@ public class Table implements Comparable<Table> {
      * @param rs
      * @throws SQLException
      */
-    private void setPrimaryColumn(ResultSet rs) throws SQLException {
+    void setPrimaryColumn(ResultSet rs) throws SQLException {
         String pkName = rs.getString("PK_NAME");
         if (pkName == null)
             return;
@@ -289,17 +341,30 @@ public class Table implements Comparable<Table> {
      */
     void setPrimaryColumn(TableColumn primaryColumn) {
         primaryKeys.add(primaryColumn);
+        thaw();
+    }
+
+    /**
+     * Forget the primary key so it can be {@link #initPrimaryKeys() initialized} again
+     */
+    void clearPrimaryKeys() {
+        primaryKeys.clear();
+        for (TableIndex index : indexes.values())
+            index.setIsPrimaryKey(false);
+        thaw();
     }
 
     /**
      * @throws SQLException
      */
-    private void initColumns() throws SQLException {
+    void initColumns() throws SQLException {
         ResultSet rs = null;
 
-        synchronized (Table.class) {
+        // only one thread at a time per connection
+        synchronized (db.getConnection()) {
             try {
                 rs = db.getMetaData().getColumns(getCatalog(), getSchema(), getName(), "%");
+                db.applyFetchSize(rs);
 
                 while (rs.next())
                     addColumn(rs);
@@ -329,7 +394,7 @@ public class Table implements Comparable<Table> {
      * @param forceQuotes
      * @throws SQLException
      */
-    private void initColumnAutoUpdate(boolean forceQuotes) throws SQLException {
+    void initColumnAutoUpdate(boolean forceQuotes) throws SQLException {
         ResultSet rs = null;
         PreparedStatement stmt = null;
 
@@ -397,9 +462,21 @@ public class Table implements Comparable<Table> {
             TableColumn column = new TableColumn(this, rs);
 
             columns.put(column.getName(), column);
+            thaw();
         }
     }
 
+    /**
+     * Forget the columns so they can be {@link #initColumns() initialized} again.
+     * Only valid before anything else refers to them.
+     */
+    void clearColumns() {
+        if (detailStore != null)
+            detailStore.clearColumns(this);
+        columns.clear();
+        thaw();
+    }
+
     /**
      * Add a column that's defined in xml metadata.
      * Assumes that a column named colMeta.getName() doesn't already exist in <code>columns</code>.
@@ -410,6 +487,7 @@ public class Table implements Comparable<Table> {
         TableColumn column = new TableColumn(this, colMeta);
 
         columns.put(column.getName(), column);
+        thaw();
 
         return column;
     }
@@ -419,7 +497,7 @@ public class Table implements Comparable<Table> {
      *
      * @throws SQLException
      */
-    private void initIndexes() throws SQLException {
+    void initIndexes() throws SQLException {
         if (isView() || isRemote())
             return;
 
@@ -434,6 +512,7 @@ public class Table implements Comparable<Table> {
 
         try {
             rs = db.getMetaData().getIndexInfo(getCatalog(), getSchema(), getName(), false, true);
+            db.applyFetchSize(rs);
 
             while (rs.next()) {
                 if (rs.getShort("TYPE") != DatabaseMetaData.tableIndexStatistic)
@@ -457,11 +536,10 @@ public class Table implements Comparable<Table> {
         if (selectIndexesSql == null)
             return false;
 
-        PreparedStatement stmt = null;
         ResultSet rs = null;
 
         try {
-            stmt = db.prepareStatement(selectIndexesSql, getName());
+            PreparedStatement stmt = db.prepareCachedStatement(selectIndexesSql, getName());
             rs = stmt.executeQuery();
 
             while (rs.next()) {
@@ -480,13 +558,6 @@ public class Table implements Comparable<Table> {
                     exc.printStackTrace();
                 }
             }
-            if (stmt != null)  {
-                try {
-                    stmt.close();
-                } catch (Exception exc) {
-                    exc.printStackTrace();
-                }
-            }
         }
 
         return true;
@@ -497,18 +568,63 @@ public class Table implements Comparable<Table> {
      * @return
      */
     public TableIndex getIndex(String indexName) {
+        if (indexesStored)
+            return detailStore.getDetail(this).getIndex(indexName);
         return indexes.get(indexName);
     }
 
+    /**
+     * Forget the indexes so they can be {@link #initIndexes() initialized} again
+     */
+    void clearIndexes() {
+        indexesStored = false;
+        indexes.clear();
+        thaw();
+    }
+
+    /**
+     * Move the indexes off of the heap and into the {@link TableDetailStore}
+     * (if there is one) once they've been fully loaded.
+     * Their ids can still be {@link #setIndexId(String, Object) set} afterwards.
+     */
+    void storeIndexes() {
+        if (detailStore != null && !indexesStored) {
+            detailStore.setIndexes(this, indexes.values());
+            indexesStored = true;
+            indexes.clear();
+            thaw();
+        }
+    }
+
+    /**
+     * Set the {@link TableIndex#setId(Object) id} of the specified index
+     * (if it exists)
+     *
+     * @param indexName
+     * @param id
+     */
+    void setIndexId(String indexName, Object id) {
+        if (indexesStored) {
+            // ignored when the details are read if there's no such index
+            detailStore.setIndexId(this, indexName, id);
+        } else {
+            TableIndex index = getIndex(indexName);
+            if (index != null)
+                index.setId(id);
+        }
+    }
+
     /**
      * @param rs
      * @throws SQLException
      */
-    private void addIndex(ResultSet rs) throws SQLException {
+    void addIndex(ResultSet rs) throws SQLException {
         String indexName = rs.getString("INDEX_NAME");
 
         if (indexName == null)
             return;
+        if (indexesStored)
+            throw new IllegalStateException("Indexes of " + getFullName() + " can't be added to once they've been stored");
 
         TableIndex index = getIndex(indexName);
 
@@ -516,6 +632,7 @@ public class Table implements Comparable<Table> {
             index = new TableIndex(rs);
 
             indexes.put(index.getName(), index);
+            thaw();
         }
 
         index.addColumn(getColumn(rs.getString("COLUMN_NAME")), rs.getString("ASC_OR_DESC"));
@@ -606,7 +723,8 @@ public class Table implements Comparable<Table> {
      * @return
      */
     public Map<String, String> getCheckConstraints() {
-        return checkConstraints;
+        TableDetail detail = getStoredDetail();
+        return detail == null ? checkConstraints : detail.getCheckConstraints();
     }
 
     /**
@@ -615,6 +733,12 @@ public class Table implements Comparable<Table> {
      * @return
      */
     public Set<TableIndex> getIndexes() {
+        Frozen precomputed = frozen;
+        if (precomputed != null && precomputed.indexes != null)
+            return precomputed.indexes;
+        if (indexesStored)
+            return detailStore.getDetail(this).getIndexes();
+
         return new HashSet<TableIndex>(indexes.values());
     }
 
@@ -631,7 +755,8 @@ public class Table implements Comparable<Table> {
      * @return Comments associated with this table, or <code>null</code> if none.
      */
     public String getComments() {
-        return comments;
+        TableDetail detail = getStoredDetail();
+        return detail == null ? comments : detail.getComments();
     }
 
     /**
@@ -656,7 +781,19 @@ public class Table implements Comparable<Table> {
             }
         }
 
-        this.comments = cmts;
+        if (detailStore == null)
+            this.comments = cmts;
+        else
+            detailStore.setComments(this, cmts);
+    }
+
+    /**
+     * Returns the database (schema) that contains this table
+     *
+     * @return
+     */
+    public Database getDatabase() {
+        return db;
     }
 
     /**
@@ -676,6 +813,10 @@ public class Table implements Comparable<Table> {
      * @return
      */
     public List<TableColumn> getColumns() {
+        Frozen precomputed = frozen;
+        if (precomputed != null)
+            return precomputed.columns;
+
         Set<TableColumn> sorted = new TreeSet<TableColumn>(new ByColumnIdComparator());
         sorted.addAll(columns.values());
         return new ArrayList<TableColumn>(sorted);
@@ -687,6 +828,10 @@ public class Table implements Comparable<Table> {
      * @return
      */
     public boolean isRoot() {
+        Frozen precomputed = frozen;
+        if (precomputed != null)
+            return precomputed.numParents == 0;
+
         for (TableColumn column : columns.values()) {
             if (column.isForeignKey()) {
                 return false;
@@ -702,6 +847,10 @@ public class Table implements Comparable<Table> {
      * @return
      */
     public boolean isLeaf() {
+        Frozen precomputed = frozen;
+        if (precomputed != null)
+            return precomputed.numChildren == 0;
+
         for (TableColumn column : columns.values()) {
             if (!column.getChildren().isEmpty()) {
                 return false;
@@ -841,6 +990,10 @@ public class Table implements Comparable<Table> {
      * @return
      */
     public int getNumChildren() {
+        Frozen precomputed = frozen;
+        if (precomputed != null)
+            return precomputed.numChildren;
+
         int numChildren = 0;
 
         for (TableColumn column : columns.values()) {
@@ -855,6 +1008,10 @@ public class Table implements Comparable<Table> {
      * @return
      */
     public int getNumNonImpliedChildren() {
+        Frozen precomputed = frozen;
+        if (precomputed != null)
+            return precomputed.numNonImpliedChildren;
+
         int numChildren = 0;
 
         for (TableColumn column : columns.values()) {
@@ -873,6 +1030,10 @@ public class Table implements Comparable<Table> {
      * @return
      */
     public int getNumParents() {
+        Frozen precomputed = frozen;
+        if (precomputed != null)
+            return precomputed.numParents;
+
         int numParents = 0;
 
         for (TableColumn column : columns.values()) {
@@ -888,6 +1049,10 @@ public class Table implements Comparable<Table> {
      * @return
      */
     public int getNumNonImpliedParents() {
+        Frozen precomputed = frozen;
+        if (precomputed != null)
+            return precomputed.numNonImpliedParents;
+
         int numParents = 0;
 
         for (TableColumn column : columns.values()) {
@@ -933,6 +1098,76 @@ public class Table implements Comparable<Table> {
         return null;
     }
 
+    /**
+     * Returns where this table's details are being stored,
+     * or <code>null</code> if they're kept on the heap
+     */
+    TableDetailStore getDetailStore() {
+        return detailStore;
+    }
+
+    /**
+     * Returns the details of this table that are in its {@link TableDetailStore},
+     * or <code>null</code> if they're kept on the heap
+     */
+    TableDetail getStoredDetail() {
+        return detailStore == null ? null : detailStore.getDetail(this);
+    }
+
+    /**
+     * Returns where the newest of this table's details were stored,
+     * or <code>-1</code> if none have been
+     */
+    long getDetailOffset() {
+        return detailOffset;
+    }
+
+    void setDetailOffset(long detailOffset) {
+        this.detailOffset = detailOffset;
+    }
+
+    /**
+     * Precompute the details that are repeatedly asked of this table
+     * (its column order, indexes and number of relationships) so they're
+     * returned without being recalculated or copied.<p/>
+     *
+     * The returned collections can't be modified.
+     * Changing the table or its relationships afterwards {@link #thaw() thaws} it.
+     */
+    public void freeze() {
+        Frozen precomputed = new Frozen();
+        Set<TableColumn> sorted = new TreeSet<TableColumn>(new ByColumnIdComparator());
+        sorted.addAll(columns.values());
+        precomputed.columns = Collections.unmodifiableList(new ArrayList<TableColumn>(sorted));
+        // stored indexes are already precomputed by the store
+        if (!indexesStored)
+            precomputed.indexes = Collections.unmodifiableSet(new HashSet<TableIndex>(indexes.values()));
+
+        for (TableColumn column : columns.values()) {
+            for (TableColumn parentColumn : column.getParents()) {
+                ++precomputed.numParents;
+                if (!column.getParentConstraint(parentColumn).isImplied())
+                    ++precomputed.numNonImpliedParents;
+            }
+            for (TableColumn childColumn : column.getChildren()) {
+                ++precomputed.numChildren;
+                if (!column.getChildConstraint(childColumn).isImplied())
+                    ++precomputed.numNonImpliedChildren;
+            }
+        }
+
+        frozen = precomputed;
+    }
+
+    /**
+     * Discard the details that were precomputed by {@link #freeze()}
+     * because the table or its relationships have changed.
+     */
+    void thaw() {
+        frozen = null;
+        db.relationshipsChanged();
+    }
+
     /**
      * Returns <code>true</code> if this table is logical (not physical), <code>false</code> otherwise
      * @return
@@ -982,6 +1217,16 @@ public class Table implements Comparable<Table> {
         return numRows;
     }
 
+    /**
+     * Returns <code>true</code> if the number of rows has already been
+     * determined (or explicitly set).
+     *
+     * @return
+     */
+    boolean isNumRowsKnown() {
+        return numRows != null;
+    }
+
     /**
      * Explicitly set the number of rows in this table
      *
@@ -1008,41 +1253,122 @@ public class Table implements Comparable<Table> {
 
         String sql = Config.getInstance().getDbProperties().getProperty("selectRowCountSql");
         if (sql != null) {
-            PreparedStatement stmt = null;
-            ResultSet rs = null;
-
             try {
-                stmt = db.prepareStatement(sql, getName());
-                rs = stmt.executeQuery();
-
-                while (rs.next()) {
-                    return rs.getLong("row_count");
-                }
+                long count = fetchNumRows(sql);
+                if (count != -1)
+                    return count;
             } catch (SQLException sqlException) {
                 // don't die just because this failed
                 originalFailure = sqlException;
-            } finally {
-                if (rs != null) {
-                    try {
-                        rs.close();
-                    } catch (SQLException exc) {}
-                }
-                if (stmt != null) {
-                    try {
-                        stmt.close();
-                    } catch (SQLException exc) {}
-                }
             }
         }
 
         // if we get here then we either didn't have custom SQL or it didn't work
+        return fetchExactNumRows(0, originalFailure);
+    }
+
+    /**
+     * Fetch the number of rows in this table with the specified
+     * <code>selectRowCountSql</code>-style SQL.
+     *
+     * @param selectRowCountSql
+     * @return the <code>row_count</code> or -1 if no rows were returned
+     * @throws SQLException
+     */
+    private long fetchNumRows(String selectRowCountSql) throws SQLException {
+        ResultSet rs = null;
+
+        try {
+            PreparedStatement stmt = db.prepareCachedStatement(selectRowCountSql, getName());
+            rs = stmt.executeQuery();
+
+            while (rs.next()) {
+                return rs.getLong("row_count");
+            }
+
+            return -1;
+        } finally {
+            if (rs != null) {
+                try {
+                    rs.close();
+                } catch (SQLException exc) {}
+            }
+        }
+    }
+
+    /**
+     * Fetch a cheap approximation of the number of rows in this table from
+     * the database's statistics, either with <code>selectRowCountSql</code>
+     * or with the cardinality that <code>getIndexInfo()</code> reports for the table.
+     *
+     * @return the approximate number of rows or -1 if the statistics aren't available
+     */
+    long fetchEstimatedNumRows() {
+        if (isView() || isRemote())
+            return -1;
+
+        String sql = Config.getInstance().getDbProperties().getProperty("selectRowCountSql");
+        if (sql != null) {
+            try {
+                return fetchNumRows(sql);
+            } catch (SQLException exc) {
+                if (fineEnabled)
+                    logger.fine("Failed to query row count statistics of " + getName() + ": " + exc);
+            }
+        }
+
+        ResultSet rs = null;
+
+        try {
+            // approximate so we don't provoke the database into (re)analyzing the table
+            rs = db.getMetaData().getIndexInfo(getCatalog(), getSchema(), getName(), false, true);
+            db.applyFetchSize(rs);
+
+            while (rs.next()) {
+                if (rs.getShort("TYPE") == DatabaseMetaData.tableIndexStatistic) {
+                    long cardinality = rs.getLong("CARDINALITY");
+                    if (!rs.wasNull() && cardinality >= 0)
+                        return cardinality;
+                }
+            }
+        } catch (SQLException exc) {
+            if (fineEnabled)
+                logger.fine("Failed to query table statistics of " + getName() + ": " + exc);
+        } finally {
+            if (rs != null) {
+                try {
+                    rs.close();
+                } catch (SQLException exc) {}
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Fetch the exact number of rows in this table by counting them.
+     *
+     * @param queryTimeout maximum number of seconds to let each query run (0 for no limit)
+     * @return the number of rows or -1 if they couldn't be counted
+     */
+    long fetchExactNumRows(int queryTimeout) {
+        return fetchExactNumRows(queryTimeout, null);
+    }
+
+    private long fetchExactNumRows(int queryTimeout, SQLException originalFailure) {
+        long started = System.currentTimeMillis();
+
         try {
             // '*' should work best for the majority of cases
-            return fetchNumRows("count(*)", false);
+            return fetchNumRows("count(*)", false, queryTimeout);
         } catch (SQLException try2Exception) {
             try {
+                // no point in trying again if we ran out of time
+                if (isTimedOut(started, queryTimeout))
+                    throw try2Exception;
+
                 // except nested tables...try using '1' instead
-                return fetchNumRows("count(1)", false);
+                return fetchNumRows("count(1)", false, queryTimeout);
             } catch (SQLException try3Exception) {
                 if (!isLogical()) {
                     logger.warning("Unable to extract the number of rows for table " + getName() + ", using '-1'");
@@ -1058,6 +1384,17 @@ public class Table implements Comparable<Table> {
     }
 
     protected long fetchNumRows(String clause, boolean forceQuotes) throws SQLException {
+        return fetchNumRows(clause, forceQuotes, 0);
+    }
+
+    /**
+     * @param clause
+     * @param forceQuotes
+     * @param queryTimeout maximum number of seconds to let the query run (0 for no limit)
+     * @return
+     * @throws SQLException
+     */
+    private long fetchNumRows(String clause, boolean forceQuotes, int queryTimeout) throws SQLException {
         PreparedStatement stmt = null;
         ResultSet rs = null;
         StringBuilder sql = new StringBuilder("select ");
@@ -1077,20 +1414,24 @@ public class Table implements Comparable<Table> {
         } else
             sql.append(db.getQuotedIdentifier(getName()));
 
+        long started = System.currentTimeMillis();
+
         try {
             if (finerEnabled)
                 logger.finer(sql.toString());
             stmt = db.getConnection().prepareStatement(sql.toString());
+            if (queryTimeout > 0)
+                stmt.setQueryTimeout(queryTimeout);
             rs = stmt.executeQuery();
             while (rs.next()) {
                 return rs.getLong(1);
             }
             return -1;
         } catch (SQLException exc) {
-            if (forceQuotes) // we tried with and w/o quotes...fail this attempt
+            if (forceQuotes || isTimedOut(started, queryTimeout)) // we tried with and w/o quotes...fail this attempt
                 throw exc;
 
-            return fetchNumRows(clause, true);
+            return fetchNumRows(clause, true, queryTimeout);
         } finally {
             if (rs != null)
                 rs.close();
@@ -1099,6 +1440,14 @@ public class Table implements Comparable<Table> {
         }
     }
 
+    /**
+     * Returns <code>true</code> if at least <code>queryTimeout</code> seconds
+     * have passed since <code>started</code>.
+     */
+    private static boolean isTimedOut(long started, int queryTimeout) {
+        return queryTimeout > 0 && System.currentTimeMillis() - started >= queryTimeout * 1000L;
+    }
+
     /**
      * Update the table with the specified XML-derived metadata
      *
@@ -1107,7 +1456,10 @@ public class Table implements Comparable<Table> {
     public void update(TableMeta tableMeta) {
         String newComments = tableMeta.getComments();
         if (newComments != null) {
-            comments = newComments;
+            if (detailStore == null)
+                comments = newComments;
+            else
+                detailStore.setComments(this, newComments);
         }
 
         for (TableColumnMeta colMeta : tableMeta.getColumns()) {
@@ -1197,6 +1549,10 @@ public class Table implements Comparable<Table> {
         if (withImpliedRelationships)
             return getMaxParents() == 0 && getMaxChildren() == 0;
 
+        Frozen precomputed = frozen;
+        if (precomputed != null)
+            return precomputed.numNonImpliedParents == 0 && precomputed.numNonImpliedChildren == 0;
+
         for (TableColumn column : columns.values()) {
             for (TableColumn parentColumn : column.getParents()) {
                 if (!column.getParentConstraint(parentColumn).isImplied())
@@ -1243,4 +1599,16 @@ public class Table implements Comparable<Table> {
             return id1.toString().compareToIgnoreCase(id2.toString());
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Details of a table that were precomputed when it was {@link Table#freeze() frozen}
+     */
+    private static class Frozen {
+        private List<TableColumn> columns;
+        private Set<TableIndex> indexes;    // null if they're in the TableDetailStore
+        private int numParents;
+        private int numChildren;
+        private int numNonImpliedParents;
+        private int numNonImpliedChildren;
+    }
+}
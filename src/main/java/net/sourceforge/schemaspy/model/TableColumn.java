@@ -21,6 +21,7 @@ package net.sourceforge.schemaspy.model;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
@@ -42,17 +43,20 @@ public class TableColumn {
     private final int length;
     private final int decimalDigits;
     private final String detailedSize;
-    private final boolean isNullable;
-    private       boolean isAutoUpdated;
     private       Boolean isUnique;
-    private final Object defaultValue;
+    private       String defaultValue;
     private       String comments;
-    private final Map<TableColumn, ForeignKeyConstraint> parents = new HashMap<TableColumn, ForeignKeyConstraint>();
-    private final Map<TableColumn, ForeignKeyConstraint> children = new TreeMap<TableColumn, ForeignKeyConstraint>(new ColumnComparator());
-    private boolean allowImpliedParents = true;
-    private boolean allowImpliedChildren = true;
-    private boolean isExcluded = false;
-    private boolean isAllExcluded = false;
+    // most columns aren't related to any others, so these are only created when they are
+    private Map<TableColumn, ForeignKeyConstraint> parents;
+    private Map<TableColumn, ForeignKeyConstraint> children;
+    private byte flags = ALLOW_IMPLIED_PARENTS | ALLOW_IMPLIED_CHILDREN;
+    private static final byte NULLABLE = 1;
+    private static final byte AUTO_UPDATED = 2;
+    private static final byte ALLOW_IMPLIED_PARENTS = 4;
+    private static final byte ALLOW_IMPLIED_CHILDREN = 8;
+    private static final byte EXCLUDED = 16;
+    private static final byte ALL_EXCLUDED = 32;
+    private static final Comparator<TableColumn> columnComparator = new ColumnComparator();
     private static final Logger logger = Logger.getLogger(TableColumn.class.getName());
     private static final boolean finerEnabled = logger.isLoggable(Level.FINER);
 
@@ -87,18 +91,24 @@ public class TableColumn {
             buf.append(',');
             buf.append(decimalDigits);
         }
-        detailedSize = buf.toString();
+        detailedSize = buf.toString().intern();
 
-        isNullable = rs.getInt("NULLABLE") == DatabaseMetaData.columnNullable;
-        defaultValue = rs.getString("COLUMN_DEF");
-        setComments(rs.getString("REMARKS"));
-        id = new Integer(rs.getInt("ORDINAL_POSITION") - 1);
+        setFlag(NULLABLE, rs.getInt("NULLABLE") == DatabaseMetaData.columnNullable);
+        String columnDef = rs.getString("COLUMN_DEF");
+        if (columnDef != null)
+            setDefaultValue(columnDef);
+        String remarks = rs.getString("REMARKS");
+        if (remarks != null)
+            setComments(remarks);
+        id = Integer.valueOf(rs.getInt("ORDINAL_POSITION") - 1);
 
         Pattern excludeIndirectColumns = Config.getInstance().getIndirectColumnExclusions();
         Pattern excludeColumns = Config.getInstance().getColumnExclusions();
 
-        isAllExcluded = matches(excludeColumns);
-        isExcluded = isAllExcluded || matches(excludeIndirectColumns);
+        boolean isAllExcluded = matches(excludeColumns);
+        boolean isExcluded = isAllExcluded || matches(excludeIndirectColumns);
+        setFlag(ALL_EXCLUDED, isAllExcluded);
+        setFlag(EXCLUDED, isExcluded);
         if (isExcluded && finerEnabled) {
             logger.finer("Excluding column " + getTable() + '.' + getName() +
                         ": matches " + excludeColumns + ":" + isAllExcluded + " " +
@@ -117,7 +127,7 @@ public class TableColumn {
         this.table = table;
         name = colMeta.getName();
         id = colMeta.getId();
-        type = colMeta.getType();
+        type = colMeta.getType() == null ? null : colMeta.getType().intern();
         length = colMeta.getSize();
         decimalDigits = colMeta.getDigits();
         StringBuilder buf = new StringBuilder();
@@ -126,11 +136,13 @@ public class TableColumn {
             buf.append(',');
             buf.append(decimalDigits);
         }
-        detailedSize = buf.toString();
-        isNullable = colMeta.isNullable();
-        isAutoUpdated = colMeta.isAutoUpdated();
-        defaultValue = colMeta.getDefaultValue();
-        comments = colMeta.getComments();
+        detailedSize = buf.toString().intern();
+        setFlag(NULLABLE, colMeta.isNullable());
+        setFlag(AUTO_UPDATED, colMeta.isAutoUpdated());
+        if (colMeta.getDefaultValue() != null)
+            setDefaultValue(colMeta.getDefaultValue());
+        if (colMeta.getComments() != null)
+            setComments(colMeta.getComments());
     }
 
     /**
@@ -175,7 +187,7 @@ public class TableColumn {
      * @param type
      */
     public void setType(String type) {
-        this.type = type;
+        this.type = type == null ? null : type.intern();
     }
 
     /**
@@ -193,7 +205,7 @@ public class TableColumn {
      * @param shortType
      */
     public void setShortType(String shortType) {
-        this.shortType = shortType;
+        this.shortType = shortType == null ? null : shortType.intern();
     }
 
     /**
@@ -231,7 +243,7 @@ public class TableColumn {
      * @return
      */
     public boolean isNullable() {
-        return isNullable;
+        return (flags & NULLABLE) != 0;
     }
 
     /**
@@ -240,7 +252,7 @@ public class TableColumn {
      * @return
      */
     public boolean isAutoUpdated() {
-        return isAutoUpdated;
+        return (flags & AUTO_UPDATED) != 0;
     }
 
     /**
@@ -249,7 +261,7 @@ public class TableColumn {
      * @param isAutoUpdated boolean
      */
     public void setIsAutoUpdated(boolean isAutoUpdated) {
-        this.isAutoUpdated = isAutoUpdated;
+        setFlag(AUTO_UPDATED, isAutoUpdated);
     }
 
     /**
@@ -294,7 +306,7 @@ public class TableColumn {
      * @return
      */
     public boolean isForeignKey() {
-        return !parents.isEmpty();
+        return parents != null && !parents.isEmpty();
     }
 
     /**
@@ -303,14 +315,30 @@ public class TableColumn {
      * @return
      */
     public Object getDefaultValue() {
-        return defaultValue;
+        TableDetail detail = table.getStoredDetail();
+        return detail == null ? defaultValue : detail.getDefaultValue(this);
+    }
+
+    /**
+     * Sets the value that the database uses for this column if one isn't provided.
+     * Intended for metadata that's loaded separately from the rest of the column's.
+     *
+     * @param defaultValue
+     */
+    void setDefaultValue(String defaultValue) {
+        TableDetailStore store = table.getDetailStore();
+        if (store == null)
+            this.defaultValue = defaultValue;
+        else
+            store.setDefaultValue(this, defaultValue);
     }
 
     /**
      * @return Comments associated with this column, or <code>null</code> if none.
      */
     public String getComments() {
-        return comments;
+        TableDetail detail = table.getStoredDetail();
+        return detail == null ? comments : detail.getComments(this);
     }
 
     /**
@@ -318,7 +346,12 @@ public class TableColumn {
      * @param comments
      */
     public void setComments(String comments) {
-        this.comments = (comments == null || comments.trim().length() == 0) ? null : comments.trim();
+        String cmts = (comments == null || comments.trim().length() == 0) ? null : comments.trim();
+        TableDetailStore store = table.getDetailStore();
+        if (store == null)
+            this.comments = cmts;
+        else
+            store.setComments(this, cmts);
     }
 
     /**
@@ -332,7 +365,7 @@ public class TableColumn {
      * @return
      */
     public boolean isExcluded() {
-        return isExcluded;
+        return (flags & EXCLUDED) != 0;
     }
 
     /**
@@ -345,7 +378,7 @@ public class TableColumn {
      * @return
      */
     public boolean isAllExcluded() {
-        return isAllExcluded;
+        return (flags & ALL_EXCLUDED) != 0;
     }
 
     /**
@@ -355,8 +388,11 @@ public class TableColumn {
      * @param constraint
      */
     public void addParent(TableColumn parent, ForeignKeyConstraint constraint) {
+        if (parents == null)
+            parents = new HashMap<TableColumn, ForeignKeyConstraint>();
         parents.put(parent, constraint);
         table.addedParent();
+        table.thaw();
     }
 
     /**
@@ -365,17 +401,22 @@ public class TableColumn {
      * @param parent
      */
     public void removeParent(TableColumn parent) {
-        parents.remove(parent);
+        if (parents != null)
+            parents.remove(parent);
+        table.thaw();
     }
 
     /**
      * Disassociate all parents from this column
      */
     public void unlinkParents() {
-        for (TableColumn parent : parents.keySet()) {
-            parent.removeChild(this);
+        if (parents != null) {
+            for (TableColumn parent : parents.keySet()) {
+                parent.removeChild(this);
+            }
+            parents.clear();
         }
-        parents.clear();
+        table.thaw();
     }
 
     /**
@@ -384,6 +425,8 @@ public class TableColumn {
      * @return
      */
     public Set<TableColumn> getParents() {
+        if (parents == null)
+            return Collections.emptySet();
         return parents.keySet();
     }
 
@@ -391,7 +434,7 @@ public class TableColumn {
      * Returns the constraint that connects this column to the specified column (this 'child' column to specified 'parent' column)
      */
     public ForeignKeyConstraint getParentConstraint(TableColumn parent) {
-        return parents.get(parent);
+        return parents == null ? null : parents.get(parent);
     }
 
     /**
@@ -400,9 +443,10 @@ public class TableColumn {
      * @return the removed {@link ForeignKeyConstraint}
      */
     public ForeignKeyConstraint removeAParentFKConstraint() {
-        for (TableColumn relatedColumn : parents.keySet()) {
+        for (TableColumn relatedColumn : getParents()) {
             ForeignKeyConstraint constraint = parents.remove(relatedColumn);
             relatedColumn.removeChild(this);
+            table.thaw();
             return constraint;
         }
 
@@ -415,9 +459,10 @@ public class TableColumn {
      * @return the removed constraint, or <code>null</code> if none were available to be removed
      */
     public ForeignKeyConstraint removeAChildFKConstraint() {
-        for (TableColumn relatedColumn : children.keySet()) {
+        for (TableColumn relatedColumn : getChildren()) {
             ForeignKeyConstraint constraint = children.remove(relatedColumn);
             relatedColumn.removeParent(this);
+            table.thaw();
             return constraint;
         }
 
@@ -431,8 +476,11 @@ public class TableColumn {
      * @param constraint
      */
     public void addChild(TableColumn child, ForeignKeyConstraint constraint) {
+        if (children == null)
+            children = new TreeMap<TableColumn, ForeignKeyConstraint>(columnComparator);
         children.put(child, constraint);
         table.addedChild();
+        table.thaw();
     }
 
     /**
@@ -441,16 +489,21 @@ public class TableColumn {
      * @param child
      */
     public void removeChild(TableColumn child) {
-        children.remove(child);
+        if (children != null)
+            children.remove(child);
+        table.thaw();
     }
 
     /**
      * Disassociate all children from this column
      */
     public void unlinkChildren() {
-        for (TableColumn child : children.keySet())
-            child.removeParent(this);
-        children.clear();
+        if (children != null) {
+            for (TableColumn child : children.keySet())
+                child.removeParent(this);
+            children.clear();
+        }
+        table.thaw();
     }
 
     /**
@@ -459,6 +512,8 @@ public class TableColumn {
      * @return Set
      */
     public Set<TableColumn> getChildren() {
+        if (children == null)
+            return Collections.emptySet();
         return children.keySet();
     }
 
@@ -467,7 +522,7 @@ public class TableColumn {
      * (specified 'child' to this 'parent' column)
      */
     public ForeignKeyConstraint getChildConstraint(TableColumn child) {
-        return children.get(child);
+        return children == null ? null : children.get(child);
     }
 
     /**
@@ -496,10 +551,19 @@ public class TableColumn {
             table.setPrimaryColumn(this);
         }
 
-        allowImpliedParents  = !colMeta.isImpliedParentsDisabled();
-        allowImpliedChildren = !colMeta.isImpliedChildrenDisabled();
-        isExcluded |= colMeta.isExcluded();
-        isAllExcluded |= colMeta.isAllExcluded();
+        setFlag(ALLOW_IMPLIED_PARENTS, !colMeta.isImpliedParentsDisabled());
+        setFlag(ALLOW_IMPLIED_CHILDREN, !colMeta.isImpliedChildrenDisabled());
+        if (colMeta.isExcluded())
+            setFlag(EXCLUDED, true);
+        if (colMeta.isAllExcluded())
+            setFlag(ALL_EXCLUDED, true);
+    }
+
+    private void setFlag(byte flag, boolean value) {
+        if (value)
+            flags |= flag;
+        else
+            flags &= ~flag;
     }
 
     /**
@@ -513,7 +577,7 @@ public class TableColumn {
     /**
      * Two {@link TableColumn}s are considered equal if their tables and names match.
      */
-    private class ColumnComparator implements Comparator<TableColumn> {
+    private static class ColumnComparator implements Comparator<TableColumn> {
         public int compare(TableColumn column1, TableColumn column2) {
             int rc = column1.getTable().compareTo(column2.getTable());
             if (rc == 0)
@@ -529,7 +593,7 @@ public class TableColumn {
      * @return
      */
     public boolean allowsImpliedParents() {
-        return allowImpliedParents;
+        return (flags & ALLOW_IMPLIED_PARENTS) != 0;
     }
 
     /**
@@ -539,6 +603,6 @@ public class TableColumn {
      * @return
      */
     public boolean allowsImpliedChildren() {
-        return allowImpliedChildren;
+        return (flags & ALLOW_IMPLIED_CHILDREN) != 0;
     }
 }
\ No newline at end of file
@@ -0,0 +1,104 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010, 2011 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.model;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The descriptive details of a {@link Table} that aren't needed to
+ * relate it to other tables: its comments, check constraints, view SQL,
+ * indexes and the comments and default values of its columns.<p/>
+ *
+ * These are what a {@link TableDetailStore} rebuilds from what was written to it.
+ */
+class TableDetail {
+    static final TableDetail NONE = new TableDetail(-1, null, null, new HashMap<String, String>(),
+                                                    new HashMap<String, String>(), new HashMap<String, String>(), null);
+    private final long offset;
+    private final String comments;
+    private final String viewSql;
+    private final Map<String, String> checkConstraints;
+    private final Map<String, String> columnComments;
+    private final Map<String, String> columnDefaults;
+    private final Map<String, TableIndex> indexes;
+    private final Set<TableIndex> indexSet;
+
+    /**
+     * @param offset where the newest of the details that these were built from was stored
+     * @param comments
+     * @param viewSql
+     * @param checkConstraints keyed by name
+     * @param columnComments keyed by column name
+     * @param columnDefaults keyed by column name
+     * @param indexes keyed by name, or <code>null</code> if they weren't stored
+     */
+    TableDetail(long offset, String comments, String viewSql, Map<String, String> checkConstraints,
+                Map<String, String> columnComments, Map<String, String> columnDefaults,
+                Map<String, TableIndex> indexes) {
+        this.offset = offset;
+        this.comments = comments;
+        this.viewSql = viewSql;
+        this.checkConstraints = Collections.unmodifiableMap(checkConstraints);
+        this.columnComments = columnComments;
+        this.columnDefaults = columnDefaults;
+        if (indexes == null) {
+            this.indexes = Collections.emptyMap();
+            this.indexSet = Collections.emptySet();
+        } else {
+            this.indexes = indexes;
+            this.indexSet = Collections.unmodifiableSet(new HashSet<TableIndex>(indexes.values()));
+        }
+    }
+
+    long getOffset() {
+        return offset;
+    }
+
+    String getComments() {
+        return comments;
+    }
+
+    String getViewSql() {
+        return viewSql;
+    }
+
+    Map<String, String> getCheckConstraints() {
+        return checkConstraints;
+    }
+
+    String getComments(TableColumn column) {
+        return columnComments.get(column.getName());
+    }
+
+    String getDefaultValue(TableColumn column) {
+        return columnDefaults.get(column.getName());
+    }
+
+    TableIndex getIndex(String indexName) {
+        return indexName == null ? null : indexes.get(indexName);
+    }
+
+    Set<TableIndex> getIndexes() {
+        return indexSet;
+    }
+}
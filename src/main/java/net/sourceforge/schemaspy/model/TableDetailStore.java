@@ -0,0 +1,468 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010, 2011 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the {@link TableDetail}s of tables in a file rather than on the heap
+ * so schemas with huge numbers of tables can be analyzed.<p/>
+ *
+ * Details are appended to the store as they're loaded, so they never
+ * accumulate on the heap.  Each change to a table's details is appended as
+ * a fragment that refers to the table's previous fragment, and a table's
+ * details are rebuilt by replaying its fragments.  Once the model has been
+ * built the store is {@link #seal() sealed} and the file is mapped into memory.<p/>
+ *
+ * The details of the most recently used tables are cached.
+ * The cache is split into stripes that are locked independently so the
+ * threads that generate pages don't contend for a single lock.
+ */
+class TableDetailStore {
+    // records don't span segments, so a segment has to be able to hold the largest
+    private static final int SEGMENT_SIZE = 1 << 30;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int DEFAULT_CACHED_TABLES = 512;
+    private static final int NUM_STRIPES = 16;
+
+    private static final byte COMMENTS = 1;
+    private static final byte VIEW_SQL = 2;
+    private static final byte CHECK_CONSTRAINT = 3;
+    private static final byte COLUMN_COMMENTS = 4;
+    private static final byte COLUMN_DEFAULT = 5;
+    private static final byte COLUMNS_CLEARED = 6;
+    private static final byte INDEXES = 7;
+    private static final byte INDEX_ID = 8;
+
+    private final File file;
+    private RandomAccessFile raf;
+    private FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private long size;      // including what's still buffered
+    private long written;   // what's made it to the file
+    private volatile boolean sealed;
+    private volatile List<ByteBuffer> segments;
+    private final List<Map<Table, TableDetail>> stripes = new ArrayList<Map<Table, TableDetail>>(NUM_STRIPES);
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    /**
+     * @param dir where to create the file that backs the store
+     * @throws IOException
+     */
+    TableDetailStore(File dir) throws IOException {
+        file = File.createTempFile("schemaSpy", ".details", dir);
+        file.deleteOnExit();
+        raf = new RandomAccessFile(file, "rw");
+        channel = raf.getChannel();
+
+        final int perStripe = DEFAULT_CACHED_TABLES / NUM_STRIPES;
+        for (int i = 0; i < NUM_STRIPES; ++i) {
+            stripes.add(new LinkedHashMap<Table, TableDetail>(perStripe * 4 / 3 + 1, .75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Table, TableDetail> eldest) {
+                    return size() > perStripe;
+                }
+            });
+        }
+    }
+
+    void setComments(Table table, String comments) {
+        append(table, COMMENTS, comments);
+    }
+
+    void setViewSql(View view, String viewSql) {
+        append(view, VIEW_SQL, viewSql);
+    }
+
+    void addCheckConstraint(Table table, String constraintName, String text) {
+        append(table, CHECK_CONSTRAINT, constraintName, text);
+    }
+
+    void setComments(TableColumn column, String comments) {
+        append(column.getTable(), COLUMN_COMMENTS, column.getName(), comments);
+    }
+
+    void setDefaultValue(TableColumn column, String defaultValue) {
+        append(column.getTable(), COLUMN_DEFAULT, column.getName(), defaultValue);
+    }
+
+    /**
+     * Forget the comments and default values of the table's columns
+     */
+    void clearColumns(Table table) {
+        append(table, COLUMNS_CLEARED);
+    }
+
+    /**
+     * Replace the indexes of the table with <code>indexes</code>
+     */
+    void setIndexes(Table table, Collection<TableIndex> indexes) {
+        try {
+            Record out = new Record(INDEXES);
+            out.writeInt(indexes.size());
+            for (TableIndex index : indexes) {
+                writeString(index.getName(), out);
+                out.writeBoolean(index.isUnique());
+                out.writeBoolean(index.isPrimaryKey());
+                writeId(index.getId(), out);
+                List<TableColumn> columns = index.getColumns();
+                out.writeInt(columns.size());
+                for (TableColumn column : columns) {
+                    writeString(column.getName(), out);
+                    out.writeBoolean(index.isAscending(column));
+                }
+            }
+            append(table, out);
+        } catch (IOException exc) {
+            throw failedToWrite(table, exc);
+        }
+    }
+
+    void setIndexId(Table table, String indexName, Object id) {
+        try {
+            Record out = new Record(INDEX_ID);
+            writeString(indexName, out);
+            writeId(id, out);
+            append(table, out);
+        } catch (IOException exc) {
+            throw failedToWrite(table, exc);
+        }
+    }
+
+    private void append(Table table, byte kind, String... values) {
+        try {
+            Record out = new Record(kind);
+            for (String value : values)
+                writeString(value, out);
+            append(table, out);
+        } catch (IOException exc) {
+            throw failedToWrite(table, exc);
+        }
+    }
+
+    /**
+     * Append <code>out</code> as the newest fragment of the table's details
+     */
+    private synchronized void append(Table table, Record out) throws IOException {
+        if (sealed)
+            throw new IllegalStateException("Details of " + table.getFullName() + " can't be changed once they've been stored");
+
+        ByteBuffer record = ByteBuffer.wrap(out.toByteArray());
+        if (record.limit() > SEGMENT_SIZE)
+            throw new IOException("Details of " + table.getFullName() + " are too large to store");
+        record.putInt(0, record.limit() - 4);
+        record.putLong(4, table.getDetailOffset());
+
+        if (size / SEGMENT_SIZE != (size + record.limit() - 1) / SEGMENT_SIZE) {
+            flush();
+            size = written = (size / SEGMENT_SIZE + 1) * SEGMENT_SIZE;
+        }
+
+        long offset = size;
+        if (record.limit() > buffer.remaining())
+            flush();
+        if (record.limit() > buffer.capacity()) {
+            while (record.hasRemaining())
+                written += channel.write(record, written);
+        } else {
+            buffer.put(record);
+        }
+        size += record.limit();
+
+        table.setDetailOffset(offset);
+    }
+
+    /**
+     * A record that's being written
+     */
+    private static class Record extends DataOutputStream {
+        Record(byte kind) throws IOException {
+            super(new ByteArrayOutputStream());
+            writeInt(0);    // length of the record, filled in when it's appended
+            writeLong(-1);  // offset of the table's previous fragment, ditto
+            writeByte(kind);
+        }
+
+        byte[] toByteArray() {
+            return ((ByteArrayOutputStream)out).toByteArray();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            written += channel.write(buffer, written);
+        buffer.clear();
+    }
+
+    /**
+     * Map the file into memory once all of the details have been written.
+     * The details can still be read from the file if it can't be mapped.
+     */
+    synchronized void seal() {
+        sealed = true;
+        List<ByteBuffer> mapped = new ArrayList<ByteBuffer>();
+
+        try {
+            flush();
+            for (long position = 0; position < size; position += SEGMENT_SIZE)
+                mapped.add(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(SEGMENT_SIZE, size - position)));
+        } catch (IOException exc) {
+            logger.warning("Reading table details from " + file + ": failed to map it into memory: " + exc);
+            return;
+        }
+
+        segments = mapped;
+        closeFile();
+
+        // the mappings remain valid after the file's deleted (on platforms that allow it)
+        file.delete();
+    }
+
+    /**
+     * Release the file if the store hasn't been {@link #seal() sealed}
+     */
+    synchronized void close() {
+        if (!sealed) {
+            sealed = true;
+            closeFile();
+        }
+    }
+
+    private void closeFile() {
+        try {
+            raf.close();
+        } catch (IOException ignore) {}
+        channel = null;
+        raf = null;
+    }
+
+    /**
+     * Returns the current details of the specified table
+     *
+     * @param table
+     * @return
+     */
+    TableDetail getDetail(Table table) {
+        long offset = table.getDetailOffset();
+        if (offset < 0)
+            return TableDetail.NONE;
+
+        int hash = table.hashCode();
+        Map<Table, TableDetail> stripe = stripes.get(((hash >>> 16) ^ hash) & (NUM_STRIPES - 1));
+        TableDetail detail;
+        synchronized (stripe) {
+            detail = stripe.get(table);
+        }
+
+        // the cached details are stale if the table has changed since they were read
+        if (detail == null || detail.getOffset() != offset) {
+            // read without holding the lock; racing threads just read the same fragments
+            try {
+                detail = read(table, offset);
+            } catch (IOException exc) {
+                throw new RuntimeException("Failed to read the details of " + table.getFullName() + " from " + file, exc);
+            }
+            synchronized (stripe) {
+                stripe.put(table, detail);
+            }
+        }
+
+        return detail;
+    }
+
+    private TableDetail read(Table table, long offset) throws IOException {
+        // fragments point to the ones before them, but have to be applied oldest first
+        List<DataInputStream> fragments = new ArrayList<DataInputStream>();
+        for (long next = offset; next >= 0; ) {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(readRecord(next)));
+            next = in.readLong();
+            fragments.add(in);
+        }
+
+        String comments = null;
+        String viewSql = null;
+        Map<String, String> checkConstraints = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+        Map<String, String> columnComments = new HashMap<String, String>();
+        Map<String, String> columnDefaults = new HashMap<String, String>();
+        Map<String, TableIndex> indexes = null;
+
+        for (int i = fragments.size() - 1; i >= 0; --i) {
+            DataInputStream in = fragments.get(i);
+            byte kind = in.readByte();
+            switch (kind) {
+                case COMMENTS:
+                    comments = readString(in);
+                    break;
+                case VIEW_SQL:
+                    viewSql = readString(in);
+                    break;
+                case CHECK_CONSTRAINT:
+                    checkConstraints.put(readString(in), readString(in));
+                    break;
+                case COLUMN_COMMENTS:
+                    columnComments.put(readString(in), readString(in));
+                    break;
+                case COLUMN_DEFAULT:
+                    columnDefaults.put(readString(in), readString(in));
+                    break;
+                case COLUMNS_CLEARED:
+                    columnComments.clear();
+                    columnDefaults.clear();
+                    break;
+                case INDEXES:
+                    indexes = new TreeMap<String, TableIndex>(String.CASE_INSENSITIVE_ORDER);
+                    for (int numIndexes = in.readInt(); numIndexes > 0; --numIndexes) {
+                        TableIndex index = new TableIndex(readString(in), in.readBoolean());
+                        index.setIsPrimaryKey(in.readBoolean());
+                        index.setId(readId(in));
+                        for (int numColumns = in.readInt(); numColumns > 0; --numColumns)
+                            index.addColumn(table.getColumn(readString(in)), in.readBoolean() ? "A" : "D");
+                        indexes.put(index.getName(), index);
+                    }
+                    break;
+                case INDEX_ID: {
+                    String indexName = readString(in);
+                    Object id = readId(in);
+                    TableIndex index = indexes == null ? null : indexes.get(indexName);
+                    if (index != null)
+                        index.setId(id);
+                    break;
+                }
+                default:
+                    throw new IOException("Unknown kind of detail: " + kind);
+            }
+        }
+
+        return new TableDetail(offset, comments, viewSql, checkConstraints, columnComments, columnDefaults, indexes);
+    }
+
+    /**
+     * Returns the record at <code>offset</code> without its length
+     */
+    private byte[] readRecord(long offset) throws IOException {
+        List<ByteBuffer> mapped = segments;
+        if (mapped != null) {
+            ByteBuffer segment = mapped.get((int)(offset / SEGMENT_SIZE)).duplicate();
+            segment.position((int)(offset % SEGMENT_SIZE));
+            byte[] record = new byte[segment.getInt()];
+            segment.get(record);
+            return record;
+        }
+
+        synchronized (this) {
+            if (channel == null)
+                throw new IOException("The store has been closed");
+            if (offset >= written)
+                flush();
+            ByteBuffer length = ByteBuffer.allocate(4);
+            readFully(length, offset);
+            ByteBuffer record = ByteBuffer.allocate(length.getInt(0));
+            readFully(record, offset + 4);
+            return record.array();
+        }
+    }
+
+    private void readFully(ByteBuffer into, long position) throws IOException {
+        while (into.hasRemaining()) {
+            int read = channel.read(into, position + into.position());
+            if (read < 0)
+                throw new IOException("Unexpected end of " + file);
+        }
+    }
+
+    private RuntimeException failedToWrite(Table table, IOException exc) {
+        return new RuntimeException("Failed to write the details of " + table.getFullName() + " to " + file, exc);
+    }
+
+    private static void writeString(String value, DataOutputStream out) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes("UTF-8");
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0)
+            return null;
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    /**
+     * Index ids are whatever the driver returned, so keep the types that
+     * {@link TableIndex#compareTo(TableIndex)} treats differently
+     */
+    private static void writeId(Object id, DataOutputStream out) throws IOException {
+        if (id == null) {
+            out.writeByte(0);
+        } else if (id instanceof Integer) {
+            out.writeByte(1);
+            out.writeInt(((Integer)id).intValue());
+        } else if (id instanceof Long) {
+            out.writeByte(2);
+            out.writeLong(((Long)id).longValue());
+        } else if (id instanceof BigDecimal) {
+            out.writeByte(3);
+            writeString(id.toString(), out);
+        } else {
+            out.writeByte(4);
+            writeString(id.toString(), out);
+        }
+    }
+
+    private static Object readId(DataInputStream in) throws IOException {
+        switch (in.readByte()) {
+            case 0:
+                return null;
+            case 1:
+                return Integer.valueOf(in.readInt());
+            case 2:
+                return Long.valueOf(in.readLong());
+            case 3:
+                return new BigDecimal(readString(in));
+            default:
+                return readString(in);
+        }
+    }
+}
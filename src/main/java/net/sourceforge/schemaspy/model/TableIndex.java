@@ -41,6 +41,15 @@ public class TableIndex implements Comparable<TableIndex> {
         isUnique = !rs.getBoolean("NON_UNIQUE");
     }
 
+    /**
+     * @param name
+     * @param isUnique
+     */
+    TableIndex(String name, boolean isUnique) {
+        this.name = name;
+        this.isUnique = isUnique;
+    }
+
     public void setId(Object id) {
         this.id = id;
     }
@@ -41,13 +41,33 @@ public class View extends Table {
      */
     public View(Database db, String catalog, String schema,
                 String name, String remarks, String viewSql) throws SQLException {
-        super(db, catalog, schema, name, remarks);
+        this(db, catalog, schema, name, remarks, viewSql, true);
+    }
+
+    /**
+     * @param db
+     * @param catalog
+     * @param schema
+     * @param name
+     * @param remarks
+     * @param viewSql
+     * @param initialize <code>false</code> if the view's columns will be loaded in bulk
+     * @throws SQLException
+     */
+    View(Database db, String catalog, String schema,
+                String name, String remarks, String viewSql, boolean initialize) throws SQLException {
+        super(db, catalog, schema, name, remarks, initialize);
 
         if (viewSql == null)
             viewSql = fetchViewSql();
 
-        if (viewSql != null && viewSql.trim().length() > 0)
-            this.viewSql = viewSql;
+        if (viewSql != null && viewSql.trim().length() > 0) {
+            TableDetailStore store = getDetailStore();
+            if (store == null)
+                this.viewSql = viewSql;
+            else
+                store.setViewSql(this, viewSql);
+        }
     }
 
     /**
@@ -60,7 +80,8 @@ public class View extends Table {
 
     @Override
     public String getViewSql() {
-        return viewSql;
+        TableDetail detail = getStoredDetail();
+        return detail == null ? viewSql : detail.getViewSql();
     }
 
     /**
@@ -74,17 +95,16 @@ public class View extends Table {
         if (selectViewSql == null)
             return null;
 
-        PreparedStatement stmt = null;
         ResultSet rs = null;
 
         try {
-            stmt = db.prepareStatement(selectViewSql, getName());
+            PreparedStatement stmt = db.prepareCachedStatement(selectViewSql, getName());
             rs = stmt.executeQuery();
             while (rs.next()) {
                 try {
-                    return rs.getString("view_definition");
+                    return Database.getLargeString(rs, "view_definition");
                 } catch (SQLException tryOldName) {
-                    return rs.getString("text");
+                    return Database.getLargeString(rs, "text");
                 }
             }
             return null;
@@ -94,8 +114,6 @@ public class View extends Table {
         } finally {
             if (rs != null)
                 rs.close();
-            if (stmt != null)
-                stmt.close();
         }
     }
 }
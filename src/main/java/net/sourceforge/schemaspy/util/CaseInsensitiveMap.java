@@ -20,12 +20,16 @@ package net.sourceforge.schemaspy.util;
 
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Locale;
 import java.util.Map;
 
 /**
  * A {@link HashMap} implementation that uses {@link String}s as its keys
  * where the keys are treated without regard to case.  That is, <code>get("MyTableName")</code>
- * will return the same object as <code>get("MYTABLENAME")</code>.
+ * will return the same object as <code>get("MYTABLENAME")</code>.<p/>
+ *
+ * Keys are stored in upper case.  Lookups of keys that are made up of ASCII
+ * characters compare them without creating upper case copies of them.
  *
  * @author John Currier
  */
@@ -44,7 +48,7 @@ public class CaseInsensitiveMap<V> extends HashMap<String, V>
 
     @Override
     public V get(Object key) {
-        return super.get(((String)key).toUpperCase());
+        return super.get(getLookupKey((String)key));
     }
 
     @Override
@@ -65,11 +69,88 @@ public class CaseInsensitiveMap<V> extends HashMap<String, V>
 
     @Override
     public V remove(Object key) {
-        return super.remove(((String)key).toUpperCase());
+        return super.remove(getLookupKey((String)key));
     }
 
     @Override
     public boolean containsKey(Object key) {
-        return super.containsKey(((String)key).toUpperCase());
+        return super.containsKey(getLookupKey((String)key));
+    }
+
+    /**
+     * Returns an object that can be used to look up <code>key</code> in a
+     * {@link HashMap} (or {@link java.util.HashSet}) whose keys are upper case
+     * {@link String}s.
+     *
+     * @param key
+     * @return
+     */
+    public static Object getLookupKey(String key) {
+        if (key == null)
+            return null;
+
+        for (int i = 0; i < key.length(); ++i) {
+            if (key.charAt(i) > 127)
+                return key.toUpperCase();
+        }
+
+        // Turkish and Azeri have their own upper case 'i'
+        String language = Locale.getDefault().getLanguage();
+        if (language.equals("tr") || language.equals("az"))
+            return key.toUpperCase();
+
+        return new AsciiKey(key);
+    }
+
+    /**
+     * An ASCII key that hashes and compares the same as its upper case form
+     * without creating it
+     */
+    private static final class AsciiKey {
+        private final String key;
+        private final int hashCode;
+
+        AsciiKey(String key) {
+            this.key = key;
+
+            int hash = 0;
+            for (int i = 0; i < key.length(); ++i)
+                hash = 31 * hash + toUpperCase(key.charAt(i));
+            hashCode = hash;
+        }
+
+        private static char toUpperCase(char ch) {
+            return ch >= 'a' && ch <= 'z' ? (char)(ch - ('a' - 'A')) : ch;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        /**
+         * Only intended to be compared to the upper case keys of a map
+         */
+        @Override
+        public boolean equals(Object other) {
+            if (other instanceof AsciiKey)
+                other = ((AsciiKey)other).key.toUpperCase();
+            if (!(other instanceof String))
+                return false;
+
+            String upper = (String)other;
+            if (upper.length() != key.length())
+                return false;
+            for (int i = 0; i < upper.length(); ++i) {
+                if (upper.charAt(i) != toUpperCase(key.charAt(i)))
+                    return false;
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return key;
+        }
     }
 }
\ No newline at end of file
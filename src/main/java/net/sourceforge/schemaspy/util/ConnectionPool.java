@@ -0,0 +1,194 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010, 2011 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.util;
+
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * A small pool of database connections that lets metadata queries run
+ * in parallel on the server instead of serializing on a single connection.<p/>
+ *
+ * The <i>primary</i> connection belongs to whoever created the pool and is
+ * never handed out.  Up to <code>maxConnections</code> additional connections
+ * are opened on demand with the same driver, URL and properties.
+ * If the database refuses to open any more then the pool makes do with the
+ * ones that it has, falling back to sharing the primary connection if it
+ * couldn't open any at all.
+ */
+public class ConnectionPool {
+    private final Driver driver;
+    private final String connectionURL;
+    private final Properties connectionProperties;
+    private final Connection primary;
+    private final LinkedList<Connection> idle = new LinkedList<Connection>();
+    private final List<Connection> opened = new ArrayList<Connection>();
+    private int opening;    // connections that are being opened outside of the lock
+    private int maxConnections;
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    /**
+     * @param primary the connection that's already been opened by the caller
+     * @param driver
+     * @param connectionURL
+     * @param connectionProperties
+     * @param maxConnections maximum number of additional connections to open
+     */
+    public ConnectionPool(Connection primary, Driver driver, String connectionURL,
+                          Properties connectionProperties, int maxConnections) {
+        this.primary = primary;
+        this.driver = driver;
+        this.connectionURL = connectionURL;
+        this.connectionProperties = connectionProperties;
+        this.maxConnections = maxConnections;
+    }
+
+    /**
+     * Returns the connection that the pool was created with
+     *
+     * @return
+     */
+    public Connection getPrimaryConnection() {
+        return primary;
+    }
+
+    /**
+     * Returns the maximum number of additional connections that the pool
+     * will hand out concurrently.
+     *
+     * @return
+     */
+    public synchronized int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * Get a dedicated connection, waiting for one to be released if
+     * they're all in use.
+     * The connection must be returned with {@link #release(Connection)}.<p/>
+     *
+     * New connections are opened without holding the pool's lock,
+     * so several threads can be waiting on the database for theirs at once.
+     *
+     * @return
+     * @throws SQLException
+     */
+    public Connection acquire() throws SQLException {
+        while (true) {
+            synchronized (this) {
+                if (!idle.isEmpty())
+                    return idle.removeFirst();
+
+                if (opened.size() + opening >= maxConnections) {
+                    if (maxConnections == 0 && opening == 0)
+                        return primary; // couldn't open any, so share the primary like we used to
+
+                    try {
+                        wait();
+                    } catch (InterruptedException interrupted) {
+                        Thread.currentThread().interrupt();
+                        SQLException failure = new SQLException("Interrupted while waiting for a database connection");
+                        failure.initCause(interrupted);
+                        throw failure;
+                    }
+                    continue;
+                }
+
+                ++opening;
+            }
+
+            Connection connection = open();
+
+            synchronized (this) {
+                --opening;
+                if (connection != null) {
+                    opened.add(connection);
+                    return connection;
+                }
+
+                // the database won't let us have any more, so limit ourselves
+                // to the ones that we have (or might still get)
+                maxConnections = opened.size() + opening;
+                logger.warning("Limiting ourselves to " + (maxConnections + 1) + " database connection(s)");
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Return a connection that was obtained from {@link #acquire()}.
+     * Connections that were handed out before the pool was {@link #close() closed}
+     * are closed rather than being reused.
+     *
+     * @param connection
+     */
+    public synchronized void release(Connection connection) {
+        if (connection != primary) {
+            if (opened.contains(connection)) {
+                idle.addLast(connection);
+                notify();
+            } else {
+                close(connection);
+            }
+        }
+    }
+
+    /**
+     * Close all of the additional connections that the pool has opened,
+     * including any that are still in use.
+     * The primary connection remains open.
+     * The pool can still be used afterwards; it'll just reopen connections as
+     * they're needed.
+     */
+    public synchronized void close() {
+        for (Connection connection : opened)
+            close(connection);
+
+        opened.clear();
+        idle.clear();
+    }
+
+    private void close(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException exc) {
+            logger.fine("Failed to close connection: " + exc);
+        }
+    }
+
+    /**
+     * Open another connection.
+     *
+     * @return the new connection or <code>null</code> if one couldn't be opened
+     */
+    private Connection open() {
+        try {
+            return driver.connect(connectionURL, connectionProperties);
+        } catch (SQLException exc) {
+            logger.warning("Failed to open additional database connection: " + exc);
+            return null;
+        }
+    }
+}
@@ -28,6 +28,17 @@ import org.w3c.dom.Node;
 
 public class DOMUtil {
     public static void printDOM(Node node, LineWriter out) throws TransformerException {
+        newTransformer().transform(new DOMSource(node), new StreamResult(out));
+    }
+
+    /**
+     * Returns a {@link Transformer} that formats the way that
+     * {@link #printDOM(Node, LineWriter)} does.
+     *
+     * @return
+     * @throws TransformerException
+     */
+    public static Transformer newTransformer() throws TransformerException {
         TransformerFactory factory = TransformerFactory.newInstance();
         Transformer xformer;
         boolean indentSpecified = false;
@@ -46,7 +57,7 @@ public class DOMUtil {
         if (!indentSpecified)
             xformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "3");
 
-        xformer.transform(new DOMSource(node), new StreamResult(out));
+        return xformer;
     }
 
     /**
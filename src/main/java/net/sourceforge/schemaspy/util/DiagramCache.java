@@ -0,0 +1,225 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010, 2011 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Previously rendered diagrams keyed on the contents of the .dot files
+ * that they were rendered from.<p/>
+ *
+ * The key also includes the version of <code>dot</code> and the format and
+ * renderer that were used, so changing any of them misses the cache.
+ * Entries are written to temporary files and renamed into place so several
+ * threads or SchemaSpy processes can safely share the same directory.
+ * Using an entry updates its timestamp so the entries that haven't been
+ * used for a while can be {@link #prune(File, int) pruned}.
+ */
+public class DiagramCache {
+    private static final String MAP_ENCODING = "UTF-8";
+    private static final Pattern ENTRY_NAME = Pattern.compile("[0-9a-f]{32}\\.\\w+");
+    private final File dir;
+    private final String imageExtension;
+    private final String variant;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    /**
+     * @param dir where the cached diagrams live
+     * @param imageExtension extension of the cached images
+     * @param variant describes how the diagrams are rendered
+     */
+    public DiagramCache(File dir, String imageExtension, String variant) {
+        this.dir = dir;
+        this.imageExtension = imageExtension;
+        this.variant = variant;
+        dir.mkdirs();
+    }
+
+    /**
+     * If <code>dotFile</code> has already been rendered then copy its image
+     * to <code>diagramFile</code> and return its image map.
+     *
+     * @param dotFile
+     * @param diagramFile
+     * @return the image map or <code>null</code> if it hasn't been rendered
+     */
+    public String get(File dotFile, File diagramFile) {
+        try {
+            String key = getKey(dotFile);
+            File image = new File(dir, key + '.' + imageExtension);
+            File map = new File(dir, key + ".cmapx");
+
+            if (image.exists() && map.exists()) {
+                long now = System.currentTimeMillis();
+                image.setLastModified(now);
+                map.setLastModified(now);
+                copy(image, diagramFile);
+                String imageMap = new String(read(map), MAP_ENCODING);
+                hits.incrementAndGet();
+                return imageMap;
+            }
+        } catch (IOException exc) {
+            logger.fine("Failed to read cached diagram of " + dotFile + ": " + exc);
+        }
+
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Remember that <code>dotFile</code> was rendered into <code>diagramFile</code>
+     * with the specified image map.
+     *
+     * @param dotFile
+     * @param diagramFile
+     * @param imageMap
+     */
+    public void put(File dotFile, File diagramFile, String imageMap) {
+        try {
+            String key = getKey(dotFile);
+            File map = new File(dir, key + ".cmapx");
+            File image = new File(dir, key + '.' + imageExtension);
+
+            // the image is written last since its presence implies a complete entry
+            write(imageMap.getBytes(MAP_ENCODING), map);
+            copy(diagramFile, image);
+        } catch (IOException exc) {
+            logger.fine("Failed to cache diagram of " + dotFile + ": " + exc);
+        }
+    }
+
+    /**
+     * Returns the number of lookups that found a previously rendered diagram
+     */
+    public int getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of lookups that didn't find a previously rendered diagram
+     */
+    public int getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Delete the cached diagrams in <code>dir</code> that haven't been used
+     * in the specified number of days.
+     * Entries that other schemas or jobs sharing the directory still use
+     * are kept as long as they use them more often than that.
+     *
+     * @param dir
+     * @param days
+     * @return the number of files deleted
+     */
+    public static int prune(File dir, int days) {
+        long since = System.currentTimeMillis() - days * 24L * 60 * 60 * 1000;
+
+        int pruned = 0;
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (ENTRY_NAME.matcher(file.getName()).matches() && file.lastModified() < since && file.delete())
+                    ++pruned;
+            }
+        }
+
+        if (pruned > 0)
+            Logger.getLogger(DiagramCache.class.getName()).info("Pruned " + pruned + " unused files from diagram cache " + dir);
+        return pruned;
+    }
+
+    private String getKey(File dotFile) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException exc) {
+            throw new RuntimeException(exc); // every JRE is required to support MD5
+        }
+
+        digest.update(variant.getBytes(MAP_ENCODING));
+        digest.update((byte)0);
+        digest.update(read(dotFile));
+
+        StringBuilder key = new StringBuilder();
+        for (byte b : digest.digest()) {
+            key.append(Character.forDigit((b >> 4) & 0xf, 16));
+            key.append(Character.forDigit(b & 0xf, 16));
+        }
+        return key.toString();
+    }
+
+    private static byte[] read(File file) throws IOException {
+        byte[] contents = new byte[(int)file.length()];
+        InputStream in = new FileInputStream(file);
+        try {
+            int offset = 0;
+            while (offset < contents.length) {
+                int count = in.read(contents, offset, contents.length - offset);
+                if (count < 0)
+                    throw new IOException("Unexpected end of " + file);
+                offset += count;
+            }
+        } finally {
+            in.close();
+        }
+        return contents;
+    }
+
+    private static void copy(File from, File to) throws IOException {
+        write(read(from), to);
+    }
+
+    /**
+     * Write the contents to a temporary file that's then renamed to
+     * <code>file</code> so nobody sees a partially written file.
+     */
+    private static void write(byte[] contents, File file) throws IOException {
+        File temp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+        try {
+            OutputStream out = new FileOutputStream(temp);
+            try {
+                out.write(contents);
+            } finally {
+                out.close();
+            }
+
+            if (!temp.renameTo(file)) {
+                // some platforms won't rename over an existing file
+                file.delete();
+                if (!temp.renameTo(file))
+                    throw new IOException("Failed to rename " + temp + " to " + file);
+            }
+        } finally {
+            temp.delete();
+        }
+    }
+}
@@ -20,12 +20,18 @@ package net.sourceforge.schemaspy.util;
 
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -38,11 +44,12 @@ public class Dot {
     private final Version supportedVersion = new Version("2.2.1");
     private final Version badVersion = new Version("2.4");
     private final String lineSeparator = System.getProperty("line.separator");
-    private String dotExe;
     private String format = "png";
     private String renderer;
     private final Set<String> validatedRenderers = Collections.synchronizedSet(new HashSet<String>());
     private final Set<String> invalidatedRenderers = Collections.synchronizedSet(new HashSet<String>());
+    private String availableRenderers;
+    private final Map<Config, DiagramCache> caches = new WeakHashMap<Config, DiagramCache>();
     private final Logger logger = Logger.getLogger(Dot.class.getName());
 
     private Dot() {
@@ -213,22 +220,8 @@ public class Dot {
         if (invalidatedRenderers.contains(renderer))
             return false;
 
-        try {
-            String[] dotCommand = new String[] {
-                getExe(),
-                "-T" + getFormat() + ':'
-            };
-            Process process = Runtime.getRuntime().exec(dotCommand);
-            BufferedReader errors = new BufferedReader(new InputStreamReader(process.getErrorStream()));
-            String line;
-            while ((line = errors.readLine()) != null) {
-                if (line.contains(getFormat() + renderer)) {
-                    validatedRenderers.add(renderer);
-                }
-            }
-            process.waitFor();
-        } catch (Exception exc) {
-            exc.printStackTrace();
+        if (getAvailableRenderers().contains(getFormat() + renderer)) {
+            validatedRenderers.add(renderer);
         }
 
         if (!validatedRenderers.contains(renderer)) {
@@ -240,35 +233,116 @@ public class Dot {
         return true;
     }
 
+    /**
+     * Returns dot's list of the renderers that are available for our format.
+     * They're all listed when we ask for an unspecified renderer, so a single
+     * probe answers the question for every renderer.
+     *
+     * @return
+     */
+    private synchronized String getAvailableRenderers() {
+        if (availableRenderers == null) {
+            StringBuilder renderers = new StringBuilder();
+
+            try {
+                String[] dotCommand = new String[] {
+                    getExe(),
+                    "-T" + getFormat() + ':'
+                };
+                Process process = Runtime.getRuntime().exec(dotCommand);
+                BufferedReader errors = new BufferedReader(new InputStreamReader(process.getErrorStream()));
+                String line;
+                while ((line = errors.readLine()) != null) {
+                    renderers.append(line);
+                    renderers.append(lineSeparator);
+                }
+                process.waitFor();
+            } catch (Exception exc) {
+                exc.printStackTrace();
+            }
+
+            availableRenderers = renderers.toString();
+        }
+
+        return availableRenderers;
+    }
+
     /**
      * Returns the executable to use to run dot
      *
      * @return
      */
     private String getExe() {
-        if (dotExe == null)
-        {
-            File gv = Config.getInstance().getGraphvizDir();
+        File gv = Config.getInstance().getGraphvizDir();
 
-            if (gv == null) {
-                // default to finding dot in the PATH
-                dotExe = "dot";
-            } else {
-                // pull dot from the Graphviz bin directory specified
-                dotExe = new File(new File(gv, "bin"), "dot").toString();
-            }
+        if (gv == null) {
+            // default to finding dot in the PATH
+            return "dot";
         }
 
-        return dotExe;
+        // pull dot from the Graphviz bin directory specified
+        return new File(new File(gv, "bin"), "dot").toString();
+    }
+
+    /**
+     * Returns the cache of previously rendered diagrams for the current
+     * {@link Config} or <code>null</code> if its diagrams aren't being cached.
+     * Each schema that's analyzed has its own cache (and hit counts),
+     * even if they share a directory.
+     *
+     * @return
+     */
+    public DiagramCache getCache() {
+        Config config = Config.getInstance();
+        if (!config.isDiagramCacheEnabled())
+            return null;
+
+        synchronized (caches) {
+            DiagramCache cache = caches.get(config);
+            if (cache == null) {
+                cache = new DiagramCache(config.getDiagramCacheDir(), getFormat(), "dot " + getVersion() + " -T" + getFormat() + getRenderer());
+                caches.put(config, cache);
+            }
+            return cache;
+        }
     }
 
     /**
      * Using the specified .dot file generates an image returning the image's image map.
+     * A previously rendered image is reused if the .dot file hasn't changed.
      */
     public String generateDiagram(File dotFile, File diagramFile) throws DotFailure {
-        StringBuilder mapBuffer = new StringBuilder(1024);
+        String map = getCachedDiagram(dotFile, diagramFile);
+        if (map == null)
+            map = renderDiagram(dotFile, diagramFile);
+        return map;
+    }
+
+    /**
+     * Returns the image map of a previously rendered image of <code>dotFile</code>
+     * after copying the image to <code>diagramFile</code>, or <code>null</code>
+     * if it hasn't been rendered before.
+     */
+    String getCachedDiagram(File dotFile, File diagramFile) {
+        DiagramCache diagramCache = getCache();
+        return diagramCache == null ? null : diagramCache.get(dotFile, diagramFile);
+    }
+
+    /**
+     * Run <code>dot</code> to generate the image of <code>dotFile</code>,
+     * returning the image's image map.
+     */
+    String renderDiagram(File dotFile, File diagramFile) throws DotFailure {
+        String map = runDot(dotFile, diagramFile);
 
-        BufferedReader mapReader = null;
+        DiagramCache diagramCache = getCache();
+        if (diagramCache != null)
+            diagramCache.put(dotFile, diagramFile, map);
+
+        return map;
+    }
+
+    private String runDot(File dotFile, File diagramFile) throws DotFailure {
         // this one is for executing.  it can (hopefully) deal with funky things in filenames.
         String[] dotCommand = new String[] {
             getExe(),
@@ -281,24 +355,28 @@ public class Dot {
         String commandLine = getDisplayableCommand(dotCommand);
         logger.fine(commandLine);
 
+        Process process = null;
         try {
-            Process process = Runtime.getRuntime().exec(dotCommand);
+            process = Runtime.getRuntime().exec(dotCommand);
             new ProcessOutputReader(commandLine, process.getErrorStream()).start();
-            mapReader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-            String line;
-            while ((line = mapReader.readLine()) != null) {
-                mapBuffer.append(line);
-                mapBuffer.append(lineSeparator);
-            }
+
+            // read the map in another thread so waiting for dot can be interrupted
+            MapReader mapReader = new MapReader(process.getInputStream());
+            mapReader.start();
             int rc = process.waitFor();
+            mapReader.join();
+            if (mapReader.failure != null)
+                throw mapReader.failure;
             if (rc != 0)
                 throw new DotFailure("'" + commandLine + "' failed with return code " + rc);
             if (!diagramFile.exists())
                 throw new DotFailure("'" + commandLine + "' failed to create output file");
 
             // dot generates post-HTML 4.0.1 output...convert trailing />'s to >'s
-            return mapBuffer.toString().replace("/>", ">");
+            return mapReader.map.toString().replace("/>", ">");
         } catch (InterruptedException interrupted) {
+            process.destroy();
+            diagramFile.delete();
             throw new RuntimeException(interrupted);
         } catch (DotFailure failed) {
             diagramFile.delete();
@@ -306,13 +384,118 @@ public class Dot {
         } catch (IOException failed) {
             diagramFile.delete();
             throw new DotFailure("'" + commandLine + "' failed with exception " + failed);
-        } finally {
-            if (mapReader != null) {
-                try {
-                    mapReader.close();
-                } catch (IOException ignore) {}
+        }
+    }
+
+    /**
+     * Using the specified .dot files generates their images with a single
+     * <code>dot</code> process, returning the image maps keyed by .dot file.<p/>
+     *
+     * <code>dot</code>'s <code>-O</code> option writes each output next to its
+     * input, so the outputs are moved to where they belong afterwards.
+     * Diagrams that couldn't be rendered this way aren't included in the results
+     * and should be rendered individually with {@link #generateDiagram(File, File)}.
+     *
+     * @param dotFiles
+     * @param diagramFiles where to put the image of the corresponding .dot file
+     * @return
+     */
+    public Map<File, String> generateDiagrams(List<File> dotFiles, List<File> diagramFiles) {
+        Map<File, String> maps = new HashMap<File, String>();
+        String format = getFormat() + getRenderer();
+        List<String> command = new ArrayList<String>();
+        command.add(getExe());
+        command.add("-T" + format);
+        command.add("-Tcmapx");
+        command.add("-O");
+        for (File dotFile : dotFiles) {
+            getOutputFile(dotFile, format).delete();
+            getOutputFile(dotFile, "cmapx").delete();
+            command.add(dotFile.toString());
+        }
+        String[] dotCommand = command.toArray(new String[command.size()]);
+        String commandLine = getDisplayableCommand(dotCommand);
+        logger.fine(commandLine);
+
+        Process process = null;
+        try {
+            process = Runtime.getRuntime().exec(dotCommand);
+            new ProcessOutputReader(commandLine, process.getErrorStream()).start();
+            new ProcessOutputReader(commandLine, process.getInputStream()).start();
+            int rc = process.waitFor();
+
+            for (int i = 0; i < dotFiles.size(); ++i) {
+                File dotFile = dotFiles.get(i);
+                File diagramFile = diagramFiles.get(i);
+                File imageFile = getOutputFile(dotFile, format);
+                File mapFile = getOutputFile(dotFile, "cmapx");
+
+                if (rc == 0 && imageFile.exists() && mapFile.exists()) {
+                    diagramFile.delete();
+                    if (imageFile.renameTo(diagramFile)) {
+                        String map = readMap(mapFile);
+                        maps.put(dotFile, map);
+                        if (getCache() != null)
+                            getCache().put(dotFile, diagramFile, map);
+                    }
+                }
+
+                imageFile.delete();
+                mapFile.delete();
+            }
+
+            if (rc != 0)
+                logger.fine("'" + commandLine + "' failed with return code " + rc);
+        } catch (InterruptedException interrupted) {
+            process.destroy();
+            throw new RuntimeException(interrupted);
+        } catch (IOException failed) {
+            logger.fine("'" + commandLine + "' failed with exception " + failed);
+        }
+
+        return maps;
+    }
+
+    /**
+     * Returns the file that <code>dot -O</code> writes the specified
+     * output format of <code>dotFile</code> to.
+     * E.g. <code>x.dot</code> rendered with <code>-Tpng:cairo:gd</code> goes to
+     * <code>x.dot.gd.cairo.png</code>.
+     */
+    private static File getOutputFile(File dotFile, String format) {
+        String[] pieces = format.split(":");
+        StringBuilder name = new StringBuilder(dotFile.getName());
+        for (int i = pieces.length - 1; i > 0; --i) {
+            if (pieces[i].length() > 0) {
+                name.append('.');
+                name.append(pieces[i]);
             }
         }
+        name.append('.');
+        name.append(pieces[0]);
+        return new File(dotFile.getParentFile(), name.toString());
+    }
+
+    /**
+     * Read a .cmapx file the same way that {@link #generateDiagram(File, File)}
+     * reads the image map from dot's output.
+     */
+    private String readMap(File mapFile) throws IOException {
+        StringBuilder mapBuffer = new StringBuilder(1024);
+        BufferedReader mapReader = new BufferedReader(new InputStreamReader(new FileInputStream(mapFile)));
+
+        try {
+            String line;
+            while ((line = mapReader.readLine()) != null) {
+                mapBuffer.append(line);
+                mapBuffer.append(lineSeparator);
+            }
+        } finally {
+            mapReader.close();
+        }
+
+        // dot generates post-HTML 4.0.1 output...convert trailing />'s to >'s
+        return mapBuffer.toString().replace("/>", ">");
     }
 
     public class DotFailure extends IOException {
@@ -333,6 +516,37 @@ public class Dot {
         return displayable.toString();
     }
 
+    /**
+     * Reads the image map that <code>dot</code> writes to its standard output
+     */
+    private class MapReader extends Thread {
+        private final BufferedReader processReader;
+        private final StringBuilder map = new StringBuilder(1024);
+        private IOException failure;
+
+        MapReader(InputStream processStream) {
+            processReader = new BufferedReader(new InputStreamReader(processStream));
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                String line;
+                while ((line = processReader.readLine()) != null) {
+                    map.append(line);
+                    map.append(lineSeparator);
+                }
+            } catch (IOException exc) {
+                failure = exc;
+            } finally {
+                try {
+                    processReader.close();
+                } catch (IOException ignore) {}
+            }
+        }
+    }
+
     private static class ProcessOutputReader extends Thread {
         private final BufferedReader processReader;
         private final String command;
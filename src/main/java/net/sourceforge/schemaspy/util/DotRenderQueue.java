@@ -0,0 +1,220 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010, 2011 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.util;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A queue of diagrams waiting to be rendered by Graphviz that's drained by
+ * a fixed number of concurrent <code>dot</code> processes.<p/>
+ *
+ * Rendering a diagram returns a {@link Future} of its image map so the caller
+ * can carry on producing more work while <code>dot</code> runs.<p/>
+ *
+ * When batching is enabled each <code>dot</code> process renders all of
+ * the diagrams that have accumulated in the queue (up to the batch size)
+ * rather than just one of them.
+ * Diagrams that fail to render as part of a batch are rendered individually
+ * so their failures are reported the same way as without batching.
+ */
+public class DotRenderQueue {
+    private final Dot dot;
+    private final ExecutorService executor;
+    private final int batchSize;
+    private final BlockingQueue<Render> pending = new LinkedBlockingQueue<Render>();
+    private volatile boolean abandoned;
+
+    /**
+     * @param maxProcesses maximum number of <code>dot</code> processes to run at once.
+     *          Zero renders each diagram in the calling thread as it's submitted.
+     */
+    public DotRenderQueue(int maxProcesses) {
+        this(maxProcesses, 1);
+    }
+
+    /**
+     * @param maxProcesses maximum number of <code>dot</code> processes to run at once.
+     *          Zero renders each diagram in the calling thread as it's submitted.
+     * @param batchSize maximum number of diagrams to render with each process
+     */
+    public DotRenderQueue(int maxProcesses, int batchSize) {
+        dot = Dot.getInstance();
+
+        // resolve the renderer now rather than racing to do it in several threads
+        dot.getRenderer();
+
+        executor = maxProcesses > 0 ? Executors.newFixedThreadPool(maxProcesses) : null;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Queue the specified .dot file to be rendered into <code>diagramFile</code>.
+     *
+     * @param dotFile
+     * @param diagramFile
+     * @return the diagram's image map.
+     *      {@link Future#get()} throws an {@link ExecutionException} whose cause
+     *      is a {@link Dot.DotFailure} if the rendering failed.
+     */
+    public Future<String> submit(File dotFile, File diagramFile) {
+        Render render = new Render(dotFile, diagramFile);
+
+        // don't bother queueing diagrams that have already been rendered
+        String map = dot.getCachedDiagram(dotFile, diagramFile);
+        if (map != null) {
+            render.rendered(map);
+        } else if (executor == null) {
+            render.run();
+        } else if (batchSize > 1) {
+            // whichever thread gets to the queue first renders everything that's waiting
+            pending.add(render);
+            executor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        renderBatch();
+                    } catch (RuntimeException exc) {
+                        if (!abandoned)
+                            throw exc;
+                    }
+                }
+            });
+        } else {
+            executor.execute(render);
+        }
+
+        return render;
+    }
+
+    /**
+     * Wait for everything that's been queued to be rendered and then
+     * release the threads that did the rendering.
+     *
+     * @throws InterruptedException
+     */
+    public void shutdown() throws InterruptedException {
+        if (executor != null) {
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Stop rendering without waiting for what's been queued, killing
+     * the <code>dot</code> processes that are running.
+     * Diagrams that hadn't been rendered are cancelled.
+     */
+    public void abandon() {
+        abandoned = true;
+        if (executor != null) {
+            for (Runnable unstarted : executor.shutdownNow()) {
+                if (unstarted instanceof Render)
+                    ((Render)unstarted).cancel(false);
+            }
+        }
+
+        List<Render> unrendered = new ArrayList<Render>();
+        pending.drainTo(unrendered);
+        for (Render render : unrendered)
+            render.cancel(false);
+    }
+
+    /**
+     * Render up to <code>batchSize</code> of the diagrams that are waiting
+     * with a single <code>dot</code> process.
+     */
+    private void renderBatch() {
+        List<Render> batch = new ArrayList<Render>();
+        pending.drainTo(batch, batchSize);
+        if (batch.isEmpty())
+            return; // an earlier batch took care of it
+
+        if (batch.size() == 1) {
+            batch.get(0).run();
+            return;
+        }
+
+        List<File> dotFiles = new ArrayList<File>(batch.size());
+        List<File> diagramFiles = new ArrayList<File>(batch.size());
+        for (Render render : batch) {
+            dotFiles.add(render.dotFile);
+            diagramFiles.add(render.diagramFile);
+        }
+
+        Map<File, String> maps = Collections.emptyMap();
+        try {
+            maps = dot.generateDiagrams(dotFiles, diagramFiles);
+        } finally {
+            for (Render render : batch) {
+                String map = maps.get(render.dotFile);
+                if (map != null)
+                    render.rendered(map);
+                else
+                    render.run();
+            }
+        }
+    }
+
+    /**
+     * The pending rendering of a single diagram.
+     * Running it renders the diagram by itself.
+     */
+    private class Render extends FutureTask<String> {
+        private final File dotFile;
+        private final File diagramFile;
+
+        Render(final File dotFile, final File diagramFile) {
+            super(new Callable<String>() {
+                public String call() throws Dot.DotFailure {
+                    return dot.renderDiagram(dotFile, diagramFile);
+                }
+            });
+
+            this.dotFile = dotFile;
+            this.diagramFile = diagramFile;
+        }
+
+        @Override
+        public void run() {
+            if (abandoned)
+                cancel(false);
+            else
+                super.run();
+        }
+
+        /**
+         * The diagram was rendered as part of a batch or came from the cache
+         */
+        void rendered(String map) {
+            set(map);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010, 2011 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.util;
+
+/**
+ * Encodes values as JSON (which is also valid JavaScript) for the data
+ * files that pages are rendered from in the browser.
+ */
+public class JsonEncoder {
+    private static final char[] hexDigits = "0123456789abcdef".toCharArray();
+
+    private JsonEncoder() {}
+
+    /**
+     * Returns the specified string as a quoted JSON string
+     * or <code>null</code> if it's <code>null</code>.
+     *
+     * @param str
+     * @return
+     */
+    public static String encodeString(String str) {
+        if (str == null)
+            return "null";
+
+        int len = str.length();
+        StringBuilder buf = new StringBuilder(len + 2);
+        buf.append('"');
+        for (int i = 0; i < len; i++) {
+            char ch = str.charAt(i);
+            switch (ch) {
+                case '"':
+                    buf.append("\\\"");
+                    break;
+                case '\\':
+                    buf.append("\\\\");
+                    break;
+                case '\n':
+                    buf.append("\\n");
+                    break;
+                case '\r':
+                    buf.append("\\r");
+                    break;
+                case '\t':
+                    buf.append("\\t");
+                    break;
+                case '/':
+                    // keep "</script>" from ending a script that it's embedded in
+                    if (i > 0 && str.charAt(i - 1) == '<')
+                        buf.append('\\');
+                    buf.append(ch);
+                    break;
+                default:
+                    // line and paragraph separators are valid JSON but not valid JavaScript
+                    if (ch < ' ' || ch == '\u2028' || ch == '\u2029') {
+                        buf.append("\\u");
+                        buf.append(hexDigits[(ch >> 12) & 0xf]);
+                        buf.append(hexDigits[(ch >> 8) & 0xf]);
+                        buf.append(hexDigits[(ch >> 4) & 0xf]);
+                        buf.append(hexDigits[ch & 0xf]);
+                    } else {
+                        buf.append(ch);
+                    }
+            }
+        }
+        buf.append('"');
+
+        return buf.toString();
+    }
+}
@@ -60,8 +60,11 @@ public class LineWriter extends BufferedWriter {
         this(new OutputStreamWriter(out, charset), sz);
     }
 
-    private LineWriter(Writer out, int sz) {
-        // by this point a charset has already been specified
+    /**
+     * Write to something that doesn't deal in bytes, such as a {@link java.io.StringWriter}
+     */
+    public LineWriter(Writer out, int sz) {
+        // by this point a charset has already been specified (if one's needed)
         super(out, sz);
         this.out = out;
     }
@@ -137,7 +137,7 @@ public class DefaultSqlFormatter implements SqlFormatter {
      * @param db
      * @return
      */
-    protected Map<String, Table> getTableMap(Database db)
+    protected synchronized Map<String, Table> getTableMap(Database db)
     {
         if (tablesByPossibleNames == null)
         {
@@ -184,7 +184,7 @@ public class DefaultSqlFormatter implements SqlFormatter {
      * @param meta
      * @return
      */
-    public Set<String> getKeywords(DatabaseMetaData meta) {
+    public synchronized Set<String> getKeywords(DatabaseMetaData meta) {
         if (keywords == null) {
             keywords = new HashSet<String>(Arrays.asList(new String[] {
                 "ABSOLUTE", "ACTION", "ADD", "ALL", "ALLOCATE", "ALTER", "AND",
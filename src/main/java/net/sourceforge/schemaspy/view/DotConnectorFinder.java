@@ -21,8 +21,9 @@ package net.sourceforge.schemaspy.view;
 import java.io.IOException;
 import java.util.HashSet;
 import java.util.Set;
+import net.sourceforge.schemaspy.model.ForeignKeyConstraint;
+import net.sourceforge.schemaspy.model.RelationshipGraph;
 import net.sourceforge.schemaspy.model.Table;
-import net.sourceforge.schemaspy.model.TableColumn;
 
 /**
  * Format table data into .dot format to feed to Graphvis' dot program.
@@ -50,9 +51,21 @@ public class DotConnectorFinder {
      */
     public Set<DotConnector> getRelatedConnectors(Table table, boolean includeImplied) {
         Set<DotConnector> relationships = new HashSet<DotConnector>();
+        RelationshipGraph graph = table.getDatabase().getRelationshipGraph();
+        int id = graph.getTableId(table);
+        int kinds = includeImplied ? RelationshipGraph.ALL : RelationshipGraph.NOT_IMPLIED;
 
-        for (TableColumn column : table.getColumns()) {
-            relationships.addAll(getRelatedConnectors(column, null, false, includeImplied));
+        for (int edge = graph.getParentEdgesStart(id); edge < graph.getParentEdgesEnd(id); ++edge) {
+            if ((graph.getKind(edge) & kinds) != 0 &&
+                    !graph.getChildColumn(edge).isExcluded() && !graph.getParentColumn(edge).isExcluded())
+                relationships.add(createConnector(graph, edge));
+        }
+
+        for (int i = graph.getChildEdgesStart(id); i < graph.getChildEdgesEnd(id); ++i) {
+            int edge = graph.getChildEdge(i);
+            if ((graph.getKind(edge) & kinds) != 0 &&
+                    !graph.getParentColumn(edge).isExcluded() && !graph.getChildColumn(edge).isExcluded())
+                relationships.add(createConnector(graph, edge));
         }
 
         return relationships;
@@ -68,55 +81,37 @@ public class DotConnectorFinder {
      */
     public Set<DotConnector> getRelatedConnectors(Table table1, Table table2, boolean includeExcluded, boolean includeImplied) {
         Set<DotConnector> relationships = new HashSet<DotConnector>();
+        RelationshipGraph graph = table1.getDatabase().getRelationshipGraph();
+        int id1 = graph.getTableId(table1);
+        int id2 = graph.getTableId(table2);
+        if (id1 == -1 || id2 == -1)
+            return relationships;
 
-        for (TableColumn column : table1.getColumns()) {
-            relationships.addAll(getRelatedConnectors(column, table2, includeExcluded, includeImplied));
-        }
-
-        for (TableColumn column : table2.getColumns()) {
-            relationships.addAll(getRelatedConnectors(column, table1, includeExcluded, includeImplied));
-        }
+        int kinds = includeImplied ? RelationshipGraph.ALL : RelationshipGraph.NOT_IMPLIED;
+        addConnectors(graph, id1, id2, includeExcluded, kinds, relationships);
+        addConnectors(graph, id2, id1, includeExcluded, kinds, relationships);
 
         return relationships;
     }
 
     /**
-     * @param column TableColumn
-     * @param targetTable Table
-     * @throws IOException
-     * @return Set of <code>dot</code> relationships (as {@link DotConnector}s)
+     * Add the connectors of the foreign keys in <code>childTable</code>
+     * that reference <code>parentTable</code>
      */
-    private Set<DotConnector> getRelatedConnectors(TableColumn column, Table targetTable, boolean includeExcluded, boolean includeImplied) {
-        Set<DotConnector> relatedConnectors = new HashSet<DotConnector>();
-        if (!includeExcluded && column.isExcluded())
-            return relatedConnectors;
-
-        for (TableColumn parentColumn : column.getParents()) {
-            Table parentTable = parentColumn.getTable();
-            if (targetTable != null && parentTable != targetTable)
-                continue;
-            if (targetTable == null && !includeExcluded && parentColumn.isExcluded())
+    private void addConnectors(RelationshipGraph graph, int childTable, int parentTable, boolean includeExcluded, int kinds, Set<DotConnector> connectors) {
+        for (int edge = graph.getParentEdgesStart(childTable); edge < graph.getParentEdgesEnd(childTable); ++edge) {
+            if (graph.getParentTable(edge) != parentTable || (graph.getKind(edge) & kinds) == 0)
                 continue;
-            boolean implied = column.getParentConstraint(parentColumn).isImplied();
-            boolean explicit = column.getParentConstraint(parentColumn).isExplicit();
-            if (!implied || includeImplied) {
-                relatedConnectors.add(new DotConnector(parentColumn, column, implied, explicit));
-            }
-        }
 
-        for (TableColumn childColumn : column.getChildren()) {
-            Table childTable = childColumn.getTable();
-            if (targetTable != null && childTable != targetTable)
-                continue;
-            if (targetTable == null && !includeExcluded && childColumn.isExcluded())
-                continue;
-            boolean implied = column.getChildConstraint(childColumn).isImplied();
-            boolean explicit = column.getChildConstraint(childColumn).isExplicit();
-            if (!implied || includeImplied) {
-                relatedConnectors.add(new DotConnector(column, childColumn, implied, explicit));
-            }
+            // the relationship is followed from either of its columns
+            // so it's only skipped if both of them are excluded
+            if (includeExcluded || !graph.getChildColumn(edge).isExcluded() || !graph.getParentColumn(edge).isExcluded())
+                connectors.add(createConnector(graph, edge));
         }
+    }
 
-        return relatedConnectors;
+    private DotConnector createConnector(RelationshipGraph graph, int edge) {
+        ForeignKeyConstraint constraint = graph.getConstraint(edge);
+        return new DotConnector(graph.getParentColumn(edge), graph.getChildColumn(edge), constraint.isImplied(), constraint.isExplicit());
     }
 }
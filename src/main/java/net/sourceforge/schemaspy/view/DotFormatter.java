@@ -20,6 +20,7 @@ package net.sourceforge.schemaspy.view;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -32,6 +33,7 @@ import net.sourceforge.schemaspy.Config;
 import net.sourceforge.schemaspy.Revision;
 import net.sourceforge.schemaspy.model.Database;
 import net.sourceforge.schemaspy.model.ForeignKeyConstraint;
+import net.sourceforge.schemaspy.model.RelationshipGraph;
 import net.sourceforge.schemaspy.model.Table;
 import net.sourceforge.schemaspy.model.TableColumn;
 import net.sourceforge.schemaspy.util.Dot;
@@ -45,7 +47,6 @@ import net.sourceforge.schemaspy.view.DotNode.DotNodeConfig;
  */
 public class DotFormatter {
     private static DotFormatter instance = new DotFormatter();
-    private final int fontSize = Config.getInstance().getFontSize();
 
     /**
      * Singleton - prevent creation
@@ -185,47 +186,47 @@ public class DotFormatter {
     }
 
     private Set<Table> getImmediateRelatives(Table table, boolean includeExcluded, boolean includeImplied, Set<ForeignKeyConstraint> skippedImpliedConstraints) {
-        Set<TableColumn> relatedColumns = new HashSet<TableColumn>();
-
-        for (TableColumn column : table.getColumns()) {
-            if (column.isAllExcluded() || (!includeExcluded && column.isExcluded())) {
-                continue;
-            }
-
-            for (TableColumn childColumn : column.getChildren()) {
-                if (childColumn.isAllExcluded() || (!includeExcluded && childColumn.isExcluded())) {
-                    continue;
-                }
-
-                ForeignKeyConstraint constraint = column.getChildConstraint(childColumn);
-                if (includeImplied || !constraint.isImplied())
-                    relatedColumns.add(childColumn);
-                else
-                    skippedImpliedConstraints.add(constraint);
-            }
-
-            for (TableColumn parentColumn : column.getParents()) {
-                if (parentColumn.isAllExcluded() || (!includeExcluded && parentColumn.isExcluded())) {
-                    continue;
-                }
-
-                ForeignKeyConstraint constraint = column.getParentConstraint(parentColumn);
-                if (includeImplied || !constraint.isImplied())
-                    relatedColumns.add(parentColumn);
-                else
-                    skippedImpliedConstraints.add(constraint);
-            }
+        RelationshipGraph graph = table.getDatabase().getRelationshipGraph();
+        int id = graph.getTableId(table);
+        BitSet related = new BitSet(graph.getNumTables());
+
+        for (int edge = graph.getParentEdgesStart(id); edge < graph.getParentEdgesEnd(id); ++edge)
+            addRelative(graph, edge, graph.getChildColumn(edge), graph.getParentColumn(edge), graph.getParentTable(edge),
+                        includeExcluded, includeImplied, related, skippedImpliedConstraints);
+
+        for (int i = graph.getChildEdgesStart(id); i < graph.getChildEdgesEnd(id); ++i) {
+            int edge = graph.getChildEdge(i);
+            addRelative(graph, edge, graph.getParentColumn(edge), graph.getChildColumn(edge), graph.getChildTable(edge),
+                        includeExcluded, includeImplied, related, skippedImpliedConstraints);
         }
 
-        Set<Table> relatedTables = new HashSet<Table>();
-        for (TableColumn column : relatedColumns)
-            relatedTables.add(column.getTable());
+        related.clear(id);
 
-        relatedTables.remove(table);
+        Set<Table> relatedTables = new HashSet<Table>();
+        for (int relative = related.nextSetBit(0); relative >= 0; relative = related.nextSetBit(relative + 1))
+            relatedTables.add(graph.getTable(relative));
 
         return relatedTables;
     }
 
+    /**
+     * Mark the table on the other end of <code>edge</code> as related
+     * unless either end of it has been excluded or it's an implied
+     * relationship that's not being included.
+     */
+    private void addRelative(RelationshipGraph graph, int edge, TableColumn column, TableColumn otherColumn, int otherTable,
+                             boolean includeExcluded, boolean includeImplied, BitSet related, Set<ForeignKeyConstraint> skippedImpliedConstraints) {
+        if (column.isAllExcluded() || (!includeExcluded && column.isExcluded()))
+            return;
+        if (otherColumn.isAllExcluded() || (!includeExcluded && otherColumn.isExcluded()))
+            return;
+
+        if (includeImplied || graph.getKind(edge) != RelationshipGraph.IMPLIED)
+            related.set(otherTable);
+        else
+            skippedImpliedConstraints.add(graph.getConstraint(edge));
+    }
+
     private void writeHeader(String diagramName, boolean showLabel, LineWriter dot) throws IOException {
         dot.writeln("// dot " + Dot.getInstance().getVersion() + " on " + System.getProperty("os.name") + " " + System.getProperty("os.version"));
         dot.writeln("// SchemaSpy rev " + new Revision());
@@ -245,11 +246,11 @@ public class DotFormatter {
         dot.writeln("    nodesep=\"0.18\"");
         dot.writeln("    ranksep=\"0.46\"");
         dot.writeln("    fontname=\"" + Config.getInstance().getFont() + "\"");
-        dot.writeln("    fontsize=\"" + fontSize + "\"");
+        dot.writeln("    fontsize=\"" + Config.getInstance().getFontSize() + "\"");
         dot.writeln("  ];");
         dot.writeln("  node [");
         dot.writeln("    fontname=\"" + Config.getInstance().getFont() + "\"");
-        dot.writeln("    fontsize=\"" + fontSize + "\"");
+        dot.writeln("    fontsize=\"" + Config.getInstance().getFontSize() + "\"");
         dot.writeln("    shape=\"plaintext\"");
         dot.writeln("  ];");
         dot.writeln("  edge [");
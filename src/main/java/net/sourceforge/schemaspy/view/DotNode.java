@@ -33,7 +33,6 @@ public class DotNode {
     private final String path;
     private final Set<TableColumn> excludedColumns = new HashSet<TableColumn>();
     private final String lineSeparator = System.getProperty("line.separator");
-    private final boolean displayNumRows = Config.getInstance().isNumRowsEnabled();
 
     /**
      * Create a DotNode that is a focal point of a diagram.
@@ -150,7 +149,7 @@ public class DotNode {
             buf.append("view");
         else {
             final long numRows = table.getNumRows();
-            if (displayNumRows && numRows >= 0) {
+            if (Config.getInstance().isNumRowsEnabled() && numRows >= 0) {
                 buf.append(NumberFormat.getInstance().format(numRows));
                 buf.append(" row");
                 if (numRows != 1)
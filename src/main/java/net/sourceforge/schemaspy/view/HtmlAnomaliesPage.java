@@ -148,12 +148,12 @@ public class HtmlAnomaliesPage extends HtmlFormatter {
         if (!unindexedTables.isEmpty()) {
             out.writeln("<table class='dataTable' border='1' rules='groups'>");
             out.writeln("<colgroup>");
-            if (displayNumRows)
+            if (displayNumRows())
                 out.writeln("<colgroup>");
             out.writeln("<thead align='left'>");
             out.writeln("<tr>");
             out.write("  <th>Table</th>");
-            if (displayNumRows)
+            if (displayNumRows())
                 out.write("<th>Rows</th>");
             out.writeln();
             out.writeln("</tr>");
@@ -169,7 +169,7 @@ public class HtmlAnomaliesPage extends HtmlFormatter {
                 out.write(table.getName());
                 out.write("</a>");
                 out.writeln("</td>");
-                if (displayNumRows) {
+                if (displayNumRows()) {
                     out.write("  <td class='detail' align='right'>");
                     if (table.getNumRows() >= 0)
                         out.write(String.valueOf(NumberFormat.getIntegerInstance().format(table.getNumRows())));
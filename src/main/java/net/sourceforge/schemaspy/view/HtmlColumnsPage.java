@@ -18,12 +18,16 @@
  */
 package net.sourceforge.schemaspy.view;
 
+import java.io.CharArrayWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -35,6 +39,8 @@ import net.sourceforge.schemaspy.model.Table;
 import net.sourceforge.schemaspy.model.Table.ByColumnIdComparator;
 import net.sourceforge.schemaspy.model.TableColumn;
 import net.sourceforge.schemaspy.model.TableIndex;
+import net.sourceforge.schemaspy.util.HtmlEncoder;
+import net.sourceforge.schemaspy.util.JsonEncoder;
 import net.sourceforge.schemaspy.util.LineWriter;
 
 /**
@@ -46,6 +52,12 @@ import net.sourceforge.schemaspy.util.LineWriter;
 public class HtmlColumnsPage extends HtmlFormatter {
     private static HtmlColumnsPage instance = new HtmlColumnsPage();
 
+    /**
+     * Most characters of rendered rows that are kept to be shared by the
+     * orderings of the page (128MB)
+     */
+    private static final int MAX_BUFFERED_CHARS = 64 * 1024 * 1024;
+
     /**
      * Singleton: Don't allow instantiation
      */
@@ -130,32 +142,398 @@ public class HtmlColumnsPage extends HtmlFormatter {
         }
     }
 
+    /**
+     * The rows of every column of the schema, each rendered once so that
+     * all of the orderings of the page can be assembled from them.
+     * Schemas whose rows would take more than {@link #MAX_BUFFERED_CHARS}
+     * characters have each page render its rows as it's written instead.<p/>
+     *
+     * Immutable once it's been created, so the pages can share it.
+     */
+    public class ColumnRows {
+        private final TableColumn[] columns;
+        private final Set<TableColumn> primaryColumns = new HashSet<TableColumn>();
+        private final Set<TableColumn> indexedColumns = new HashSet<TableColumn>();
+        private final char[] html;      // null if the rows are rendered by each page
+        private final int[] offsets;
+
+        private ColumnRows(Collection<Table> tables) throws IOException {
+            List<TableColumn> all = new ArrayList<TableColumn>();
+            for (Table table : tables) {
+                all.addAll(table.getColumns());
+                primaryColumns.addAll(table.getPrimaryColumns());
+                for (TableIndex index : table.getIndexes()) {
+                    indexedColumns.addAll(index.getColumns());
+                }
+            }
+            columns = all.toArray(new TableColumn[all.size()]);
+
+            RowBuffer buffer = new RowBuffer((int)Math.min(columns.length * 512L, MAX_BUFFERED_CHARS));
+            LineWriter out = new LineWriter(buffer, 8 * 1024);
+            int[] rowOffsets = new int[columns.length + 1];
+            int row = 0;
+
+            while (row < columns.length && buffer.size() <= MAX_BUFFERED_CHARS) {
+                writeCells(row, out);
+                out.flush();
+                rowOffsets[++row] = buffer.size();
+            }
+
+            if (buffer.size() <= MAX_BUFFERED_CHARS) {
+                html = buffer.getChars();
+                offsets = rowOffsets;
+            } else {
+                html = null;
+                offsets = null;
+            }
+        }
+
+        private void writeCells(int row, LineWriter out) throws IOException {
+            TableColumn column = columns[row];
+            HtmlTablePage.getInstance().writeColumnCells(column, column.getTable().getName(), primaryColumns, indexedColumns, true, false, true, out);
+        }
+
+        /**
+         * Returns the rows in the order that <code>columnInfo</code> sorts them.
+         * As with a sorted set, any column that sorts the same as the one
+         * before it is left out.
+         *
+         * @param columnInfo
+         * @return
+         */
+        private int[] getOrder(ColumnInfo columnInfo) {
+            final Comparator<TableColumn> comparator = columnInfo.getComparator();
+            Integer[] sorted = new Integer[columns.length];
+            for (int i = 0; i < sorted.length; ++i)
+                sorted[i] = Integer.valueOf(i);
+
+            // stable, so the first of any duplicates stays first
+            Arrays.sort(sorted, new Comparator<Integer>() {
+                public int compare(Integer row1, Integer row2) {
+                    return comparator.compare(columns[row1.intValue()], columns[row2.intValue()]);
+                }
+            });
+
+            int[] order = new int[sorted.length];
+            int numRows = 0;
+            for (int i = 0; i < sorted.length; ++i) {
+                int row = sorted[i].intValue();
+                if (numRows == 0 || comparator.compare(columns[order[numRows - 1]], columns[row]) != 0)
+                    order[numRows++] = row;
+            }
+
+            int[] distinct = new int[numRows];
+            System.arraycopy(order, 0, distinct, 0, numRows);
+            return distinct;
+        }
+
+        /**
+         * Write the specified row (less its opening <code>&lt;tr&gt;</code>) to <code>out</code>
+         */
+        private void write(int row, LineWriter out) throws IOException {
+            if (html != null)
+                out.write(html, offsets[row], offsets[row + 1] - offsets[row]);
+            else
+                writeCells(row, out);
+        }
+    }
+
+    /**
+     * Gives up its characters without copying them
+     */
+    private static class RowBuffer extends CharArrayWriter {
+        RowBuffer(int initialSize) {
+            super(initialSize);
+        }
+
+        char[] getChars() {
+            return buf;
+        }
+    }
+
+    /**
+     * Render the rows of all of the columns of <code>tables</code>
+     * to be shared by the pages of each {@link ColumnInfo ordering}.
+     *
+     * @param tables
+     * @return
+     * @throws IOException
+     */
+    public ColumnRows getColumnRows(Collection<Table> tables) throws IOException {
+        return new ColumnRows(tables);
+    }
+
     public void write(Database database, Collection<Table> tables, ColumnInfo columnInfo, LineWriter html) throws IOException {
-        Set<TableColumn> columns = new TreeSet<TableColumn>(columnInfo.getComparator());
-        Set<TableColumn> primaryColumns = new HashSet<TableColumn>();
-        Set<TableColumn> indexedColumns = new HashSet<TableColumn>();
+        write(database, getColumnRows(tables), columnInfo, html);
+    }
+
+    /**
+     * Write the page of the specified ordering from the previously rendered rows.
+     *
+     * @param database
+     * @param rows
+     * @param columnInfo
+     * @param html
+     * @throws IOException
+     */
+    public void write(Database database, ColumnRows rows, ColumnInfo columnInfo, LineWriter html) throws IOException {
+        int[] order = rows.getOrder(columnInfo);
+
+        writeHeader(database, order.length, columnInfo, html);
+
+        boolean even = true;
+        for (int row : order) {
+            if (even)
+                html.writeln("<tr class='even'>");
+            else
+                html.writeln("<tr class='odd'>");
+            rows.write(row, html);
+            even = !even;
+        }
+
+        writeFooter(html);
+    }
 
-        for (Table table : tables) {
-            columns.addAll(table.getColumns());
+    /**
+     * Returns the location of the single page that's written when the columns
+     * are {@link Config#isDynamicColumnsEnabled() sorted by the browser},
+     * which is the same as the page that's sorted by column name otherwise.
+     *
+     * @return
+     */
+    public String getDynamicLocation() {
+        return getColumnInfos().get("column").getLocation();
+    }
+
+    /**
+     * Write the single columns page whose rows are rendered by <code>columns.js</code>
+     * in the browser from the data written by {@link #writeData(Collection, LineWriter)}.
+     * Clicking on a heading sorts the rows rather than going to the page of that ordering.
+     *
+     * @param database
+     * @param tables
+     * @param html
+     * @throws IOException
+     * @see Config#isDynamicColumnsEnabled()
+     */
+    public void writeDynamic(Database database, Collection<Table> tables, LineWriter html) throws IOException {
+        int numberOfColumns = 0;
+        for (Table table : tables)
+            numberOfColumns += table.getColumns().size();
+
+        writeHeader(database, numberOfColumns, getColumnInfos().get("column"), true, html);
+        html.writeln("</tbody>");
+        html.writeln("</table>");
+        html.writeln("<noscript>JavaScript must be enabled to display the columns.</noscript>");
+        html.writeln("</div>");
+        html.writeln("<SCRIPT LANGUAGE='JavaScript' TYPE='text/javascript' SRC='columns.data.js'></SCRIPT>");
+        html.writeln("<SCRIPT LANGUAGE='JavaScript' TYPE='text/javascript' SRC='columns.js'></SCRIPT>");
+        super.writeFooter(html);
+    }
 
+    /**
+     * Something about a column that's written to the data of the dynamic page
+     */
+    private abstract class Detail {
+        private final String name;
+
+        Detail(String name) {
+            this.name = name;
+        }
+
+        abstract String toJson(TableColumn column);
+    }
+
+    /**
+     * Write the details of the columns of <code>tables</code> that
+     * {@link #writeDynamic(Database, Collection, LineWriter) the dynamic page}
+     * is rendered from.<p/>
+     *
+     * It's a script that defines <code>columnData</code> rather than pure JSON
+     * because browsers won't load JSON from pages that are opened from disk.
+     * To keep it compact each detail is an array with an entry for every
+     * column (rather than each column being an object) and the columns refer
+     * to their tables by their index in <code>columnData.tables</code>.
+     *
+     * @param tables
+     * @param out
+     * @throws IOException
+     */
+    public void writeData(Collection<Table> tables, LineWriter out) throws IOException {
+        List<Table> sortedTables = new ArrayList<Table>(tables);
+        Collections.sort(sortedTables);
+
+        final Map<Table, Integer> tableIndexes = new HashMap<Table, Integer>();
+        final Set<TableColumn> primaryColumns = new HashSet<TableColumn>();
+        final Set<TableColumn> indexedColumns = new HashSet<TableColumn>();
+        List<TableColumn> columns = new ArrayList<TableColumn>();
+        boolean hasIds = false;
+
+        for (Table table : sortedTables) {
+            tableIndexes.put(table, tableIndexes.size());
             primaryColumns.addAll(table.getPrimaryColumns());
             for (TableIndex index : table.getIndexes()) {
                 indexedColumns.addAll(index.getColumns());
             }
+            for (TableColumn column : table.getColumns()) {
+                columns.add(column);
+                hasIds |= column.getId() != null;
+            }
         }
 
-        writeHeader(database, columns.size(), columnInfo, html);
+        out.writeln("var columnData = {");
 
-        HtmlTablePage formatter = HtmlTablePage.getInstance();
+        out.write(" \"tables\":[");
+        for (int i = 0; i < sortedTables.size(); ++i) {
+            if (i > 0)
+                out.write(',');
+            out.write(JsonEncoder.encodeString(sortedTables.get(i).getName()));
+        }
+        out.writeln("],");
 
-        for (TableColumn column : columns) {
-            formatter.writeColumn(column, column.getTable().getName(), primaryColumns, indexedColumns, true, false, html);
+        out.write(" \"urls\":[");
+        for (int i = 0; i < sortedTables.size(); ++i) {
+            if (i > 0)
+                out.write(',');
+            out.write(JsonEncoder.encodeString(urlEncode(sortedTables.get(i).getName())));
+        }
+        out.writeln("],");
+
+        out.write(" \"aliases\":{");
+        boolean first = true;
+        for (Map.Entry<String, String> alias : HtmlTablePage.getInstance().getDefaultValueAliases().entrySet()) {
+            if (!first)
+                out.write(',');
+            first = false;
+            out.write(JsonEncoder.encodeString(alias.getKey()));
+            out.write(':');
+            out.write(JsonEncoder.encodeString(alias.getValue()));
         }
+        out.writeln("},");
 
-        writeFooter(html);
+        List<Detail> details = new ArrayList<Detail>();
+        details.add(new Detail("table") {
+            @Override
+            String toJson(TableColumn column) {
+                return String.valueOf(tableIndexes.get(column.getTable()));
+            }
+        });
+        details.add(new Detail("name") {
+            @Override
+            String toJson(TableColumn column) {
+                return JsonEncoder.encodeString(column.getName());
+            }
+        });
+        details.add(new Detail("type") {
+            @Override
+            String toJson(TableColumn column) {
+                return JsonEncoder.encodeString(column.getType().toLowerCase());
+            }
+        });
+        details.add(new Detail("size") {
+            @Override
+            String toJson(TableColumn column) {
+                return JsonEncoder.encodeString(column.getDetailedSize());
+            }
+        });
+        details.add(new Detail("length") {
+            @Override
+            String toJson(TableColumn column) {
+                return String.valueOf(column.getLength());
+            }
+        });
+        details.add(new Detail("digits") {
+            @Override
+            String toJson(TableColumn column) {
+                return String.valueOf(column.getDecimalDigits());
+            }
+        });
+        details.add(new Detail("nullable") {
+            @Override
+            String toJson(TableColumn column) {
+                return column.isNullable() ? "1" : "0";
+            }
+        });
+        details.add(new Detail("auto") {
+            @Override
+            String toJson(TableColumn column) {
+                return column.isAutoUpdated() ? "1" : "0";
+            }
+        });
+        details.add(new Detail("defaults") {
+            @Override
+            String toJson(TableColumn column) {
+                Object defaultValue = column.getDefaultValue();
+                return defaultValue == null ? "null" : JsonEncoder.encodeString(String.valueOf(defaultValue));
+            }
+        });
+        details.add(new Detail("key") {
+            @Override
+            String toJson(TableColumn column) {
+                if (primaryColumns.contains(column))
+                    return "1";
+                return indexedColumns.contains(column) ? "2" : "0";
+            }
+        });
+        details.add(new Detail("comments") {
+            @Override
+            String toJson(TableColumn column) {
+                String comments = column.getComments();
+                if (comments != null && encodeComments())
+                    comments = HtmlEncoder.encodeString(comments);
+                return JsonEncoder.encodeString(comments);
+            }
+        });
+        if (hasIds) {
+            details.add(new Detail("ids") {
+                @Override
+                String toJson(TableColumn column) {
+                    Object id = column.getId();
+                    if (id instanceof Number)
+                        return String.valueOf(((Number)id).intValue());
+                    return id == null ? "null" : JsonEncoder.encodeString(id.toString());
+                }
+            });
+        }
+        List<String> columnDetails = Config.getInstance().getColumnDetails();
+        if (columnDetails.contains("children")) {
+            details.add(new Detail("children") {
+                @Override
+                String toJson(TableColumn column) {
+                    return JsonEncoder.encodeString(getChildTables(column));
+                }
+            });
+        }
+        if (columnDetails.contains("parents")) {
+            details.add(new Detail("parents") {
+                @Override
+                String toJson(TableColumn column) {
+                    return JsonEncoder.encodeString(getParentTables(column));
+                }
+            });
+        }
+
+        for (Iterator<Detail> iter = details.iterator(); iter.hasNext(); ) {
+            Detail detail = iter.next();
+            out.write(" ");
+            out.write(JsonEncoder.encodeString(detail.name));
+            out.write(":[");
+            for (int i = 0; i < columns.size(); ++i) {
+                if (i > 0)
+                    out.write(',');
+                out.write(detail.toJson(columns.get(i)));
+            }
+            out.writeln(iter.hasNext() ? "]," : "]");
+        }
+
+        out.writeln("};");
     }
 
     private void writeHeader(Database db, int numberOfColumns, ColumnInfo selectedColumn, LineWriter html) throws IOException {
+        writeHeader(db, numberOfColumns, selectedColumn, false, html);
+    }
+
+    private void writeHeader(Database db, int numberOfColumns, ColumnInfo selectedColumn, boolean dynamic, LineWriter html) throws IOException {
         writeHeader(db, null, "Columns", html);
 
         html.writeln("<table width='100%' border='0'>");
@@ -170,6 +548,8 @@ public class HtmlColumnsPage extends HtmlFormatter {
         if (Config.getInstance().getColumnDetails().contains("comments"))
             html.writeln(" <label for='showComments'><input type=checkbox id='showComments'>Comments</label>");
         html.writeln(" <label for='showLegend'><input type=checkbox checked id='showLegend'>Legend</label>");
+        if (dynamic)
+            html.writeln(" <label for='columnFilter'>Filter <input type=text id='columnFilter' size='20' title='Only show the columns whose table or column name contains this'></label>");
         html.writeln("</form>");
         html.writeln("</table>");
 
@@ -409,44 +789,48 @@ public class HtmlColumnsPage extends HtmlFormatter {
         private final Comparator<TableColumn> byColumn = new ByColumnComparator();
 
         public int compare(TableColumn column1, TableColumn column2) {
-            Set<String> childTables1 = new TreeSet<String>();
-            Set<String> childTables2 = new TreeSet<String>();
-
-            for (TableColumn column : column1.getChildren()) {
-                if (!column.getParentConstraint(column1).isImplied())
-                    childTables1.add(column.getTable().getName());
-            }
-
-            for (TableColumn column : column2.getChildren()) {
-                if (!column.getParentConstraint(column2).isImplied())
-                    childTables2.add(column.getTable().getName());
-            }
-
-            int rc = childTables1.toString().compareToIgnoreCase(childTables2.toString());
+            int rc = getChildTables(column1).compareToIgnoreCase(getChildTables(column2));
             if (rc == 0)
                 rc = byColumn.compare(column1, column2);
             return rc;
         }
     }
 
-    private class ByParentsComparator implements Comparator<TableColumn> {
-        private final Comparator<TableColumn> byColumn = new ByColumnComparator();
+    /**
+     * Returns the sorted names of the tables that really (not implicitly) reference
+     * the specified column, as they're compared when sorting by children
+     */
+    private static String getChildTables(TableColumn parent) {
+        Set<String> childTables = new TreeSet<String>();
 
-        public int compare(TableColumn column1, TableColumn column2) {
-            Set<String> parentTables1 = new TreeSet<String>();
-            Set<String> parentTables2 = new TreeSet<String>();
+        for (TableColumn column : parent.getChildren()) {
+            if (!column.getParentConstraint(parent).isImplied())
+                childTables.add(column.getTable().getName());
+        }
 
-            for (TableColumn column : column1.getParents()) {
-                if (!column.getChildConstraint(column1).isImplied())
-                    parentTables1.add(column.getTable().getName() + '.' + column.getTable().getSchema());
-            }
+        return childTables.toString();
+    }
 
-            for (TableColumn column : column2.getParents()) {
-                if (!column.getChildConstraint(column2).isImplied())
-                    parentTables2.add(column.getTable().getName() + '.' + column.getTable().getSchema());
-            }
+    /**
+     * Returns the sorted names of the tables that are really (not implicitly) referenced
+     * by the specified column, as they're compared when sorting by parents
+     */
+    private static String getParentTables(TableColumn child) {
+        Set<String> parentTables = new TreeSet<String>();
 
-            int rc = parentTables1.toString().compareToIgnoreCase(parentTables2.toString());
+        for (TableColumn column : child.getParents()) {
+            if (!column.getChildConstraint(child).isImplied())
+                parentTables.add(column.getTable().getName() + '.' + column.getTable().getSchema());
+        }
+
+        return parentTables.toString();
+    }
+
+    private class ByParentsComparator implements Comparator<TableColumn> {
+        private final Comparator<TableColumn> byColumn = new ByColumnComparator();
+
+        public int compare(TableColumn column1, TableColumn column2) {
+            int rc = getParentTables(column1).compareToIgnoreCase(getParentTables(column2));
             if (rc == 0)
                 rc = byColumn.compare(column1, column2);
             return rc;
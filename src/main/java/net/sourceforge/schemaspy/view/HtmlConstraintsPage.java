@@ -41,7 +41,6 @@ import net.sourceforge.schemaspy.util.LineWriter;
  */
 public class HtmlConstraintsPage extends HtmlFormatter {
     private static HtmlConstraintsPage instance = new HtmlConstraintsPage();
-    private int columnCounter;
 
     /**
      * Singleton: Don't allow instantiation
@@ -110,8 +109,10 @@ public class HtmlConstraintsPage extends HtmlFormatter {
         html.writeln("</tr>");
         html.writeln("</thead>");
         html.writeln("<tbody>");
+        boolean even = true;
         for (ForeignKeyConstraint constraint : constraintsByName) {
-            writeForeignKeyConstraint(constraint, html);
+            writeForeignKeyConstraint(constraint, even, html);
+            even = !even;
         }
         if (constraints.size() == 0) {
             html.writeln(" <tr>");
@@ -126,11 +127,11 @@ public class HtmlConstraintsPage extends HtmlFormatter {
      * Write specified foreign key constraint
      *
      * @param constraint ForeignKeyConstraint
+     * @param even boolean
      * @param html LineWriter
      * @throws IOException
      */
-    private void writeForeignKeyConstraint(ForeignKeyConstraint constraint, LineWriter html) throws IOException {
-        boolean even = columnCounter++ % 2 == 0;
+    private void writeForeignKeyConstraint(ForeignKeyConstraint constraint, boolean even, LineWriter html) throws IOException {
         if (even)
             html.writeln("  <tr class='even'>");
         else
@@ -35,13 +35,24 @@ import net.sourceforge.schemaspy.util.HtmlEncoder;
 import net.sourceforge.schemaspy.util.LineWriter;
 
 public class HtmlFormatter {
-    protected final boolean encodeComments = Config.getInstance().isEncodeCommentsEnabled();
-    private   final boolean isMetered = Config.getInstance().isMeterEnabled();
-    protected final boolean displayNumRows = Config.getInstance().isNumRowsEnabled();
-
     protected HtmlFormatter() {
     }
 
+    // the formatters are shared by the schemas that are analyzed concurrently,
+    // so these come from the current schema's config rather than being kept
+
+    protected boolean encodeComments() {
+        return Config.getInstance().isEncodeCommentsEnabled();
+    }
+
+    protected boolean displayNumRows() {
+        return Config.getInstance().isNumRowsEnabled();
+    }
+
+    private boolean isMetered() {
+        return Config.getInstance().isMeterEnabled();
+    }
+
     protected void writeHeader(Database db, Table table, String text, List<String> javascript, LineWriter out) throws IOException {
         out.writeln("<!DOCTYPE HTML PUBLIC '-//W3C//DTD HTML 4.01 Transitional//EN' 'http://www.w3.org/TR/html4/loose.dtd'>");
         out.writeln("<html>");
@@ -86,7 +97,7 @@ public class HtmlFormatter {
         String comments = table == null ? null : table.getComments();
         if (comments != null) {
             out.write("<div style='padding: 0px 4px;'>");
-            if (encodeComments)
+            if (encodeComments())
                 for (int i = 0; i < comments.length(); ++i)
                     out.write(HtmlEncoder.encodeToken(comments.charAt(i)));
             else
@@ -259,7 +270,7 @@ public class HtmlFormatter {
 
     protected void writeFooter(LineWriter html) throws IOException {
         html.writeln("</div>");
-        if (isMetered) {
+        if (isMetered()) {
             html.writeln("<span style='float: right;' title='This link is only on the SchemaSpy sample pages'>");
             html.writeln("<!-- Site Meter -->");
             html.writeln("<script type='text/javascript' src='http://s28.sitemeter.com/js/counter.js?site=s28schemaspy'>");
@@ -19,16 +19,19 @@
 package net.sourceforge.schemaspy.view;
 
 import java.io.IOException;
+import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.TreeSet;
 import net.sourceforge.schemaspy.Config;
 import net.sourceforge.schemaspy.model.Database;
 import net.sourceforge.schemaspy.model.Table;
 import net.sourceforge.schemaspy.util.HtmlEncoder;
+import net.sourceforge.schemaspy.util.JsonEncoder;
 import net.sourceforge.schemaspy.util.LineWriter;
 
 /**
@@ -56,39 +59,50 @@ public class HtmlMainIndexPage extends HtmlFormatter {
     }
 
     public void write(Database database, Collection<Table> tables, Collection<Table> remotes, LineWriter html) throws IOException {
-        Comparator<Table> sorter = new Comparator<Table>() {
-            public int compare(Table table1, Table table2) {
-                return table1.compareTo(table2);
-            }
-        };
+        write(database, tables, remotes, false, html);
+    }
+
+    /**
+     * Write the main index without the rows of the tables, which are rendered
+     * by <code>index.js</code> in the browser from the data written by
+     * {@link #writeData(Collection, Collection, LineWriter)}.
+     * The checkboxes and a filter control which of the tables are listed.
+     *
+     * @param database
+     * @param tables
+     * @param remotes
+     * @param html
+     * @throws IOException
+     * @see Config#isDynamicIndexEnabled()
+     */
+    public void writeDynamic(Database database, Collection<Table> tables, Collection<Table> remotes, LineWriter html) throws IOException {
+        write(database, tables, remotes, true, html);
+    }
+
+    private void write(Database database, Collection<Table> tables, Collection<Table> remotes, boolean dynamic, LineWriter html) throws IOException {
         // sort tables and remotes by name
-        Collection<Table> tmp = new TreeSet<Table>(sorter);
-        tmp.addAll(tables);
-        tables = tmp;
-        tmp = new TreeSet<Table>(sorter);
-        tmp.addAll(remotes);
-        remotes = tmp;
-        tmp = null;
-
-        boolean showIds = false;
+        tables = sort(tables);
+        remotes = sort(remotes);
+
+        boolean showIds = hasIds(tables);
         int numViews = 0;
         boolean hasComments = false;
 
         for (Table table : tables) {
             if (table.isView())
                 ++numViews;
-            showIds |= table.getId() != null;
             if (table.getComments() != null)
                 hasComments = true;
         }
 
-        writeLocalsHeader(database, tables.size() - numViews, numViews, showIds, hasComments, html);
+        writeLocalsHeader(database, tables.size() - numViews, numViews, showIds, hasComments, dynamic, html);
 
         int numTableCols = 0;
         int numViewCols = 0;
         long numRows = 0;
         for (Table table : tables) {
-            writeLineItem(table, showIds, html);
+            if (!dynamic)
+                writeLineItem(table, showIds, html);
 
             if (!table.isView())
                 numTableCols += table.getColumns().size();
@@ -100,19 +114,193 @@ public class HtmlMainIndexPage extends HtmlFormatter {
         writeLocalsFooter(tables.size() - numViews, numTableCols, numViews, numViewCols, numRows, html);
 
         if (!remotes.isEmpty()) {
-            writeRemotesHeader(database, showIds, hasComments, html);
+            writeRemotesHeader(database, showIds, hasComments, dynamic, html);
 
-            for (Table table : remotes) {
-                writeLineItem(table, showIds, html);
+            if (!dynamic) {
+                for (Table table : remotes) {
+                    writeLineItem(table, showIds, html);
+                }
             }
 
             writeRemotesFooter(html);
         }
 
+        if (dynamic) {
+            html.writeln("<noscript>JavaScript must be enabled to display the tables.</noscript>");
+            html.writeln("<SCRIPT LANGUAGE='JavaScript' TYPE='text/javascript' SRC='index.data.js'></SCRIPT>");
+            html.writeln("<SCRIPT LANGUAGE='JavaScript' TYPE='text/javascript' SRC='index.js'></SCRIPT>");
+        }
+
         writeFooter(html);
     }
 
-    private void writeLocalsHeader(Database db, int numberOfTables, int numberOfViews, boolean showIds, boolean hasComments, LineWriter html) throws IOException {
+    private static Collection<Table> sort(Collection<Table> tables) {
+        Comparator<Table> sorter = new Comparator<Table>() {
+            public int compare(Table table1, Table table2) {
+                return table1.compareTo(table2);
+            }
+        };
+        Collection<Table> sorted = new TreeSet<Table>(sorter);
+        sorted.addAll(tables);
+        return sorted;
+    }
+
+    private static boolean hasIds(Collection<Table> tables) {
+        for (Table table : tables) {
+            if (table.getId() != null)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Something about a table that's written to the data of the dynamic index
+     */
+    private abstract class Detail {
+        private final String name;
+
+        Detail(String name) {
+            this.name = name;
+        }
+
+        abstract String toJson(Table table);
+    }
+
+    /**
+     * Write the details of the tables and remote tables that
+     * {@link #writeDynamic(Database, Collection, Collection, LineWriter) the dynamic index}
+     * is rendered from.<p/>
+     *
+     * Like the data of the dynamic columns page it's a script that defines
+     * <code>indexData</code>, with an array for each detail that has an entry
+     * for every table.  Counts are written as plain numbers along with the
+     * grouping separator that they're formatted with.
+     *
+     * @param tables
+     * @param remotes
+     * @param out
+     * @throws IOException
+     */
+    public void writeData(Collection<Table> tables, Collection<Table> remotes, LineWriter out) throws IOException {
+        tables = sort(tables);
+        remotes = sort(remotes);
+        boolean showIds = hasIds(tables);
+
+        String grouping = "";
+        if (integerFormatter.isGroupingUsed() && integerFormatter instanceof DecimalFormat)
+            grouping = String.valueOf(((DecimalFormat)integerFormatter).getDecimalFormatSymbols().getGroupingSeparator());
+
+        out.writeln("var indexData = {");
+        out.writeln(" \"grouping\":" + JsonEncoder.encodeString(grouping) + ",");
+        out.writeln(" \"linkRemotes\":" + Config.getInstance().isOneOfMultipleSchemas() + ",");
+
+        List<Detail> details = new ArrayList<Detail>();
+        details.add(new Detail("names") {
+            @Override
+            String toJson(Table table) {
+                return JsonEncoder.encodeString(table.getName());
+            }
+        });
+        details.add(new Detail("urls") {
+            @Override
+            String toJson(Table table) {
+                return JsonEncoder.encodeString(urlEncode(table.getName()));
+            }
+        });
+        if (showIds) {
+            details.add(new Detail("ids") {
+                @Override
+                String toJson(Table table) {
+                    Object id = table.getId();
+                    return id == null ? "null" : JsonEncoder.encodeString(String.valueOf(id));
+                }
+            });
+        }
+        details.add(new Detail("children") {
+            @Override
+            String toJson(Table table) {
+                return String.valueOf(table.getNumNonImpliedChildren());
+            }
+        });
+        details.add(new Detail("parents") {
+            @Override
+            String toJson(Table table) {
+                return String.valueOf(table.getNumNonImpliedParents());
+            }
+        });
+        details.add(new Detail("comments") {
+            @Override
+            String toJson(Table table) {
+                String comments = table.getComments();
+                if (comments != null && encodeComments())
+                    comments = HtmlEncoder.encodeString(comments);
+                return JsonEncoder.encodeString(comments);
+            }
+        });
+
+        List<Detail> localDetails = new ArrayList<Detail>(details);
+        localDetails.add(new Detail("views") {
+            @Override
+            String toJson(Table table) {
+                return table.isView() ? "1" : "0";
+            }
+        });
+        localDetails.add(new Detail("columns") {
+            @Override
+            String toJson(Table table) {
+                return String.valueOf(table.getColumns().size());
+            }
+        });
+        if (displayNumRows()) {
+            localDetails.add(new Detail("rows") {
+                @Override
+                String toJson(Table table) {
+                    return String.valueOf(table.getNumRows());
+                }
+            });
+        }
+
+        List<Detail> remoteDetails = new ArrayList<Detail>(details);
+        remoteDetails.add(new Detail("containers") {
+            @Override
+            String toJson(Table table) {
+                return JsonEncoder.encodeString(table.getContainer());
+            }
+        });
+        remoteDetails.add(new Detail("containerUrls") {
+            @Override
+            String toJson(Table table) {
+                return JsonEncoder.encodeString(urlEncode(table.getContainer()));
+            }
+        });
+
+        writeData("locals", localDetails, tables, false, out);
+        writeData("remotes", remoteDetails, remotes, true, out);
+        out.writeln("};");
+    }
+
+    private void writeData(String name, List<Detail> details, Collection<Table> tables, boolean last, LineWriter out) throws IOException {
+        out.write(" ");
+        out.write(JsonEncoder.encodeString(name));
+        out.writeln(":{");
+        for (Iterator<Detail> iter = details.iterator(); iter.hasNext(); ) {
+            Detail detail = iter.next();
+            out.write("  ");
+            out.write(JsonEncoder.encodeString(detail.name));
+            out.write(":[");
+            boolean first = true;
+            for (Table table : tables) {
+                if (!first)
+                    out.write(',');
+                first = false;
+                out.write(detail.toJson(table));
+            }
+            out.writeln(iter.hasNext() ? "]," : "]");
+        }
+        out.writeln(last ? " }" : " },");
+    }
+
+    private void writeLocalsHeader(Database db, int numberOfTables, int numberOfViews, boolean showIds, boolean hasComments, boolean dynamic, LineWriter html) throws IOException {
         List<String> javascript = new ArrayList<String>();
 
         // we can't use the hard-coded even odd technique that we use
@@ -137,7 +325,8 @@ public class HtmlMainIndexPage extends HtmlFormatter {
         javascript.add("  $('table.dataTable').alternateRowColors();");
         javascript.add("})");
 
-        writeHeader(db, null, null, javascript, html);
+        // index.js takes care of all of that for the dynamic index
+        writeHeader(db, null, null, dynamic ? null : javascript, html);
         html.writeln("<table width='100%'>");
         html.writeln(" <tr><td class='container'>");
         writeGeneratedOn(db.getConnectTime(), html);
@@ -179,10 +368,12 @@ public class HtmlMainIndexPage extends HtmlFormatter {
         }
 
         html.writeln(" <label for='showComments'><input type=checkbox " + (hasComments  ? "checked " : "") + "id='showComments'>Comments</label>");
+        if (dynamic)
+            html.writeln(" <label for='tableFilter'>Filter <input type=text id='tableFilter' size='20' title='Only show the tables whose name contains this'></label>");
         html.writeln("</b>");
 
         html.writeln("<table class='dataTable' border='1' rules='groups'>");
-        int numGroups = 4 + (showIds ? 1 : 0) + (displayNumRows ? 1 : 0);
+        int numGroups = 4 + (showIds ? 1 : 0) + (displayNumRows() ? 1 : 0);
         for (int i = 0; i < numGroups; ++i)
             html.writeln("<colgroup>");
         html.writeln("<colgroup class='comment'>");
@@ -201,15 +392,15 @@ public class HtmlMainIndexPage extends HtmlFormatter {
         html.writeln("  <th align='right' valign='bottom'>Children</th>");
         html.writeln("  <th align='right' valign='bottom'>Parents</th>");
         html.writeln("  <th align='right' valign='bottom'>Columns</th>");
-        if (displayNumRows)
+        if (displayNumRows())
             html.writeln("  <th align='right' valign='bottom'>Rows</th>");
         html.writeln("  <th class='comment' align='left' valign='bottom'>Comments</th>");
         html.writeln("</tr>");
         html.writeln("</thead>");
-        html.writeln("<tbody>");
+        html.writeln(dynamic ? "<tbody id='locals'>" : "<tbody>");
     }
 
-    private void writeRemotesHeader(Database db, boolean showIds, boolean hasComments, LineWriter html) throws IOException {
+    private void writeRemotesHeader(Database db, boolean showIds, boolean hasComments, boolean dynamic, LineWriter html) throws IOException {
         html.writeln("<p><br><b>Related tables in other schemas</b>");
         html.writeln("<table class='dataTable' border='1' rules='groups'>");
         int numGroups = 3 + (showIds ? 1 : 0);
@@ -229,7 +420,7 @@ public class HtmlMainIndexPage extends HtmlFormatter {
         html.writeln("  <th align='right' valign='bottom'>Parents</th>");
         html.writeln("</tr>");
         html.writeln("</thead>");
-        html.writeln("<tbody>");
+        html.writeln(dynamic ? "<tbody id='remotes'>" : "<tbody>");
     }
 
     private void writeLineItem(Table table, boolean showIds, LineWriter html) throws IOException {
@@ -286,7 +477,7 @@ public class HtmlMainIndexPage extends HtmlFormatter {
             html.write(String.valueOf(integerFormatter.format(table.getColumns().size())));
             html.writeln("</td>");
 
-            if (displayNumRows) {
+            if (displayNumRows()) {
                 html.write("  <td class='detail' align='right'>");
                 if (!table.isView()) {
                     if (table.getNumRows() >= 0)
@@ -302,7 +493,7 @@ public class HtmlMainIndexPage extends HtmlFormatter {
         html.write("  <td class='comment detail'>");
         String comments = table.getComments();
         if (comments != null) {
-            if (encodeComments)
+            if (encodeComments())
                 for (int i = 0; i < comments.length(); ++i)
                     html.write(HtmlEncoder.encodeToken(comments.charAt(i)));
             else
@@ -318,7 +509,7 @@ public class HtmlMainIndexPage extends HtmlFormatter {
         html.writeln("    <td class='detail'>&nbsp;</td>");
         html.writeln("    <td class='detail'>&nbsp;</td>");
         html.writeln("    <td class='detail'>&nbsp;</td>");
-        if (displayNumRows)
+        if (displayNumRows())
             html.writeln("    <td class='detail'>&nbsp;</td>");
         html.writeln("    <td class='comment detail'>&nbsp;</td>");
         html.writeln("  </tr>");
@@ -328,7 +519,7 @@ public class HtmlMainIndexPage extends HtmlFormatter {
         html.writeln("    <td class='detail'>&nbsp;</td>");
         html.writeln("    <td class='detail'>&nbsp;</td>");
         html.writeln("    <td class='detail' align='right'><b>" + integerFormatter.format(numTableCols) + "</b></td>");
-        if (displayNumRows)
+        if (displayNumRows())
             html.writeln("    <td class='detail' align='right'><b>" + integerFormatter.format(numRows) + "</b></td>");
         html.writeln("    <td class='comment detail'>&nbsp;</td>");
         html.writeln("  </tr>");
@@ -338,7 +529,7 @@ public class HtmlMainIndexPage extends HtmlFormatter {
         html.writeln("    <td class='detail'>&nbsp;</td>");
         html.writeln("    <td class='detail'>&nbsp;</td>");
         html.writeln("    <td class='detail' align='right'><b>" + integerFormatter.format(numViewCols) + "</b></td>");
-        if (displayNumRows)
+        if (displayNumRows())
             html.writeln("    <td class='detail'>&nbsp;</td>");
         html.writeln("    <td class='comment detail'>&nbsp;</td>");
         html.writeln("  </tr>");
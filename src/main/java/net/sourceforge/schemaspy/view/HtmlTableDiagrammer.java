@@ -20,8 +20,11 @@ package net.sourceforge.schemaspy.view;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import net.sourceforge.schemaspy.model.Table;
 import net.sourceforge.schemaspy.util.Dot;
+import net.sourceforge.schemaspy.util.DotRenderQueue;
 import net.sourceforge.schemaspy.util.LineWriter;
 
 public class HtmlTableDiagrammer extends HtmlDiagramFormatter {
@@ -34,23 +37,69 @@ public class HtmlTableDiagrammer extends HtmlDiagramFormatter {
         return instance;
     }
 
+    /**
+     * Render the table's diagrams and write them (and their image maps) to <code>html</code>.
+     *
+     * @param table
+     * @param diagramDir
+     * @param html
+     * @return <code>false</code> if the diagrams couldn't be rendered
+     */
     public boolean write(Table table, File diagramDir, LineWriter html) {
-        try {
-            Dot dot = getDot();
-            if (dot == null)
-                return false;
+        return write(table, submit(table, diagramDir, new DotRenderQueue(0)), html);
+    }
+
+    /**
+     * Queue the table's previously generated .dot files to be rendered.
+     *
+     * @param table
+     * @param diagramDir
+     * @param renderQueue
+     * @return the diagrams that will be rendered or <code>null</code> if Graphviz isn't usable
+     */
+    public Diagrams submit(Table table, File diagramDir, DotRenderQueue renderQueue) {
+        Dot dot = getDot();
+        if (dot == null)
+            return null;
 
-            File oneDegreeDotFile = new File(diagramDir, table.getName() + ".1degree.dot");
-            File oneDegreeDiagramFile = new File(diagramDir, table.getName() + ".1degree." + dot.getFormat());
-            File twoDegreesDotFile = new File(diagramDir, table.getName() + ".2degrees.dot");
-            File twoDegreesDiagramFile = new File(diagramDir, table.getName() + ".2degrees." + dot.getFormat());
-            File impliedDotFile = new File(diagramDir, table.getName() + ".implied2degrees.dot");
-            File impliedDiagramFile = new File(diagramDir, table.getName() + ".implied2degrees." + dot.getFormat());
+        Diagrams diagrams = new Diagrams(table, diagramDir, dot.getFormat());
+
+        diagrams.oneDegreeMap = renderQueue.submit(diagrams.oneDegreeDotFile, diagrams.oneDegreeDiagramFile);
+
+        if (diagrams.impliedDotFile.exists()) {
+            diagrams.impliedMap = renderQueue.submit(diagrams.impliedDotFile, diagrams.impliedDiagramFile);
+        } else {
+            diagrams.impliedDotFile.delete();
+            diagrams.impliedDiagramFile.delete();
+        }
+        if (diagrams.twoDegreesDotFile.exists()) {
+            diagrams.twoDegreesMap = renderQueue.submit(diagrams.twoDegreesDotFile, diagrams.twoDegreesDiagramFile);
+        } else {
+            diagrams.twoDegreesDotFile.delete();
+            diagrams.twoDegreesDiagramFile.delete();
+        }
+
+        return diagrams;
+    }
+
+    /**
+     * Write the previously {@link #submit(Table, File, DotRenderQueue) submitted} diagrams
+     * (and their image maps) to <code>html</code>, waiting for them to be rendered if necessary.
+     *
+     * @param table
+     * @param diagrams
+     * @param html
+     * @return <code>false</code> if the diagrams couldn't be rendered
+     */
+    public boolean write(Table table, Diagrams diagrams, LineWriter html) {
+        if (diagrams == null)
+            return false;
 
-            String map = dot.generateDiagram(oneDegreeDotFile, oneDegreeDiagramFile);
+        try {
+            String map = getMap(diagrams.oneDegreeMap);
 
             html.write("<br><form action='get'><b>Close relationships");
-            if (twoDegreesDotFile.exists()) {
+            if (diagrams.twoDegreesMap != null) {
                 html.writeln("</b><span class='degrees' id='degrees' title='Detail diminishes with increased separation from " + table.getName() + "'>");
                 html.write("&nbsp;within <label for='oneDegree'><input type='radio' name='degrees' id='oneDegree' checked>one</label>");
                 html.write("  <label for='twoDegrees'><input type='radio' name='degrees' id='twoDegrees'>two degrees</label> of separation");
@@ -61,21 +110,15 @@ public class HtmlTableDiagrammer extends HtmlDiagramFormatter {
             }
             html.write(map);
             map = null;
-            html.writeln("  <a name='diagram'><img id='oneDegreeImg' src='../diagrams/" + urlEncode(oneDegreeDiagramFile.getName()) + "' usemap='#oneDegreeRelationshipsDiagram' class='diagram' border='0' alt='' align='left'></a>");
+            html.writeln("  <a name='diagram'><img id='oneDegreeImg' src='../diagrams/" + urlEncode(diagrams.oneDegreeDiagramFile.getName()) + "' usemap='#oneDegreeRelationshipsDiagram' class='diagram' border='0' alt='' align='left'></a>");
 
-            if (impliedDotFile.exists()) {
-                html.writeln(dot.generateDiagram(impliedDotFile, impliedDiagramFile));
-                html.writeln("  <a name='diagram'><img id='impliedTwoDegreesImg' src='../diagrams/" + urlEncode(impliedDiagramFile.getName()) + "' usemap='#impliedTwoDegreesRelationshipsDiagram' class='diagram' border='0' alt='' align='left'></a>");
-            } else {
-                impliedDotFile.delete();
-                impliedDiagramFile.delete();
+            if (diagrams.impliedMap != null) {
+                html.writeln(getMap(diagrams.impliedMap));
+                html.writeln("  <a name='diagram'><img id='impliedTwoDegreesImg' src='../diagrams/" + urlEncode(diagrams.impliedDiagramFile.getName()) + "' usemap='#impliedTwoDegreesRelationshipsDiagram' class='diagram' border='0' alt='' align='left'></a>");
             }
-            if (twoDegreesDotFile.exists()) {
-                html.writeln(dot.generateDiagram(twoDegreesDotFile, twoDegreesDiagramFile));
-                html.writeln("  <a name='diagram'><img id='twoDegreesImg' src='../diagrams/" + urlEncode(twoDegreesDiagramFile.getName()) + "' usemap='#twoDegreesRelationshipsDiagram' class='diagram' border='0' alt='' align='left'></a>");
-            } else {
-                twoDegreesDotFile.delete();
-                twoDegreesDiagramFile.delete();
+            if (diagrams.twoDegreesMap != null) {
+                html.writeln(getMap(diagrams.twoDegreesMap));
+                html.writeln("  <a name='diagram'><img id='twoDegreesImg' src='../diagrams/" + urlEncode(diagrams.twoDegreesDiagramFile.getName()) + "' usemap='#twoDegreesRelationshipsDiagram' class='diagram' border='0' alt='' align='left'></a>");
             }
         } catch (Dot.DotFailure dotFailure) {
             System.err.println(dotFailure);
@@ -87,4 +130,46 @@ public class HtmlTableDiagrammer extends HtmlDiagramFormatter {
 
         return true;
     }
+
+    /**
+     * Wait for the image map of a diagram to be rendered
+     */
+    private String getMap(Future<String> map) throws IOException {
+        try {
+            return map.get();
+        } catch (InterruptedException interrupted) {
+            throw new RuntimeException(interrupted);
+        } catch (ExecutionException exc) {
+            Throwable failure = exc.getCause();
+            if (failure instanceof IOException)
+                throw (IOException)failure;
+            if (failure instanceof RuntimeException)
+                throw (RuntimeException)failure;
+            throw new RuntimeException(failure);
+        }
+    }
+
+    /**
+     * The diagrams of a table that have been queued for rendering
+     */
+    public static class Diagrams {
+        private final File oneDegreeDotFile;
+        private final File oneDegreeDiagramFile;
+        private final File twoDegreesDotFile;
+        private final File twoDegreesDiagramFile;
+        private final File impliedDotFile;
+        private final File impliedDiagramFile;
+        private Future<String> oneDegreeMap;
+        private Future<String> twoDegreesMap;
+        private Future<String> impliedMap;
+
+        private Diagrams(Table table, File diagramDir, String format) {
+            oneDegreeDotFile = new File(diagramDir, table.getName() + ".1degree.dot");
+            oneDegreeDiagramFile = new File(diagramDir, table.getName() + ".1degree." + format);
+            twoDegreesDotFile = new File(diagramDir, table.getName() + ".2degrees.dot");
+            twoDegreesDiagramFile = new File(diagramDir, table.getName() + ".2degrees." + format);
+            impliedDotFile = new File(diagramDir, table.getName() + ".implied2degrees.dot");
+            impliedDiagramFile = new File(diagramDir, table.getName() + ".implied2degrees." + format);
+        }
+    }
 }
@@ -36,6 +36,7 @@ import net.sourceforge.schemaspy.model.TableIndex;
 import net.sourceforge.schemaspy.model.View;
 import net.sourceforge.schemaspy.util.CaseInsensitiveMap;
 import net.sourceforge.schemaspy.util.Dot;
+import net.sourceforge.schemaspy.util.DotRenderQueue;
 import net.sourceforge.schemaspy.util.HtmlEncoder;
 import net.sourceforge.schemaspy.util.LineWriter;
 
@@ -46,7 +47,6 @@ import net.sourceforge.schemaspy.util.LineWriter;
  */
 public class HtmlTablePage extends HtmlFormatter {
     private static final HtmlTablePage instance = new HtmlTablePage();
-    private int columnCounter = 0;
 
     private final Map<String, String> defaultValueAliases = new HashMap<String, String>();
     {
@@ -63,6 +63,14 @@ public class HtmlTablePage extends HtmlFormatter {
     private HtmlTablePage() {
     }
 
+    /**
+     * Default values that are displayed as something more meaningful
+     * (with the actual value as their title)
+     */
+    Map<String, String> getDefaultValueAliases() {
+        return defaultValueAliases;
+    }
+
     /**
      * Singleton accessor
      *
@@ -73,8 +81,45 @@ public class HtmlTablePage extends HtmlFormatter {
     }
 
     public WriteStats write(Database db, Table table, File outputDir, WriteStats stats, LineWriter out) throws IOException {
+        return write(db, prepare(table, outputDir, stats, new DotRenderQueue(0)), stats, out);
+    }
+
+    /**
+     * Generate the .dot files of the specified table and queue them to be rendered.
+     * The page can be written with {@link #write(Database, PendingPage, WriteStats, LineWriter)}
+     * while that's happening.
+     *
+     * @param table
+     * @param outputDir
+     * @param stats
+     * @param renderQueue
+     * @return
+     * @throws IOException
+     */
+    public PendingPage prepare(Table table, File outputDir, WriteStats stats, DotRenderQueue renderQueue) throws IOException {
         File diagramsDir = new File(outputDir, "diagrams");
         boolean hasImplied = generateDots(table, diagramsDir, stats);
+        HtmlTableDiagrammer.Diagrams diagrams = null;
+        if (table.getMaxChildren() + table.getMaxParents() > 0)
+            diagrams = HtmlTableDiagrammer.getInstance().submit(table, diagramsDir, renderQueue);
+
+        return new PendingPage(table, hasImplied, diagrams, stats);
+    }
+
+    /**
+     * Write the page of a table that was {@link #prepare(Table, File, WriteStats, DotRenderQueue) prepared},
+     * waiting for its diagrams to be rendered if necessary.
+     *
+     * @param db
+     * @param page
+     * @param stats
+     * @param out
+     * @return
+     * @throws IOException
+     */
+    public WriteStats write(Database db, PendingPage page, WriteStats stats, LineWriter out) throws IOException {
+        Table table = page.getTable();
+        boolean hasImplied = page.hasImplied;
 
         writeHeader(db, table, null, out);
         out.writeln("<table width='100%' border='0'>");
@@ -89,7 +134,7 @@ public class HtmlTablePage extends HtmlFormatter {
         writeCheckConstraints(table, out);
         writeIndexes(table, out);
         writeView(table, db, out);
-        writeDiagram(table, stats, diagramsDir, out);
+        writeDiagram(table, page.diagrams, stats, out);
         writeFooter(out);
 
         return stats;
@@ -131,20 +176,46 @@ public class HtmlTablePage extends HtmlFormatter {
         }
 
         boolean showIds = table.getId() != null;
+        boolean even = true;
         for (TableColumn column : table.getColumns()) {
-            writeColumn(column, null, primaries, indexedColumns, false, showIds, out);
+            writeColumn(column, null, primaries, indexedColumns, false, showIds, even, out);
+            even = !even;
         }
         out.writeln("</tbody>");
         out.writeln("</table>");
     }
 
-    public void writeColumn(TableColumn column, String tableName, Set<TableColumn> primaries, Set<TableColumn> indexedColumns, boolean slim, boolean showIds, LineWriter out) throws IOException {
-        boolean even = columnCounter++ % 2 == 0;
+    /**
+     * Write the row of a column.
+     * Rows are striped by the caller (starting with an even row) so the same
+     * page is always written the same way regardless of what else was written.
+     *
+     * @param column
+     * @param tableName name of the column's table to link to or <code>null</code> if it's this table's page
+     * @param primaries
+     * @param indexedColumns
+     * @param slim <code>true</code> to leave out the parent and child columns
+     * @param showIds
+     * @param even <code>true</code> if it's an even row
+     * @param out
+     * @throws IOException
+     */
+    public void writeColumn(TableColumn column, String tableName, Set<TableColumn> primaries, Set<TableColumn> indexedColumns, boolean slim, boolean showIds, boolean even, LineWriter out) throws IOException {
         if (even)
             out.writeln("<tr class='even'>");
         else
             out.writeln("<tr class='odd'>");
 
+        writeColumnCells(column, tableName, primaries, indexedColumns, slim, showIds, even, out);
+    }
+
+    /**
+     * Write the rest of a column's row after its opening <code>&lt;tr&gt;</code>.
+     * Slim rows don't depend on whether they're <code>even</code>.
+     *
+     * @see #writeColumn(TableColumn, String, Set, Set, boolean, boolean, boolean, LineWriter)
+     */
+    void writeColumnCells(TableColumn column, String tableName, Set<TableColumn> primaries, Set<TableColumn> indexedColumns, boolean slim, boolean showIds, boolean even, LineWriter out) throws IOException {
         if (showIds) {
             out.write(" <td class='detail' align='right'>");
             out.write(String.valueOf(column.getId()));
@@ -214,7 +285,7 @@ public class HtmlTablePage extends HtmlFormatter {
         out.write(" <td class='comment detail'>");
         String comments = column.getComments();
         if (comments != null) {
-            if (encodeComments)
+            if (encodeComments())
                 for (int i = 0; i < comments.length(); ++i)
                     out.write(HtmlEncoder.encodeToken(comments.charAt(i)));
             else
@@ -299,7 +370,7 @@ public class HtmlTablePage extends HtmlFormatter {
 
     private void writeNumRows(Database db, Table table, LineWriter out) throws IOException {
         out.write("<p title='" + table.getColumns().size() + " columns'>");
-        if (displayNumRows && table.getNumRows() >= 0) {
+        if (displayNumRows() && table.getNumRows() >= 0) {
             out.write("Table contained " + NumberFormat.getIntegerInstance().format(table.getNumRows()) + " rows at ");
         } else {
             out.write("Analyzed at ");
@@ -525,10 +596,28 @@ public class HtmlTablePage extends HtmlFormatter {
         return false;
     }
 
-    private void writeDiagram(Table table, WriteStats stats, File diagramsDir, LineWriter html) throws IOException {
+    /**
+     * Delete the page and diagrams that were generated for a table that no longer exists.
+     *
+     * @param tableName
+     * @param outputDir
+     */
+    public void delete(String tableName, File outputDir) {
+        Dot dot = Dot.getInstance();
+        String extension = dot == null ? "png" : dot.getFormat();
+        File diagramDir = new File(outputDir, "diagrams");
+
+        new File(outputDir, "tables/" + tableName + ".html").delete();
+        for (String diagram : new String[] {".1degree.", ".2degrees.", ".implied2degrees."}) {
+            new File(diagramDir, tableName + diagram + "dot").delete();
+            new File(diagramDir, tableName + diagram + extension).delete();
+        }
+    }
+
+    private void writeDiagram(Table table, HtmlTableDiagrammer.Diagrams diagrams, WriteStats stats, LineWriter html) throws IOException {
         if (table.getMaxChildren() + table.getMaxParents() > 0) {
             html.writeln("<table width='100%' border='0'><tr><td class='container'>");
-            if (HtmlTableDiagrammer.getInstance().write(table, diagramsDir, html)) {
+            if (HtmlTableDiagrammer.getInstance().write(table, diagrams, html)) {
                 html.writeln("</td></tr></table>");
                 writeExcludedColumns(stats.getExcludedColumns(), table, html);
             } else {
@@ -542,4 +631,33 @@ public class HtmlTablePage extends HtmlFormatter {
     protected String getPathToRoot() {
         return "../";
     }
-}
\ No newline at end of file
+
+    /**
+     * A table whose diagrams have been queued for rendering
+     * but whose page hasn't been written yet
+     */
+    public static class PendingPage {
+        private final Table table;
+        private final boolean hasImplied;
+        private final HtmlTableDiagrammer.Diagrams diagrams;
+        private final WriteStats stats;
+
+        private PendingPage(Table table, boolean hasImplied, HtmlTableDiagrammer.Diagrams diagrams, WriteStats stats) {
+            this.table = table;
+            this.hasImplied = hasImplied;
+            this.diagrams = diagrams;
+            this.stats = stats;
+        }
+
+        public Table getTable() {
+            return table;
+        }
+
+        /**
+         * The stats that the page was prepared with
+         */
+        public WriteStats getStats() {
+            return stats;
+        }
+    }
+}
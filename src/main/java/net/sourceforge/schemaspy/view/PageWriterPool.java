@@ -0,0 +1,136 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010, 2011 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.view;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A fixed number of threads that pages are written with.<p/>
+ *
+ * Work is started in the order that it's submitted, so anything that a page
+ * waits for (such as {@link HtmlTablePage#prepare preparing} it) must be
+ * submitted before the page itself.<p/>
+ *
+ * Each page gets its own {@link WriteStats} (see {@link WriteStats#WriteStats(WriteStats)})
+ * that are {@link WriteStats#add(WriteStats) added} to the overall stats
+ * when {@link #join(WriteStats) joined}.
+ */
+public class PageWriterPool {
+    private final ExecutorService executor;
+    private final List<Future<WriteStats>> pages = new ArrayList<Future<WriteStats>>();
+
+    /**
+     * @param maxThreads maximum number of pages to write at once
+     */
+    public PageWriterPool(int maxThreads) {
+        executor = Executors.newFixedThreadPool(Math.max(maxThreads, 1));
+    }
+
+    /**
+     * Submit some work that pages will wait for with {@link #get(Future)}
+     *
+     * @param task
+     * @return
+     */
+    public <T> Future<T> submit(Callable<T> task) {
+        return executor.submit(task);
+    }
+
+    /**
+     * Submit a page to be written
+     *
+     * @param page writes the page and returns what it wrote
+     */
+    public void write(Callable<WriteStats> page) {
+        pages.add(executor.submit(page));
+    }
+
+    /**
+     * Wait for all of the pages that have been submitted to be written
+     * and add their stats to <code>stats</code>.
+     * The pool can still be used afterwards.
+     *
+     * @param stats
+     * @throws IOException the first failure (in the order that the pages were
+     *          submitted) after abandoning the remaining work
+     */
+    public void join(WriteStats stats) throws IOException {
+        boolean joined = false;
+        try {
+            for (Future<WriteStats> page : pages) {
+                WriteStats written = get(page);
+                if (written != null)
+                    stats.add(written);
+            }
+            joined = true;
+        } finally {
+            pages.clear();
+            if (!joined)
+                executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Release the threads, abandoning any pages that haven't been
+     * {@link #join(WriteStats) joined}
+     */
+    public void shutdown() {
+        if (pages.isEmpty()) {
+            executor.shutdown();
+        } else {
+            pages.clear();
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Wait for the result of something that was submitted to the pool,
+     * rethrowing whatever it failed with.
+     *
+     * @param result
+     * @return
+     * @throws IOException
+     */
+    public static <T> T get(Future<T> result) throws IOException {
+        try {
+            return result.get();
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            IOException failure = new IOException("Interrupted while writing pages");
+            failure.initCause(interrupted);
+            throw failure;
+        } catch (ExecutionException exc) {
+            Throwable failure = exc.getCause();
+            if (failure instanceof IOException)
+                throw (IOException)failure;
+            if (failure instanceof RuntimeException)
+                throw (RuntimeException)failure;
+            if (failure instanceof Error)
+                throw (Error)failure;
+            throw new RuntimeException(failure);
+        }
+    }
+}
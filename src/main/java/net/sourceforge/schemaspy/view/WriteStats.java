@@ -48,6 +48,17 @@ public class WriteStats {
         excludedColumns = stats.excludedColumns;
     }
 
+    /**
+     * Add what was written by <code>stats</code>
+     * (typically a copy of these stats that was used by another thread)
+     *
+     * @param stats
+     */
+    public void add(WriteStats stats) {
+        numTables += stats.numTables;
+        numViews += stats.numViews;
+    }
+
     public void wroteTable(Table table) {
         if (table.isView())
             ++numViews;
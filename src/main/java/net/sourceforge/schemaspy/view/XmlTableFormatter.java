@@ -18,6 +18,8 @@
  */
 package net.sourceforge.schemaspy.view;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.Map;
@@ -28,13 +30,20 @@ import net.sourceforge.schemaspy.model.ForeignKeyConstraint;
 import net.sourceforge.schemaspy.model.Table;
 import net.sourceforge.schemaspy.model.TableColumn;
 import net.sourceforge.schemaspy.model.TableIndex;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
 import net.sourceforge.schemaspy.util.DOMUtil;
+import net.sourceforge.schemaspy.util.LineWriter;
+import org.w3c.dom.Comment;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 
 /**
- * Formats {@link Table}s into an XML DOM tree.
+ * Formats {@link Table}s into an XML DOM tree or streams them as XML.
  *
  * @author John Currier
  */
@@ -68,18 +77,85 @@ public class XmlTableFormatter {
      * @param tables
      */
     public void appendTables(Element schemaNode, Collection<Table> tables) {
+        Document document = schemaNode.getOwnerDocument();
+        Element tablesNode = document.createElement("tables");
+        schemaNode.appendChild(tablesNode);
+        for (Table table : sortByName(tables))
+            appendTable(tablesNode, table);
+    }
+
+    private static Set<Table> sortByName(Collection<Table> tables) {
         Set<Table> byName = new TreeSet<Table>(new Comparator<Table>() {
             public int compare(Table table1, Table table2) {
                 return table1.getName().compareToIgnoreCase(table2.getName());
             }
         });
         byName.addAll(tables);
+        return byName;
+    }
 
-        Document document = schemaNode.getOwnerDocument();
+    /**
+     * Write <code>document</code> with the specified tables appended to its
+     * root node in the same format as {@link DOMUtil#printDOM(Node, LineWriter)}.<p/>
+     *
+     * Each table is formatted and written before the next one is formatted
+     * so only one table's worth of DOM is ever in memory.
+     *
+     * @param document
+     * @param tables
+     * @param out
+     * @throws TransformerException
+     * @throws IOException
+     */
+    public void write(Document document, Collection<Table> tables, LineWriter out) throws TransformerException, IOException {
         Element tablesNode = document.createElement("tables");
-        schemaNode.appendChild(tablesNode);
-        for (Table table : byName)
+        document.getDocumentElement().appendChild(tablesNode);
+
+        // format the document with a placeholder for the tables
+        // so we know where (and how indented) to write them
+        Comment placeholder = document.createComment("tables");
+        tablesNode.appendChild(placeholder);
+        StringWriter skeleton = new StringWriter();
+        DOMUtil.newTransformer().transform(new DOMSource(document), new StreamResult(skeleton));
+        tablesNode.removeChild(placeholder);
+
+        String formatted = skeleton.toString();
+        String placeholderText = "<!--tables-->";
+        int placeholderStart = formatted.indexOf(placeholderText);
+        int lineStart = formatted.lastIndexOf('\n', placeholderStart) + 1;
+        String indent = formatted.substring(lineStart, placeholderStart);
+        int placeholderEnd = placeholderStart + placeholderText.length();
+        String newline = formatted.startsWith("\r\n", placeholderEnd) ? "\r\n" : "\n";
+
+        if (tables.isEmpty() || indent.trim().length() > 0 || !formatted.startsWith(newline, placeholderEnd)) {
+            // nothing to stream or we don't understand the formatting, so do it the old fashioned way
+            appendTables(document.getDocumentElement(), tables);
+            document.getDocumentElement().removeChild(tablesNode);
+            DOMUtil.printDOM(document, out);
+            return;
+        }
+
+        out.write(formatted.substring(0, lineStart));
+
+        Transformer transformer = DOMUtil.newTransformer();
+        transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+
+        for (Table table : sortByName(tables)) {
             appendTable(tablesNode, table);
+            Node tableNode = tablesNode.getLastChild();
+
+            StringWriter fragment = new StringWriter();
+            transformer.transform(new DOMSource(tableNode), new StreamResult(fragment));
+            tablesNode.removeChild(tableNode);
+
+            for (String line : fragment.toString().trim().split("\r?\n")) {
+                out.write(indent);
+                out.write(line);
+                out.write(newline);
+            }
+        }
+
+        out.write(formatted.substring(placeholderEnd + newline.length()));
     }
 
     /**
@@ -0,0 +1,195 @@
+// Renders the rows of the columns page from 'columnData' (see columns.data.js),
+// sorting and filtering them in the browser.
+// The rows are a list (see schemaSpy.js) of indexes into columnData's arrays.
+
+var columnRows = null;
+var columnOrder = 'column';
+var columnFilter = '';
+
+// same as Java's String.compareToIgnoreCase() so we sort like the static pages
+function compareIgnoreCase(s1, s2) {
+  var len = Math.min(s1.length, s2.length);
+  for (var i = 0; i < len; ++i) {
+    var c1 = s1.charAt(i);
+    var c2 = s2.charAt(i);
+    if (c1 != c2) {
+      c1 = c1.toUpperCase();
+      c2 = c2.toUpperCase();
+      if (c1 != c2) {
+        c1 = c1.toLowerCase();
+        c2 = c2.toLowerCase();
+        if (c1 != c2)
+          return c1.charCodeAt(0) - c2.charCodeAt(0);
+      }
+    }
+  }
+  return s1.length - s2.length;
+}
+
+// the orderings of HtmlColumnsPage keyed by the details in their page names
+var columnComparators = {
+  column: function(c1, c2) {
+    return compareIgnoreCase(columnData.name[c1], columnData.name[c2]) ||
+           columnData.table[c1] - columnData.table[c2];
+  },
+  table: function(c1, c2) {
+    return columnData.table[c1] - columnData.table[c2] ||
+           compareIgnoreCase(columnData.name[c1], columnData.name[c2]);
+  },
+  size: function(c1, c2) {
+    return columnData.length[c1] - columnData.length[c2] ||
+           columnData.digits[c1] - columnData.digits[c2] ||
+           columnComparators.column(c1, c2);
+  },
+  type: function(c1, c2) {
+    return compareIgnoreCase(columnData.type[c1], columnData.type[c2]) ||
+           columnComparators.size(c1, c2);
+  },
+  nulls: function(c1, c2) {
+    return columnData.nullable[c2] - columnData.nullable[c1] ||
+           columnComparators.column(c1, c2);
+  },
+  auto: function(c1, c2) {
+    return columnData.auto[c2] - columnData.auto[c1] ||
+           columnComparators.column(c1, c2);
+  },
+  'default': function(c1, c2) {
+    return compareIgnoreCase(String(columnData.defaults[c1]), String(columnData.defaults[c2])) ||
+           columnComparators.nulls(c1, c2);
+  },
+  children: function(c1, c2) {
+    return compareIgnoreCase(columnData.children[c1], columnData.children[c2]) ||
+           columnComparators.column(c1, c2);
+  },
+  parents: function(c1, c2) {
+    return compareIgnoreCase(columnData.parents[c1], columnData.parents[c2]) ||
+           columnComparators.column(c1, c2);
+  },
+  id: function(c1, c2) {
+    var id1 = columnData.ids ? columnData.ids[c1] : null;
+    var id2 = columnData.ids ? columnData.ids[c2] : null;
+    if (id1 == null || id2 == null)
+      return compareIgnoreCase(columnData.name[c1], columnData.name[c2]);
+    if (typeof id1 == 'number' && typeof id2 == 'number')
+      return id1 - id2;
+    return compareIgnoreCase(String(id1), String(id2));
+  }
+};
+
+// the same HTML as HtmlTablePage.writeColumn() writes for the static pages
+function columnRow(c, stripe) {
+  var table = columnData.table[c];
+  var html = stripe % 2 == 0 ? "<tr class='even'>" : "<tr class='odd'>";
+  html += "<td class='detail'><a href='tables/" + columnData.urls[table] + ".html'>" + columnData.tables[table] + "</a></td>";
+  if (columnData.key[c] == 1)
+    html += "<td class='primaryKey' title='Primary Key'>";
+  else if (columnData.key[c] == 2)
+    html += "<td class='indexedColumn' title='Indexed'>";
+  else
+    html += "<td class='detail'>";
+  html += columnData.name[c] + "</td>";
+  html += "<td class='detail'>" + columnData.type[c] + "</td>";
+  html += "<td class='detail' align='right'>" + columnData.size[c] + "</td>";
+  html += "<td class='detail' align='center'" + (columnData.nullable[c] ? " title='nullable'>&nbsp;&radic;&nbsp;" : ">") + "</td>";
+  html += "<td class='detail' align='center'" + (columnData.auto[c] ? " title='Automatically updated by the database'>&nbsp;&radic;&nbsp;" : ">") + "</td>";
+
+  var defaultValue = columnData.defaults[c];
+  if (defaultValue != null || columnData.nullable[c]) {
+    defaultValue = String(defaultValue);
+    var trimmed = $.trim(defaultValue);
+    if (columnData.aliases.hasOwnProperty(trimmed))
+      html += "<td class='detail' align='right' title='" + defaultValue + "'><i>" + columnData.aliases[trimmed] + "</i></td>";
+    else
+      html += "<td class='detail' align='right'>" + defaultValue + "</td>";
+  } else {
+    html += "<td class='detail'></td>";
+  }
+
+  html += "<td class='comment detail'>" + (columnData.comments[c] || '') + "</td>";
+  return html + "</tr>";
+}
+
+// sort and filter the columns based on what's been selected
+function arrangeColumns() {
+  var filter = columnFilter.toLowerCase();
+  columnRows.rows = [];
+  for (var c = 0; c < columnData.name.length; ++c) {
+    if (filter.length == 0 ||
+        columnData.name[c].toLowerCase().indexOf(filter) != -1 ||
+        columnData.tables[columnData.table[c]].toLowerCase().indexOf(filter) != -1)
+      columnRows.rows.push(c);
+  }
+
+  columnRows.rows.sort(columnComparators[columnOrder]);
+  renderList(columnRows, true);
+}
+
+// make the heading of the selected ordering look selected and link the rest
+function syncHeadings() {
+  $('#columns thead th').each(function() {
+    var th = $(this);
+    var order = th.data('order');
+    if (!order)
+      return;
+
+    if (order == columnOrder) {
+      th.removeClass('notSortedByColumn').addClass('sortedByColumn');
+      th.html(th.data('label'));
+    } else {
+      th.removeClass('sortedByColumn').addClass('notSortedByColumn');
+      th.html("<a href='#columns'><span class='notSortedByColumn'>" + th.data('label') + "</span></a>");
+    }
+  });
+}
+
+$(function(){
+  columnRows = createList($('#columns tbody'), $('#columns thead th').size(), columnRow);
+
+  // the headings link to the static pages of each ordering, e.g. columns.byType.html
+  $('#columns thead th').each(function() {
+    var th = $(this);
+    var link = th.find('a');
+    var order = null;
+    if (link.size() > 0) {
+      var page = /columns\.by(\w+)\.html/.exec(link.attr('href'));
+      if (page)
+        order = page[1].toLowerCase();
+    } else if (th.hasClass('sortedByColumn')) {
+      order = columnOrder;
+    }
+
+    if (order && columnComparators[order]) {
+      th.data('order', order);
+      th.data('label', th.text());
+    }
+  });
+  syncHeadings();
+
+  $('#columns thead').delegate('a', 'click', function() {
+    columnOrder = $(this).closest('th').data('order');
+    syncHeadings();
+    arrangeColumns();
+    return false;
+  });
+
+  $('#columnFilter').keyup(function() {
+    var filter = $.trim($(this).val());
+    if (filter != columnFilter) {
+      columnFilter = filter;
+      arrangeColumns();
+    }
+  });
+
+  $('#showComments').click(function() {
+    renderList(columnRows, true);
+  });
+
+  $(window).scroll(function() {
+    renderList(columnRows, false);
+  });
+  $(window).resize(function() {
+    renderList(columnRows, false);
+  });
+
+  arrangeColumns();
+});
@@ -0,0 +1,161 @@
+// Renders the rows of the main index from 'indexData' (see index.data.js).
+// The tables and the related tables in other schemas are each a list (see schemaSpy.js).
+// The checkboxes and filter take rows out of the lists rather than hiding them.
+
+var tableFilter = '';
+var localTables = null;
+var remoteTables = null;
+
+// formats counts like the static index does
+function formatInteger(n) {
+  var digits = String(n);
+  var formatted = '';
+  if (indexData.grouping) {
+    while (digits.length > 3) {
+      formatted = indexData.grouping + digits.substring(digits.length - 3) + formatted;
+      digits = digits.substring(0, digits.length - 3);
+    }
+  }
+  return digits + formatted;
+}
+
+// the cells that are common to both lists, in the order that they appear
+function idCell(data, t) {
+  if (!data.ids)
+    return '';
+  var id = data.ids[t];
+  return "<td class='detail' align='right'>" + (id == null ? '&nbsp;' : id) + "</td>";
+}
+
+function relativesCells(data, t) {
+  return "<td class='detail' align='right'>" + (data.children[t] ? formatInteger(data.children[t]) : '') + "</td>" +
+         "<td class='detail' align='right'>" + (data.parents[t] ? formatInteger(data.parents[t]) : '') + "</td>";
+}
+
+function commentCell(data, t) {
+  return "<td class='comment detail'>" + (data.comments[t] || '') + "</td>";
+}
+
+// the static index starts its stripes with an odd row
+function stripeClass(stripe) {
+  return stripe % 2 == 0 ? 'odd' : 'even';
+}
+
+// the same HTML as HtmlMainIndexPage.writeLineItem() writes for a table in this schema
+function localRow(t, stripe) {
+  var data = indexData.locals;
+  var html = "<tr class='" + (data.views[t] ? 'view ' : 'tbl ') + stripeClass(stripe) + "' valign='top'>";
+  html += "<td class='detail'><a href='tables/" + data.urls[t] + ".html'>" + data.names[t] + "</a></td>";
+  html += idCell(data, t);
+  html += relativesCells(data, t);
+  html += "<td class='detail' align='right'>" + formatInteger(data.columns[t]) + "</td>";
+  if (data.rows) {
+    html += "<td class='detail' align='right'>";
+    if (data.views[t])
+      html += "<span title='Views contain no real rows'>view</span>";
+    else if (data.rows[t] >= 0)
+      html += formatInteger(data.rows[t]);
+    else
+      html += "<span title='Row count not available'>&nbsp;</span>";
+    html += "</td>";
+  }
+  html += commentCell(data, t);
+  return html + "</tr>";
+}
+
+// the same HTML as HtmlMainIndexPage.writeLineItem() writes for a table in another schema
+function remoteRow(t, stripe) {
+  var data = indexData.remotes;
+  var html = "<tr class='tbl " + stripeClass(stripe) + "' valign='top'><td class='detail'>";
+  if (indexData.linkRemotes) {
+    html += "<a href='../" + data.containerUrls[t] + "/index.html'>" + data.containers[t] + "</a>.";
+    html += "<a href='tables/../../" + data.containerUrls[t] + "/tables/" + data.urls[t] + ".html'>" + data.names[t] + "</a>";
+  } else {
+    html += data.containers[t] + '.' + data.names[t];
+  }
+  html += "</td>";
+  html += idCell(data, t);
+  html += relativesCells(data, t);
+  html += commentCell(data, t);
+  return html + "</tr>";
+}
+
+function renderLists(force) {
+  renderList(localTables, force);
+  if (remoteTables)
+    renderList(remoteTables, force);
+}
+
+// pick the rows of each list based on the checkboxes and filter
+// and stripe them as if they were all rendered
+function arrangeLists() {
+  var filter = tableFilter.toLowerCase();
+  var showTables = $('#showTables').attr('checked');
+  var showViews = $('#showViews').attr('checked');
+
+  var data = indexData.locals;
+  localTables.rows = [];
+  for (var t = 0; t < data.names.length; ++t) {
+    if ((data.views[t] ? showViews : showTables) &&
+        (filter.length == 0 || data.names[t].toLowerCase().indexOf(filter) != -1))
+      localTables.rows.push(t);
+  }
+
+  // the totals are striped along with the tables, as are the remote tables after them
+  var stripes = localTables.rows.length;
+  localTables.footer.each(function() {
+    if ($(this).css('display') != 'none') {
+      if (stripes++ % 2 == 0)
+        $(this).removeClass('even').addClass('odd');
+      else
+        $(this).removeClass('odd').addClass('even');
+    }
+  });
+
+  if (remoteTables) {
+    data = indexData.remotes;
+    remoteTables.rows = [];
+    remoteTables.stripes = stripes;
+    for (t = 0; t < data.names.length; ++t) {
+      if (showTables &&
+          (filter.length == 0 || (data.containers[t] + '.' + data.names[t]).toLowerCase().indexOf(filter) != -1))
+        remoteTables.rows.push(t);
+    }
+  }
+
+  renderLists(true);
+}
+
+$(function(){
+  localTables = createList($('#locals'), $('#locals').closest('table').children('colgroup').size(), localRow);
+  if ($('#remotes').size() > 0)
+    remoteTables = createList($('#remotes'), $('#remotes').closest('table').children('colgroup').size(), remoteRow);
+
+  // the totals of the tables and views come and go with their checkboxes
+  associate($('#showTables'), localTables.footer.filter('.tbl'));
+  associate($('#showViews'),  localTables.footer.filter('.view'));
+  $('#showTables, #showViews').click(function() {
+    arrangeLists();
+  });
+
+  $('#tableFilter').keyup(function() {
+    var filter = $.trim($(this).val());
+    if (filter != tableFilter) {
+      tableFilter = filter;
+      arrangeLists();
+    }
+  });
+
+  $('#showComments').click(function() {
+    renderLists(true);
+  });
+
+  $(window).scroll(function() {
+    renderLists(false);
+  });
+  $(window).resize(function() {
+    renderLists(false);
+  });
+
+  arrangeLists();
+});
@@ -72,6 +72,73 @@ function syncImage() {
   }
 }
 
+// Lists of rows of which only the rows that are near the visible part of the page
+// are rendered, with empty rows above and below them that take up the space of the others.
+// Pages with too many rows to lay out use them to render their rows from data.
+
+var rowsAhead = 100;
+
+// a list of rows that are rendered into tbody (ahead of whatever rows it already has)
+// by renderRow(row, stripe), where stripe is the row's position among the striped rows
+function createList(tbody, numCells, renderRow) {
+  return {
+    tbody: tbody,
+    renderRow: renderRow,
+    footer: tbody.children(),
+    numCells: numCells,
+    rows: [],          // what to pass to renderRow() in display order
+    stripes: 0,        // number of striped rows above the list
+    rowHeight: 20,     // until some rows have been measured
+    first: 0,
+    last: 0
+  };
+}
+
+// an empty row that takes up the space of the rows that aren't rendered
+function listSpacer(list, numRows) {
+  return "<tr><td colspan='" + list.numCells + "' style='height:" + Math.round(numRows * list.rowHeight) +
+         "px; padding:0; border:0;'></td></tr>";
+}
+
+// render the rows of the list that are (nearly) visible if they aren't already
+function renderList(list, force) {
+  var numRows = list.rows.length;
+  var scrolled = $(window).scrollTop() - list.tbody.offset().top;
+  var firstVisible = Math.min(numRows, Math.max(0, Math.floor(scrolled / list.rowHeight)));
+  var lastVisible = Math.min(numRows, firstVisible + Math.ceil($(window).height() / list.rowHeight) + 1);
+
+  if (!force && firstVisible >= list.first && lastVisible <= list.last)
+    return;
+
+  list.first = Math.max(0, firstVisible - rowsAhead);
+  list.last = Math.min(numRows, lastVisible + rowsAhead);
+
+  var html = [];
+  if (list.first > 0)
+    html.push(listSpacer(list, list.first));
+  for (var i = list.first; i < list.last; ++i)
+    html.push(list.renderRow(list.rows[i], list.stripes + i));
+  if (list.last < numRows)
+    html.push(listSpacer(list, numRows - list.last));
+
+  list.footer.detach();
+  list.tbody.html(html.join(''));
+  list.tbody.append(list.footer);
+
+  sync($('#showComments'), list.tbody.find('.comment'));
+
+  // measure the rows while there's nothing above them to throw off the page
+  if (list.first == 0 && list.last > 0) {
+    var rows = list.tbody.children().slice(0, list.last);
+    var height = rows.last().offset().top + rows.last().outerHeight() - rows.first().offset().top;
+    if (height > 0) {
+      list.rowHeight = height / rows.size();
+      if (list.last < numRows)
+        rows.last().next().children().css('height', Math.round((numRows - list.last) * list.rowHeight) + 'px');
+    }
+  }
+}
+
 // our 'ready' handler makes the page consistent
 $(function(){
   associate($('#implied'),         $('.impliedRelationship'));
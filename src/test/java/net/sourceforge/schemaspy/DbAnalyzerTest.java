@@ -0,0 +1,160 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010, 2011 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy;
+
+import java.io.File;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import junit.framework.TestCase;
+import net.sourceforge.schemaspy.benchmark.SyntheticSchema;
+import net.sourceforge.schemaspy.model.Database;
+import net.sourceforge.schemaspy.model.ForeignKeyConstraint;
+import net.sourceforge.schemaspy.model.ImpliedForeignKeyConstraint;
+import net.sourceforge.schemaspy.model.TableColumn;
+
+public class DbAnalyzerTest extends TestCase {
+    private static final String PRODUCT =
+        "    <table name='product'>" +
+        "      <column name='sku' type='varchar' size='10' primaryKey='true'/>" +
+        "      <column name='variant' type='integer' size='10' primaryKey='true'/>" +
+        "    </table>";
+    private static final String ORDER_LINE =
+        "    <table name='order_line'>" +
+        "      <column name='line_id' type='integer' size='10' primaryKey='true'/>" +
+        "      <column name='order_id' type='integer' size='10'/>" +
+        "      <column name='SKU' type='VARCHAR' size='10'/>" +
+        "      <column name='variant' type='integer' size='10'/>" +
+        "    </table>";
+    private File metaFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        Logger.getLogger("").setLevel(Level.SEVERE);
+        metaFile = File.createTempFile("dbAnalyzer", ".meta.xml");
+    }
+
+    @Override
+    protected void tearDown() {
+        metaFile.delete();
+    }
+
+    public void testSingleColumnKey() throws Exception {
+        Database db = SyntheticSchema.createDatabase(metaFile, ORDER_LINE,
+            "    <table name='orders'>",
+            "      <column name='order_id' type='integer' size='10' primaryKey='true'/>",
+            "    </table>");
+
+        assertEquals("[order_line(order_id) -> orders(order_id)]", getImplied(db));
+    }
+
+    public void testCompositeKey() throws Exception {
+        Database db = SyntheticSchema.createDatabase(metaFile, PRODUCT, ORDER_LINE);
+
+        assertEquals("[order_line(SKU, variant) -> product(sku, variant)]", getImplied(db));
+    }
+
+    public void testPartialCompositeKey() throws Exception {
+        Database db = SyntheticSchema.createDatabase(metaFile, PRODUCT,
+            "    <table name='stock'>",
+            "      <column name='stock_id' type='integer' size='10' primaryKey='true'/>",
+            "      <column name='sku' type='varchar' size='10'/>",
+            "      <column name='variant' type='integer' size='5'/>",
+            "    </table>");
+
+        assertEquals("[]", getImplied(db));
+    }
+
+    /**
+     * A column can be part of both a single and a multi-column implied key
+     */
+    public void testCompositeAndSingleColumnKeys() throws Exception {
+        Database db = SyntheticSchema.createDatabase(metaFile, PRODUCT, ORDER_LINE,
+            "    <table name='sku_master'>",
+            "      <column name='sku' type='varchar' size='10' primaryKey='true'/>",
+            "    </table>");
+
+        assertEquals("[order_line(SKU) -> sku_master(sku), " +
+                     "order_line(SKU, variant) -> product(sku, variant), " +
+                     "product(sku) -> sku_master(sku)]", getImplied(db));
+    }
+
+    /**
+     * There's no telling which of the tables that share a multi-column key is the parent
+     */
+    public void testDuplicateCompositeKeys() throws Exception {
+        Database db = SyntheticSchema.createDatabase(metaFile, PRODUCT, ORDER_LINE,
+            "    <table name='discontinued_product'>",
+            "      <column name='variant' type='integer' size='10' primaryKey='true'/>",
+            "      <column name='SKU' type='varchar' size='10' primaryKey='true'/>",
+            "    </table>");
+
+        assertEquals("[]", getImplied(db));
+    }
+
+    /**
+     * If most of the tables have the same primary key then they don't imply anything
+     */
+    public void testDuplicateSingleColumnKeys() throws Exception {
+        Database db = SyntheticSchema.createDatabase(metaFile,
+            "    <table name='a'>",
+            "      <column name='id' type='integer' size='10' primaryKey='true'/>",
+            "    </table>",
+            "    <table name='b'>",
+            "      <column name='id' type='integer' size='10' primaryKey='true'/>",
+            "    </table>",
+            "    <table name='c'>",
+            "      <column name='id' type='integer' size='10' primaryKey='true'/>",
+            "    </table>",
+            "    <table name='d'>",
+            "      <column name='id' type='integer' size='10' primaryKey='true'/>",
+            "    </table>",
+            "    <table name='e'>",
+            "      <column name='e_id' type='integer' size='10' primaryKey='true'/>",
+            "      <column name='id' type='integer' size='10'/>",
+            "    </table>");
+
+        assertEquals("[]", getImplied(db));
+    }
+
+    /**
+     * Returns a description of the implied constraints that doesn't depend on their order
+     */
+    private static String getImplied(Database db) {
+        List<ImpliedForeignKeyConstraint> implied = DbAnalyzer.getImpliedConstraints(db.getTables());
+        Set<String> descriptions = new TreeSet<String>();
+        for (ForeignKeyConstraint constraint : implied) {
+            descriptions.add(constraint.getChildTable().getName() + getNames(constraint.getChildColumns()) + " -> " +
+                             constraint.getParentTable().getName() + getNames(constraint.getParentColumns()));
+        }
+        return descriptions.toString();
+    }
+
+    private static String getNames(List<TableColumn> columns) {
+        StringBuilder names = new StringBuilder("(");
+        for (TableColumn column : columns) {
+            if (names.length() > 1)
+                names.append(", ");
+            names.append(column.getName());
+        }
+        return names.append(')').toString();
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010, 2011 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import junit.framework.TestCase;
+import net.sourceforge.schemaspy.benchmark.SyntheticSchema;
+import net.sourceforge.schemaspy.model.Database;
+import net.sourceforge.schemaspy.model.ForeignKeyConstraint;
+import net.sourceforge.schemaspy.model.ImpliedForeignKeyConstraint;
+import net.sourceforge.schemaspy.model.Table;
+import net.sourceforge.schemaspy.model.TableColumn;
+
+public class TableOrdererTest extends TestCase {
+    private File metaFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        Logger.getLogger("").setLevel(Level.SEVERE);
+        metaFile = File.createTempFile("tableOrderer", ".meta.xml");
+    }
+
+    @Override
+    protected void tearDown() {
+        metaFile.delete();
+    }
+
+    /**
+     * dept and emp reference each other, emp references itself and
+     * emp is only related to project by an implied key (emp.project_id),
+     * which closes a cycle of emp -> project -> dept -> emp.
+     * timesheet's key to emp only exists in the XML metadata.
+     */
+    public void testCyclicSchema() throws Exception {
+        Database db = SyntheticSchema.createDatabase(metaFile,
+            "    <table name='dept'>",
+            "      <column name='dept_id' type='integer' size='10' primaryKey='true'/>",
+            "      <column name='head_emp_id' type='integer' size='10' nullable='true'/>",
+            "    </table>",
+            "    <table name='emp'>",
+            "      <column name='emp_id' type='integer' size='10' primaryKey='true'/>",
+            "      <column name='dept_id' type='integer' size='10'/>",
+            "      <column name='manager_id' type='integer' size='10' nullable='true'/>",
+            "      <column name='project_id' type='integer' size='10' nullable='true'/>",
+            "    </table>",
+            "    <table name='project'>",
+            "      <column name='project_id' type='integer' size='10' primaryKey='true'/>",
+            "      <column name='dept_id' type='integer' size='10'/>",
+            "    </table>",
+            "    <table name='timesheet'>",
+            "      <column name='timesheet_id' type='integer' size='10' primaryKey='true'/>",
+            "      <column name='emp_id' type='integer' size='10'>",
+            "        <foreignKey table='emp' column='emp_id'/>",
+            "      </column>",
+            "    </table>",
+            "    <table name='setting'>",
+            "      <column name='name' type='varchar' size='30' primaryKey='true'/>",
+            "    </table>");
+
+        // the keys that the database would have told us about
+        relate(db, "dept.head_emp_id", "emp.emp_id");
+        relate(db, "emp.dept_id", "dept.dept_id");
+        relate(db, "emp.manager_id", "emp.emp_id");
+        relate(db, "project.dept_id", "dept.dept_id");
+
+        List<ImpliedForeignKeyConstraint> implied = DbAnalyzer.getImpliedConstraints(db.getTables());
+        assertEquals(1, implied.size());
+        assertEquals("emp.project_id -> project.project_id", describe(implied.get(0)));
+        db.freeze();
+
+        List<ForeignKeyConstraint> removed = new ArrayList<ForeignKeyConstraint>();
+        List<Table> ordered = new TableOrderer().getTablesOrderedByRI(db.getTables(), removed);
+
+        assertEquals("[dept, emp, project, timesheet, setting]", getNames(ordered));
+
+        // the implied and metadata keys are dropped without being reported,
+        // then the self reference and finally one side of the dept/emp cycle
+        assertEquals(2, removed.size());
+        assertEquals("emp.manager_id -> emp.emp_id", describe(removed.get(0)));
+        assertEquals("dept.head_emp_id -> emp.emp_id", describe(removed.get(1)));
+
+        // ordering doesn't change the model
+        Table emp = db.getTablesByName().get("emp");
+        assertEquals(3, emp.getNumParents());
+        assertEquals(3, emp.getNumChildren());
+    }
+
+    /**
+     * Create a real foreign key between the specified <code>table.column</code>s
+     */
+    private static void relate(Database db, String child, String parent) {
+        new ForeignKeyConstraint(getColumn(db, parent), getColumn(db, child));
+    }
+
+    private static TableColumn getColumn(Database db, String name) {
+        String[] tableAndColumn = name.split("\\.");
+        return db.getTablesByName().get(tableAndColumn[0]).getColumn(tableAndColumn[1]);
+    }
+
+    private static String getNames(List<Table> tables) {
+        List<String> names = new ArrayList<String>();
+        for (Table table : tables)
+            names.add(table.getName());
+        return names.toString();
+    }
+
+    private static String describe(ForeignKeyConstraint constraint) {
+        return constraint.getChildTable().getName() + '.' + constraint.getChildColumns().get(0).getName() + " -> " +
+               constraint.getParentTable().getName() + '.' + constraint.getParentColumns().get(0).getName();
+    }
+}
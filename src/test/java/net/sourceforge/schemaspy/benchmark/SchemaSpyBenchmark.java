@@ -0,0 +1,261 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010, 2011 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import junit.framework.TestCase;
+import net.sourceforge.schemaspy.Config;
+import net.sourceforge.schemaspy.DbAnalyzer;
+import net.sourceforge.schemaspy.TableOrderer;
+import net.sourceforge.schemaspy.model.Database;
+import net.sourceforge.schemaspy.model.ForeignKeyConstraint;
+import net.sourceforge.schemaspy.model.ImpliedForeignKeyConstraint;
+import net.sourceforge.schemaspy.model.Table;
+import net.sourceforge.schemaspy.util.LineWriter;
+import net.sourceforge.schemaspy.view.DotFormatter;
+import net.sourceforge.schemaspy.view.HtmlColumnsPage;
+import net.sourceforge.schemaspy.view.HtmlTablePage;
+import net.sourceforge.schemaspy.view.WriteStats;
+
+/**
+ * Times the hot paths of an analysis against synthetic schemas so
+ * performance regressions show up before they're released.<p/>
+ *
+ * These aren't run with the unit tests.  Run them with
+ * <code>mvn -Pbenchmark test</code> and describe the shape of the schema with
+ * the <code>benchmark.*</code> system properties used by {@link SyntheticSchema}
+ * (e.g. <code>-Dbenchmark.tables=2000</code>).
+ * <code>benchmark.warmups</code> and <code>benchmark.iterations</code> control
+ * how many times each operation is run before and while it's timed.<p/>
+ *
+ * Anything that changes the model is timed against a freshly built one.
+ * Pages are written to a stream that discards them, although the .dot files
+ * of the table pages still go to disk (and are rendered if Graphviz is installed).
+ */
+public class SchemaSpyBenchmark extends TestCase {
+    private final int warmups = Integer.getInteger("benchmark.warmups", 2).intValue();
+    private final int iterations = Integer.getInteger("benchmark.iterations", 5).intValue();
+    private SyntheticSchema schema;
+    private Config config;
+    private File outputDir;
+    private File metaFile;
+
+    /**
+     * Something that's timed
+     */
+    private abstract class Operation {
+        protected Database model;
+
+        /**
+         * Called before each (untimed) run.
+         * Builds a new model by default.
+         */
+        void prepare() throws Exception {
+            model = createDatabase();
+        }
+
+        abstract void run() throws Exception;
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        Logger.getLogger("").setLevel(Level.SEVERE);
+
+        outputDir = File.createTempFile("schemaSpyBenchmark", "");
+        outputDir.delete();
+        new File(outputDir, "diagrams").mkdirs();
+
+        config = new Config(new String[0]);
+        config.setDbProperties(new Properties(), "synthetic schema");
+        config.setOutputDir(outputDir);
+        config.setNumRowsEnabled(false);
+        config.setBulkMetadataEnabled(false);
+
+        schema = SyntheticSchema.fromSystemProperties();
+        metaFile = new File(outputDir, "synthetic.meta.xml");
+        schema.writeMeta(metaFile);
+    }
+
+    @Override
+    protected void tearDown() {
+        delete(outputDir);
+    }
+
+    public void testModelConstruction() throws Exception {
+        measure("Model construction", new Operation() {
+            @Override
+            void prepare() {
+            }
+
+            @Override
+            void run() throws Exception {
+                assertEquals(schema.getNumTables(), createDatabase().getTables().size());
+            }
+        });
+    }
+
+    public void testImpliedConstraints() throws Exception {
+        measure("DbAnalyzer.getImpliedConstraints", new Operation() {
+            @Override
+            void run() {
+                List<ImpliedForeignKeyConstraint> implied = DbAnalyzer.getImpliedConstraints(model.getTables());
+                assertEquals(schema.getNumImplied(), implied.size());
+            }
+        });
+    }
+
+    public void testTablesOrderedByRI() throws Exception {
+        measure("TableOrderer.getTablesOrderedByRI", new Operation() {
+            @Override
+            void run() {
+                List<ForeignKeyConstraint> recursiveConstraints = new ArrayList<ForeignKeyConstraint>();
+                List<Table> ordered = new TableOrderer().getTablesOrderedByRI(model.getTables(), recursiveConstraints);
+                assertEquals(schema.getNumTables(), ordered.size());
+            }
+        });
+    }
+
+    public void testWriteAllRelationships() throws Exception {
+        final Database db = createAnalyzedDatabase();
+
+        measure("DotFormatter.writeAllRelationships", new Operation() {
+            @Override
+            void prepare() {
+            }
+
+            @Override
+            void run() throws IOException {
+                WriteStats stats = new WriteStats(db.getTables());
+                LineWriter out = createDiscardingWriter();
+                DotFormatter.getInstance().writeAllRelationships(db, db.getTables(), true, true, stats, out);
+                DotFormatter.getInstance().writeAllRelationships(db, db.getTables(), false, true, stats, out);
+                out.close();
+            }
+        });
+    }
+
+    public void testTablePages() throws Exception {
+        final Database db = createAnalyzedDatabase();
+
+        measure("HtmlTablePage.write (all tables)", new Operation() {
+            @Override
+            void prepare() {
+            }
+
+            @Override
+            void run() throws IOException {
+                WriteStats stats = new WriteStats(db.getTables());
+                for (Table table : db.getTables()) {
+                    LineWriter out = createDiscardingWriter();
+                    HtmlTablePage.getInstance().write(db, table, outputDir, stats, out);
+                    out.close();
+                }
+            }
+        });
+    }
+
+    public void testColumnsPages() throws Exception {
+        final Database db = createAnalyzedDatabase();
+
+        measure("HtmlColumnsPage.write (all orderings)", new Operation() {
+            @Override
+            void prepare() {
+            }
+
+            @Override
+            void run() throws IOException {
+                HtmlColumnsPage.ColumnRows rows = HtmlColumnsPage.getInstance().getColumnRows(db.getTables());
+                for (HtmlColumnsPage.ColumnInfo columnInfo : HtmlColumnsPage.getInstance().getColumnInfos().values()) {
+                    LineWriter out = createDiscardingWriter();
+                    HtmlColumnsPage.getInstance().write(db, rows, columnInfo, out);
+                    out.close();
+                }
+            }
+        });
+    }
+
+    /**
+     * Run the operation enough times to get a reasonable idea of how long it takes
+     * and report the average.
+     *
+     * @return average elapsed milliseconds
+     */
+    private double measure(String name, Operation operation) throws Exception {
+        for (int i = 0; i < warmups; ++i) {
+            operation.prepare();
+            operation.run();
+        }
+
+        long elapsed = 0;
+        for (int i = 0; i < iterations; ++i) {
+            operation.prepare();
+            long start = System.nanoTime();
+            operation.run();
+            elapsed += System.nanoTime() - start;
+        }
+
+        double average = elapsed / 1000000.0 / Math.max(iterations, 1);
+        System.out.println(String.format("%-40s %10.2f ms/op  (%d tables, %d iterations)",
+                                         name, average, schema.getNumTables(), iterations));
+        return average;
+    }
+
+    private Database createDatabase() throws Exception {
+        return SyntheticSchema.createDatabase(config, metaFile);
+    }
+
+    /**
+     * Returns a model that's had its implied constraints added to it,
+     * as it would be by the time its pages are written
+     */
+    private Database createAnalyzedDatabase() throws Exception {
+        Database db = createDatabase();
+        DbAnalyzer.getImpliedConstraints(db.getTables());
+        db.freeze();
+        return db;
+    }
+
+    private static LineWriter createDiscardingWriter() throws IOException {
+        return new LineWriter(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }, Config.DOT_CHARSET);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children)
+                delete(child);
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,309 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010, 2011 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import net.sourceforge.schemaspy.Config;
+import net.sourceforge.schemaspy.model.Database;
+import net.sourceforge.schemaspy.model.xml.SchemaMeta;
+import net.sourceforge.schemaspy.util.LineWriter;
+
+/**
+ * Generates schemas of a specified shape for the benchmarks.<p/>
+ *
+ * The tables and their relationships are described with the same XML metadata
+ * that's used to define logical tables, so the resulting {@link Database} is
+ * built by the real model code.  The JDBC objects that it's given are stubs
+ * that don't know about any tables of their own.<p/>
+ *
+ * Every table has a single primary key column.  Each table (other than the
+ * first few) has <code>fanOut</code> foreign keys to randomly chosen tables
+ * that precede it and <code>impliedFanOut</code> columns that are named like
+ * the primary keys of other preceding tables without being related to them.
+ * Every <code>cycleEvery</code>th table also references the table that follows
+ * it, introducing cycles into the graph.
+ */
+public class SyntheticSchema {
+    /**
+     * How the tables and their key columns are named
+     */
+    public enum Naming {
+        /** <code>table_12.table_12_id</code> */
+        PREFIXED,
+        /** <code>TABLE_12.TABLE_12_ID</code> referenced by <code>table_12_id</code> */
+        UPPER_CASE,
+        /** <code>table_12.id</code> referenced by <code>table_12_id</code> (Rails-style) */
+        SHARED_ID
+    }
+
+    private final int numTables;
+    private final int numColumns;
+    private final int fanOut;
+    private final int impliedFanOut;
+    private final int cycleEvery;
+    private final Naming naming;
+    private int numImplied;
+
+    /**
+     * @param numTables number of tables
+     * @param numColumns number of columns in each table (at least enough for its keys)
+     * @param fanOut number of foreign keys in each table
+     * @param impliedFanOut number of implied foreign keys in each table
+     * @param cycleEvery how often a table references the next one (0 for never)
+     * @param naming
+     */
+    public SyntheticSchema(int numTables, int numColumns, int fanOut, int impliedFanOut, int cycleEvery, Naming naming) {
+        this.numTables = numTables;
+        this.numColumns = numColumns;
+        this.fanOut = fanOut;
+        this.impliedFanOut = impliedFanOut;
+        this.cycleEvery = cycleEvery;
+        this.naming = naming;
+    }
+
+    /**
+     * Returns a schema whose shape is described by the <code>benchmark.*</code>
+     * system properties (or their defaults).
+     */
+    public static SyntheticSchema fromSystemProperties() {
+        return new SyntheticSchema(Integer.getInteger("benchmark.tables", 200).intValue(),
+                                   Integer.getInteger("benchmark.columns", 12).intValue(),
+                                   Integer.getInteger("benchmark.fanOut", 2).intValue(),
+                                   Integer.getInteger("benchmark.impliedFanOut", 1).intValue(),
+                                   Integer.getInteger("benchmark.cycleEvery", 10).intValue(),
+                                   Naming.valueOf(System.getProperty("benchmark.naming", Naming.PREFIXED.name())));
+    }
+
+    public int getNumTables() {
+        return numTables;
+    }
+
+    /**
+     * Returns the number of implied constraints that should be detected
+     * in the generated schema.
+     * Only valid after {@link #writeMeta(File)}.
+     */
+    public int getNumImplied() {
+        return numImplied;
+    }
+
+    /**
+     * Write the XML metadata describing the schema to <code>file</code>
+     *
+     * @param file
+     * @throws IOException
+     */
+    public void writeMeta(File file) throws IOException {
+        Random random = new Random(numTables * 31L + numColumns);
+        numImplied = 0;
+
+        LineWriter out = new LineWriter(file, "UTF-8");
+        try {
+            out.writeln("<?xml version='1.0' encoding='UTF-8'?>");
+            out.writeln("<schemaMeta xmlns:xsi='http://www.w3.org/2001/XMLSchema-instance' xsi:noNamespaceSchemaLocation='http://schemaspy.sourceforge.net/xmlschema/2011/02/05/schemaspy.meta.xsd'>");
+            out.writeln("  <comments>Synthetic schema of " + numTables + " tables</comments>");
+            out.writeln("  <tables>");
+
+            for (int i = 0; i < numTables; ++i) {
+                List<Integer> parents = pickPreceding(i, fanOut + impliedFanOut, random);
+                int declared = Math.min(fanOut, parents.size());
+                int columns = 1;
+
+                out.writeln("    <table name='" + getTableName(i) + "' comments='Synthetic table " + i + "'>");
+                out.writeln("      <column name='" + getPrimaryKeyName(i) + "' type='integer' size='10' primaryKey='true' comments='Primary key'/>");
+
+                for (int p = 0; p < parents.size(); ++p) {
+                    int parent = parents.get(p).intValue();
+                    out.write("      <column name='" + getReferenceName(parent) + "' type='integer' size='10' nullable='true'");
+                    if (p < declared) {
+                        out.writeln(">");
+                        out.writeln("        <foreignKey table='" + getTableName(parent) + "' column='" + getPrimaryKeyName(parent) + "'/>");
+                        out.writeln("      </column>");
+                    } else {
+                        out.writeln("/>");
+                        if (naming != Naming.SHARED_ID)
+                            ++numImplied;
+                    }
+                    ++columns;
+                }
+
+                if (cycleEvery > 0 && i % cycleEvery == cycleEvery - 1 && i + 1 < numTables) {
+                    out.writeln("      <column name='next_" + getReferenceName(i + 1) + "' type='integer' size='10' nullable='true'>");
+                    out.writeln("        <foreignKey table='" + getTableName(i + 1) + "' column='" + getPrimaryKeyName(i + 1) + "'/>");
+                    out.writeln("      </column>");
+                    ++columns;
+                }
+
+                for (int c = 0; columns < numColumns; ++c, ++columns) {
+                    out.writeln("      <column name='col_" + c + "' type='" + (c % 2 == 0 ? "varchar" : "decimal") +
+                                "' size='" + (16 + c) + "' digits='" + (c % 2) + "' nullable='" + (c % 3 == 0) +
+                                "' comments='Column " + c + " of table " + i + "'/>");
+                }
+
+                out.writeln("    </table>");
+            }
+
+            out.writeln("  </tables>");
+            out.writeln("</schemaMeta>");
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Build the model of the schema that's described in <code>metaFile</code>.
+     * Also used by unit tests to build models of hand-written metadata.
+     *
+     * @param config
+     * @param metaFile previously written with {@link #writeMeta(File)}
+     * @return
+     * @throws SQLException
+     */
+    public static Database createDatabase(Config config, File metaFile) throws SQLException {
+        Connection connection = (Connection)stub(Connection.class);
+        DatabaseMetaData meta = (DatabaseMetaData)stub(DatabaseMetaData.class);
+        SchemaMeta schemaMeta = new SchemaMeta(metaFile.getPath(), "synthetic", "bench");
+        return new Database(config, connection, meta, "synthetic", null, "bench", schemaMeta);
+    }
+
+    /**
+     * Build the model of a schema whose tables are described by the specified
+     * lines of XML metadata (<code>&lt;table&gt;</code> elements).
+     *
+     * @param metaFile where to write the metadata
+     * @param tables
+     * @return
+     * @throws IOException
+     * @throws SQLException
+     */
+    public static Database createDatabase(File metaFile, String... tables) throws IOException, SQLException {
+        LineWriter out = new LineWriter(metaFile, "UTF-8");
+        try {
+            out.writeln("<?xml version='1.0' encoding='UTF-8'?>");
+            out.writeln("<schemaMeta>");
+            out.writeln("  <tables>");
+            for (String line : tables)
+                out.writeln(line);
+            out.writeln("  </tables>");
+            out.writeln("</schemaMeta>");
+        } finally {
+            out.close();
+        }
+
+        Config config = new Config(new String[0]);
+        config.setDbProperties(new Properties(), "test schema");
+        config.setNumRowsEnabled(false);
+        config.setBulkMetadataEnabled(false);
+        return createDatabase(config, metaFile);
+    }
+
+    private String getTableName(int table) {
+        String name = "table_" + table;
+        return naming == Naming.UPPER_CASE ? name.toUpperCase() : name;
+    }
+
+    private String getPrimaryKeyName(int table) {
+        switch (naming) {
+            case SHARED_ID:
+                return "id";
+            case UPPER_CASE:
+                return getReferenceName(table).toUpperCase();
+            default:
+                return getReferenceName(table);
+        }
+    }
+
+    /**
+     * Name of the columns that reference the specified table
+     */
+    private String getReferenceName(int table) {
+        return "table_" + table + "_id";
+    }
+
+    /**
+     * Pick up to <code>count</code> distinct tables that precede <code>table</code>
+     */
+    private static List<Integer> pickPreceding(int table, int count, Random random) {
+        List<Integer> candidates = new ArrayList<Integer>(table);
+        for (int i = 0; i < table; ++i)
+            candidates.add(Integer.valueOf(i));
+        Collections.shuffle(candidates, random);
+        return candidates.subList(0, Math.min(count, candidates.size()));
+    }
+
+    /**
+     * Create a JDBC object whose queries don't return anything
+     */
+    private static Object stub(Class<?> type) {
+        return Proxy.newProxyInstance(SyntheticSchema.class.getClassLoader(), new Class<?>[] {type}, new Stub(type));
+    }
+
+    private static class Stub implements InvocationHandler {
+        private final Class<?> type;
+
+        Stub(Class<?> type) {
+            this.type = type;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            Class<?> returnType = method.getReturnType();
+
+            if (name.equals("equals"))
+                return Boolean.valueOf(proxy == args[0]);
+            if (name.equals("hashCode"))
+                return Integer.valueOf(System.identityHashCode(proxy));
+            if (name.equals("toString"))
+                return "Synthetic " + type.getSimpleName();
+            if (name.startsWith("prepare") || name.startsWith("create"))
+                throw new SQLException("Synthetic schemas don't support queries");
+            if (name.equals("getIdentifierQuoteString"))
+                return "\"";
+
+            if (returnType == String.class)
+                return name.startsWith("get") && name.endsWith("Name") ? "Synthetic" : "";
+            if (returnType == Connection.class || returnType == ResultSet.class ||
+                returnType == ResultSetMetaData.class || returnType == DatabaseMetaData.class)
+                return stub(returnType);
+            if (returnType == Boolean.TYPE)
+                return Boolean.FALSE;
+            if (returnType == Integer.TYPE)
+                return Integer.valueOf(0);
+            if (returnType == Short.TYPE)
+                return Short.valueOf((short)0);
+            if (returnType == Long.TYPE)
+                return Long.valueOf(0);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010, 2011 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.util;
+
+import java.util.Locale;
+import junit.framework.TestCase;
+
+public class CaseInsensitiveMapTest extends TestCase {
+    private Locale originalLocale;
+    private CaseInsensitiveMap<String> map;
+
+    @Override
+    protected void setUp() {
+        originalLocale = Locale.getDefault();
+        map = new CaseInsensitiveMap<String>();
+    }
+
+    @Override
+    protected void tearDown() {
+        Locale.setDefault(originalLocale);
+    }
+
+    public void testMixedCase() {
+        Locale.setDefault(Locale.ENGLISH);
+        map.put("OrderLine", "table");
+
+        assertEquals("table", map.get("orderline"));
+        assertEquals("table", map.get("ORDERLINE"));
+        assertEquals("table", map.get("oRdErLiNe"));
+        assertTrue(map.containsKey("orderLINE"));
+        assertFalse(map.containsKey("orderlines"));
+        assertFalse(map.containsKey("orderlin"));
+        assertNull(map.get("order_line"));
+        assertTrue(map.keySet().contains("ORDERLINE"));
+
+        assertEquals("table", map.remove("ORDERline"));
+        assertFalse(map.containsKey("OrderLine"));
+        assertTrue(map.isEmpty());
+    }
+
+    /**
+     * Characters that only differ from ASCII letters in case (like '@' and '`')
+     * mustn't be confused with them
+     */
+    public void testAsciiPunctuation() {
+        Locale.setDefault(Locale.ENGLISH);
+        map.put("a@b", "at");
+        map.put("a_b", "underscore");
+
+        assertEquals("at", map.get("A@B"));
+        assertNull(map.get("a`b"));
+        assertEquals("underscore", map.get("A_B"));
+        assertNull(map.get("a\u007fb"));
+    }
+
+    public void testNonAscii() {
+        Locale.setDefault(Locale.GERMAN);
+        map.put("Stra\u00dfe", "street");
+        map.put("\u00e9t\u00e9", "summer");
+
+        // upper case sharp s is "SS"
+        assertEquals("street", map.get("STRASSE"));
+        assertEquals("street", map.get("strasse"));
+        assertEquals("street", map.get("STRA\u00dfE"));
+        assertTrue(map.containsKey("\u00c9T\u00c9"));
+        assertEquals("summer", map.get("\u00c9t\u00e9"));
+        assertNull(map.get("ete"));
+
+        assertEquals("summer", map.remove("\u00c9T\u00e9"));
+        assertFalse(map.containsKey("\u00e9t\u00e9"));
+        assertEquals(1, map.size());
+    }
+
+    /**
+     * Turkish upper cases 'i' as a dotted capital I, so keys are compared the same way
+     * that they're stored rather than with the ASCII rules
+     */
+    public void testTurkishLocale() {
+        Locale.setDefault(new Locale("tr", "TR"));
+        map.put("index", "dotted");
+        map.put("NAME", "plain");
+
+        assertTrue(map.keySet().contains("\u0130NDEX"));
+        assertEquals("dotted", map.get("index"));
+        assertEquals("dotted", map.get("\u0130NDEX"));
+        assertTrue(map.containsKey("iNDEX"));
+        assertFalse(map.containsKey("INDEX"));  // a dotless capital I
+        assertEquals("plain", map.get("name"));
+        assertEquals("plain", map.get("Name"));
+
+        assertEquals("dotted", map.remove("inDex"));
+        assertFalse(map.containsKey("index"));
+        assertEquals(1, map.size());
+    }
+
+    public void testNullKey() {
+        map.put("x", "value");
+
+        assertNull(map.get(null));
+        assertFalse(map.containsKey(null));
+        assertNull(map.remove(null));
+        assertEquals(1, map.size());
+    }
+}